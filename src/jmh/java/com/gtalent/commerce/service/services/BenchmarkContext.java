@@ -0,0 +1,44 @@
+package com.gtalent.commerce.service.services;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.servlet.UserDetailsServiceAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.util.UUID;
+
+//需要資料庫的 benchmark 共用的 Spring 環境：H2 記憶體資料庫 (由 entity 建表)、repositories 與指定的 service
+//不啟動 Web、Security 與排程；各 benchmark 在 @Setup 建立、@TearDown 關閉
+//(H2 只能看出趨勢，正式數據請對 MySQL 與實際資料量量測)
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    //properties 會覆蓋預設值 (例如改用 MySQL 相容模式的連線字串)
+    static ConfigurableApplicationContext start(Class<?>[] services, String... properties) {
+        return new SpringApplicationBuilder(Persistence.class)
+                .sources(services)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark-" + UUID.randomUUID(),
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.main.banner-mode=off",
+                        "spring.devtools.restart.enabled=false",
+                        "logging.level.root=WARN")
+                .properties(properties)
+                .run();
+    }
+
+    @Configuration
+    @EnableAutoConfiguration(exclude = {SecurityAutoConfiguration.class, UserDetailsServiceAutoConfiguration.class})
+    @EnableJpaRepositories("com.gtalent.commerce.service.repositories")
+    @EntityScan("com.gtalent.commerce.service.models")
+    static class Persistence {
+    }
+}
@@ -0,0 +1,70 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.models.User;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+//JWT 驗證：共用 JwtParser (目前做法) vs. 每次請求重建金鑰與 parser (改版前做法)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    private static final String SECRET = "dGlueXNhbWVoYW5kc29tZXlvdW5nY2FsbHJlY29yZGdpZnRpbnZlbnRlZHdpdGhvdXQ=";
+
+    private JwtService jwtService;
+    private String token;
+    private String legacyToken;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService(SECRET, "default");
+        User user = new User();
+        user.setEmail("benchmark@example.com");
+        token = jwtService.generateToken(user);
+        legacyToken = Jwts.builder()
+                .setSubject(user.getEmail())
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 3_600_000))
+                .signWith(legacyKey(), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    @Benchmark
+    public String sharedParser() {
+        return jwtService.getEmailFromToken(token);
+    }
+
+    @Benchmark
+    public String parserPerRequest() {
+        return Jwts.parserBuilder()
+                .setSigningKey(legacyKey())
+                .build()
+                .parseClaimsJws(legacyToken)
+                .getBody()
+                .getSubject();
+    }
+
+    private static Key legacyKey() {
+        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+    }
+}
@@ -0,0 +1,102 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.repositories.ProductRepository;
+import com.gtalent.commerce.service.responses.CursorPageResponse;
+import com.gtalent.commerce.service.responses.ProductListResponse;
+import com.gtalent.commerce.service.utils.KeysetCursor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//OFFSET 分頁與 Keyset 分頁在第 1、100、10,000 頁的查詢時間比較 (不經過列表快取)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class KeysetPaginationBenchmark {
+
+    private static final int PAGE_SIZE = 10;
+    private static final int ROWS = 10_000 * PAGE_SIZE + PAGE_SIZE;
+
+    @Param({"1", "100", "10000"})
+    private int page;
+
+    private ConfigurableApplicationContext context;
+    private ProductService productService;
+    private String cursor;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(new Class<?>[]{ProductService.class, ProductSearchIndex.class,
+                        ProductSuggestIndex.class, ProductCatalogCache.class, ReferenceDataRegistry.class},
+                "product.cache.page-maximum-size=0");
+        productService = context.getBean(ProductService.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        jdbcTemplate.update("INSERT INTO categories (id, name) VALUES (1, 'benchmark')");
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[]{"B-" + i, Timestamp.valueOf(base.plusSeconds(i / 3))});
+            if (rows.size() == 5_000 || i == ROWS - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO products (reference, category_id, width, height, depth, price, "
+                        + "stock, sales, created_at) VALUES (?, 1, 1, 1, 1, 10, 0, 0, ?)", rows);
+                rows.clear();
+            }
+        }
+
+        context.getBean(ProductSearchIndex.class).rebuild();  //keysetKeyword 使用
+
+        //Keyset 的起點：前一頁最後一筆
+        if (page > 1) {
+            Product last = context.getBean(ProductRepository.class).findAll(
+                    PageRequest.of((page - 1) * PAGE_SIZE - 1, 1, KeysetCursor.sort("createdAt"))).getContent().get(0);
+            cursor = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<ProductListResponse> offset() {
+        return productService.getAllProductPages("", null, null, null,
+                PageRequest.of(page - 1, PAGE_SIZE, KeysetCursor.sort("createdAt")));
+    }
+
+    @Benchmark
+    public CursorPageResponse<ProductListResponse> keyset() {
+        return productService.getProductsAfter("", null, null, null, cursor, PAGE_SIZE, false);
+    }
+
+    //關鍵字 (約 1/9 的產品符合) + 總筆數：由搜尋索引依 (建立時間, id) 取出這一頁，只查一次資料庫
+    @Benchmark
+    public CursorPageResponse<ProductListResponse> keysetKeyword() {
+        return productService.getProductsAfter("b-1", null, null, null, cursor, PAGE_SIZE, true);
+    }
+}
@@ -0,0 +1,178 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.CommerceServiceApplication;
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.repositories.CategoryRepository;
+import com.gtalent.commerce.service.repositories.ProductRepository;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//登入 (BCrypt) 與產品查詢混合流量：64 個用戶端 (13 個登入、51 個查詢產品明細，約 2:8) 對實際啟動的服務發出 HTTP 請求
+//Throughput 為每秒請求數，SampleTime 提供 p50 / p99 延遲；rejected (503) 與 errors (其他 4xx / 5xx) 為每秒次數
+//只量測平台執行緒 (建置目標為 Java 17)；虛擬執行緒的比較需等建置改為 Java 21 後再加入
+//(H2 記憶體資料庫只能看出趨勢，正式數據請對 MySQL 量測)
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 2, time = 10)
+@Fork(1)
+public class LoginCatalogBenchmark {
+
+    private static final String PASSWORD = "Secret#123";
+    private static final int USERS = 20;
+    private static final int PRODUCTS = 200;
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private ConfigurableApplicationContext context;
+    private int port;
+    private List<Integer> productIds;
+    private List<String> tokens;
+
+    @Setup
+    public void setUp() throws Exception {
+        context = new SpringApplicationBuilder(CommerceServiceApplication.class)
+                .initializers(app -> app.getBeanFactory()
+                        .registerSingleton("benchmarkContextExcludeFilter", new BenchmarkContextExcludeFilter()))
+                .properties(
+                        "server.port=0",
+                        "spring.main.banner-mode=off",
+                        "spring.devtools.restart.enabled=false",
+                        "logging.level.root=WARN")
+                .run();
+        port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        productIds = seedProducts();
+        tokens = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            tokens.add(register("load" + i + "@example.com"));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    //src/jmh 也在元件掃描範圍內 -> 排除 BenchmarkContext 的設定 (重複宣告 repositories)，只啟動正式的設定
+    static final class BenchmarkContextExcludeFilter extends TypeExcludeFilter {
+        @Override
+        public boolean match(MetadataReader reader, MetadataReaderFactory factory) {
+            return reader.getClassMetadata().getClassName().startsWith(BenchmarkContext.class.getName());
+        }
+    }
+
+    //每個執行緒各自累計的回應狀態
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Responses {
+        public long rejected;
+        public long errors;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rejected = 0;
+            errors = 0;
+        }
+
+        void record(int status) {
+            if (status == 503) {
+                rejected++;
+            } else if (status >= 400) {
+                errors++;
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(13)
+    public int login(Responses responses) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(uri("/jwt/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"email\":\"%s\",\"password\":\"%s\"}"
+                        .formatted("load" + ThreadLocalRandom.current().nextInt(USERS) + "@example.com", PASSWORD)))
+                .build(), responses);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(51)
+    public int catalog(Responses responses) throws IOException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return send(HttpRequest.newBuilder(uri("/commerce-service/products/" + productIds.get(random.nextInt(PRODUCTS))))
+                .header("Authorization", "Bearer " + tokens.get(random.nextInt(USERS)))
+                .GET().build(), responses);
+    }
+
+    private int send(HttpRequest request, Responses responses) throws IOException, InterruptedException {
+        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        responses.record(status);
+        return status;
+    }
+
+    private List<Integer> seedProducts() {
+        Category category = new Category();
+        category.setName("load");
+        context.getBean(CategoryRepository.class).save(category);
+        ProductRepository productRepository = context.getBean(ProductRepository.class);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product();
+            product.setReference("L-" + i);
+            product.setCategory(category);
+            product.setWidth(new BigDecimal("1.00"));
+            product.setHeight(new BigDecimal("1.00"));
+            product.setDepth(new BigDecimal("1.00"));
+            product.setPrice(new BigDecimal("9.99"));
+            product.setStock(100);
+            ids.add(productRepository.save(product).getId());
+        }
+        return ids;
+    }
+
+    private String register(String email) throws IOException, InterruptedException {
+        String body = """
+                {"firstName":"load","lastName":"test","email":"%s","birthday":"1990-01-01","address":"a",
+                 "city":"c","state":"s","zipcode":"1","password":"%s"}""".formatted(email, PASSWORD);
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/jwt/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+        return response.body().replaceAll(".*\"token\"\\s*:\\s*\"([^\"]+)\".*", "$1");
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
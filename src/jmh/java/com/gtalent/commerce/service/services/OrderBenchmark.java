@@ -0,0 +1,109 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.enums.OrderStatus;
+import com.gtalent.commerce.service.models.Order;
+import com.gtalent.commerce.service.models.OrderItem;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.models.User;
+import com.gtalent.commerce.service.responses.OrderResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//訂單 DTO 轉換與金額計算 (1 / 10 / 100 筆明細)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int itemCount;
+
+    private OrderService orderService;
+    private OrderItemService orderItemService;
+    private Order order;
+    private OrderResponse response;
+
+    @Setup
+    public void setUp() {
+        orderItemService = new OrderItemService();
+        //convertToOrderResponse 不會用到 repository
+        orderService = new OrderService(null, null, null, null, orderItemService, null, null);
+
+        User user = new User();
+        user.setFirstName("first");
+        user.setLastName("last");
+        user.setAddress("address");
+        order = new Order();
+        order.setId(1);
+        order.setOrderReference("ORD0000000000001");
+        order.setUser(user);
+        order.setStatus(OrderStatus.ORDERED);
+        order.setCreatedAt(LocalDateTime.of(2025, 1, 1, 12, 0));
+        for (int i = 0; i < itemCount; i++) {
+            Product product = new Product();
+            product.setId(i);
+            product.setReference("P-" + i);
+            product.setWidth(new BigDecimal("1.25"));
+            product.setHeight(new BigDecimal("2.50"));
+            product.setDepth(new BigDecimal("0.75"));
+            product.setPrice(new BigDecimal("19.99"));
+
+            OrderItem item = new OrderItem();
+            item.setOrder(order);
+            item.setProduct(product);
+            item.setProductName(product.getReference());
+            item.setPrice(product.getPrice());
+            item.setQuantity(1 + i % 3);
+            item.setDate(LocalDate.of(2025, 1, 1));
+            order.getItems().add(item);
+        }
+        response = orderService.convertToOrderResponse(order, order.getItems());
+    }
+
+    @Benchmark
+    public OrderResponse convertToOrderResponse() {
+        return orderService.convertToOrderResponse(order, order.getItems());
+    }
+
+    //金額計算：long (分) 與 BigDecimal 的比較，記憶體配置量可加上 -prof gc 觀察 (gc.alloc.rate.norm)
+    @Benchmark
+    public OrderResponse calculateTotals() {
+        orderItemService.calculateTotals(response);
+        return response;
+    }
+
+    @Benchmark
+    public OrderResponse calculateTotalsBigDecimal() {
+        orderItemService.calculateTotalsExact(response);
+        return response;
+    }
+
+    //列表頁：一次轉換 100 筆訂單
+    @Benchmark
+    public List<OrderResponse> convertOrderPage() {
+        List<OrderResponse> page = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            page.add(orderService.convertToOrderResponse(order, order.getItems()));
+        }
+        return page;
+    }
+}
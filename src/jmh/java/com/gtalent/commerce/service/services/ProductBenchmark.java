@@ -0,0 +1,111 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.responses.ProductListResponse;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//產品列表：10k 筆產品頁的 DTO 轉換，以及搜尋 Specification 建立 / 轉成 SQL
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductBenchmark {
+
+    private static final int PAGE_ROWS = 10_000;
+
+    private ProductService productService;
+    private List<Product> page;
+    private SessionFactory sessionFactory;
+    private Session session;
+
+    @Setup
+    public void setUp() {
+        ProductCatalogCache cache = new ProductCatalogCache(0, Duration.ZERO, 0, Duration.ZERO);
+        productService = new ProductService(null, null, cache, new ProductSearchIndex(null, null, 1000, 256),
+                new ProductSuggestIndex(null, null), new ReferenceDataRegistry(null, null, 0));  //索引未建立 -> 量測 LIKE 條件
+
+        page = new ArrayList<>(PAGE_ROWS);
+        Category category = new Category();
+        category.setId(1);
+        category.setName("category");
+        for (int i = 0; i < PAGE_ROWS; i++) {
+            Product product = new Product();
+            product.setId(i);
+            product.setReference("P-" + i);
+            product.setImageUrl("https://cdn.example.com/p/" + i + ".jpg");
+            product.setThumbnailUrl("https://cdn.example.com/p/" + i + "_s.jpg");
+            product.setPrice(new BigDecimal("19.99"));
+            product.setStock(i % 100);
+            product.setCategory(category);
+            page.add(product);
+        }
+
+        //只用來建立 Criteria 查詢與 SQL 轉換，不需要資料
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(Product.class)
+                .addAnnotatedClass(Category.class)
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:benchmark")
+                .setProperty("hibernate.connection.username", "sa")
+                .buildSessionFactory();
+        session = sessionFactory.openSession();
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.close();
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public List<ProductListResponse> mapProductPage() {
+        List<ProductListResponse> responses = new ArrayList<>(PAGE_ROWS);
+        for (Product product : page) {
+            responses.add(productService.toListResponse(product));
+        }
+        return responses;
+    }
+
+    @Benchmark
+    public Predicate buildSpecificationPredicate() {
+        CriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+        CriteriaQuery<Product> query = criteriaBuilder.createQuery(Product.class);
+        Root<Product> root = query.from(Product.class);
+        return productService.productSpecification("chair", 3, 10, 50).toPredicate(root, query, criteriaBuilder);
+    }
+
+    @Benchmark
+    public String translateSpecificationToSql() {
+        CriteriaBuilder criteriaBuilder = session.getCriteriaBuilder();
+        CriteriaQuery<Product> query = criteriaBuilder.createQuery(Product.class);
+        Root<Product> root = query.from(Product.class);
+        query.where(productService.productSpecification("chair", 3, 10, 50).toPredicate(root, query, criteriaBuilder));
+        return session.createQuery(query).getQueryString();
+    }
+}
@@ -0,0 +1,96 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.repositories.ProductRepository;
+import com.gtalent.commerce.service.responses.CategoryResponse;
+import com.gtalent.commerce.service.responses.ProductListResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//產品列表 (100k 筆產品)：載入 entity 再複製欄位 vs. DTO projection
+//記憶體配置量可加上 -prof gc 觀察 (gc.alloc.rate.norm)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ProductProjectionBenchmark {
+
+    private static final int ROWS = 100_000;
+    private static final int CATEGORIES = 50;
+
+    private ConfigurableApplicationContext context;
+    private ProductService productService;
+    private ProductRepository productRepository;
+    private TransactionTemplate transactionTemplate;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(new Class<?>[]{ProductService.class, ProductSearchIndex.class,
+                ProductSuggestIndex.class, ProductCatalogCache.class, ReferenceDataRegistry.class});
+        productService = context.getBean(ProductService.class);
+        productRepository = context.getBean(ProductRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.setReadOnly(true);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        for (int c = 1; c <= CATEGORIES; c++) {
+            jdbcTemplate.update("INSERT INTO categories (id, name) VALUES (?, ?)", c, "category-" + c);
+        }
+        List<Object[]> rows = new ArrayList<>();
+        String description = "x".repeat(2_000);  //模擬商品描述 TEXT 欄位
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[]{"B-" + i, 1 + i % CATEGORIES, description});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO products (reference, category_id, width, height, depth, price, stock, "
+                + "sales, description, created_at) VALUES (?, ?, 1, 1, 1, 10, 0, 0, ?, LOCALTIMESTAMP)", rows);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    //改版前的做法：findAll() 載入完整 entity (含 description)，再逐筆存取 lazy 分類 (交易模擬 open-in-view)
+    @Benchmark
+    public List<ProductListResponse> entityAndCopy() {
+        return transactionTemplate.execute(tx -> productRepository.findAll().stream()
+                .map(product -> {
+                    ProductListResponse response = new ProductListResponse();
+                    response.setId(product.getId());
+                    response.setImageUrl(product.getImageUrl());
+                    response.setThumbnailUrl(product.getThumbnailUrl());
+                    response.setReference(product.getReference());
+                    response.setPrice(product.getPrice());
+                    response.setStock(product.getStock());
+                    Category category = product.getCategory();
+                    response.setCategory(new CategoryResponse(category.getId(), category.getName()));
+                    return response;
+                })
+                .toList());
+    }
+
+    @Benchmark
+    public List<ProductListResponse> projection() {
+        return productService.getAllProducts();
+    }
+}
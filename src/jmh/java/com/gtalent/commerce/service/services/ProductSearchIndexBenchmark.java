@@ -0,0 +1,161 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.responses.ProductSuggestResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+//產品搜尋索引與編號自動完成在 1M 筆產品下的查詢延遲 (SampleTime -> p50 / p99)
+//建立時間與估計記憶體用量在 @Setup 輸出；每次查詢的記憶體配置量可加上 -prof gc 觀察
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ProductSearchIndexBenchmark {
+
+    private static final int ROWS = 1_000_000;
+    private static final int INSERT_BATCH = 10_000;
+    private static final int QUERIES = 1 << 13;  //預先產生的查詢字串數 (2 的次方，依序循環使用)
+    private static final String[] TYPES = {"CHAIR", "TABLE", "SOFA", "LAMP", "DESK", "SHELF", "BED", "STOOL"};
+    private static final String[] WORDS = {"oak", "walnut", "steel", "glass", "linen", "leather", "modern",
+            "classic", "outdoor", "kids", "office", "garden", "compact", "foldable", "桌上型", "實木", "北歐風"};
+
+    private ConfigurableApplicationContext context;
+    private ProductSearchIndex searchIndex;
+    private ProductSuggestIndex suggestIndex;
+
+    private String[] exactReferences;
+    private String[] referenceSubstrings;
+    private String[] broadQueries;
+    private String[] descriptionWords;
+    private String[] suggestOneChar;
+    private String[] suggestType;
+    private String[] suggestTypeNumber;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(new Class<?>[]{ProductSearchIndex.class, ProductSuggestIndex.class});
+        searchIndex = context.getBean(ProductSearchIndex.class);
+        suggestIndex = context.getBean(ProductSuggestIndex.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        jdbcTemplate.update("INSERT INTO categories (id, name) VALUES (1, 'category')");
+        Random random = new Random(42);
+        List<Object[]> rows = new ArrayList<>(INSERT_BATCH);
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[]{reference(i), description(random), random.nextInt(10_000)});
+            if (rows.size() == INSERT_BATCH) {
+                jdbcTemplate.batchUpdate("INSERT INTO products (reference, description, category_id, width, height, "
+                        + "depth, price, stock, sales, created_at) VALUES (?, ?, 1, 1, 1, 1, 10, 1, ?, LOCALTIMESTAMP)",
+                        rows);
+                rows.clear();
+            }
+        }
+
+        long start = System.nanoTime();
+        int documents = searchIndex.rebuild();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        searchIndex.bindTo(registry);
+        System.out.printf("%nsearch build: %d products in %.1f s, memory: %.1f MB (estimated), %.0f terms%n",
+                documents, (System.nanoTime() - start) / 1e9,
+                registry.get("product.search.index.memory").gauge().value() / 1024 / 1024,
+                registry.get("product.search.index.terms").gauge().value());
+        start = System.nanoTime();
+        suggestIndex.rebuild();
+        suggestIndex.bindTo(registry);
+        System.out.printf("suggest build: %.1f s, memory: %.1f MB (estimated)%n", (System.nanoTime() - start) / 1e9,
+                registry.get("product.suggest.memory").gauge().value() / 1024 / 1024);
+
+        exactReferences = queries(i -> reference(random.nextInt(ROWS)));
+        referenceSubstrings = queries(i -> TYPES[i % TYPES.length].toLowerCase() + "-00" + random.nextInt(1000));
+        broadQueries = queries(i -> TYPES[i % TYPES.length]);  //每種約 1/8 的產品
+        descriptionWords = queries(i -> WORDS[i % WORDS.length] + " " + WORDS[(i + 3) % WORDS.length]);
+        suggestOneChar = queries(i -> TYPES[i % TYPES.length].substring(0, 1));
+        suggestType = queries(i -> TYPES[i % TYPES.length] + "-");
+        suggestTypeNumber = queries(i -> TYPES[i % TYPES.length] + "-00" + random.nextInt(1000));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Integer> exactReference() {
+        return searchIndex.search(next(exactReferences));
+    }
+
+    @Benchmark
+    public List<Integer> referenceSubstring() {
+        return searchIndex.search(next(referenceSubstrings));
+    }
+
+    @Benchmark
+    public List<Integer> broad() {
+        return searchIndex.search(next(broadQueries));
+    }
+
+    @Benchmark
+    public List<Integer> descriptionWords() {
+        return searchIndex.search(next(descriptionWords));
+    }
+
+    @Benchmark
+    public List<ProductSuggestResponse> suggestOneChar() {
+        return suggestIndex.suggest(next(suggestOneChar), 10);
+    }
+
+    @Benchmark
+    public List<ProductSuggestResponse> suggestType() {
+        return suggestIndex.suggest(next(suggestType), 10);
+    }
+
+    @Benchmark
+    public List<ProductSuggestResponse> suggestTypeNumber() {
+        return suggestIndex.suggest(next(suggestTypeNumber), 10);
+    }
+
+    private String next(String[] queries) {
+        return queries[next++ & (QUERIES - 1)];
+    }
+
+    private static String[] queries(IntFunction<String> query) {
+        String[] queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = query.apply(i);
+        }
+        return queries;
+    }
+
+    private static String reference(int i) {
+        return TYPES[i % TYPES.length] + "-" + String.format("%07d", i);
+    }
+
+    private static String description(Random random) {
+        StringBuilder description = new StringBuilder();
+        for (int w = 0; w < 8; w++) {
+            description.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return description.append("no. ").append(random.nextInt(100_000)).toString();
+    }
+}
@@ -0,0 +1,119 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.enums.ReviewStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//熱門產品 (200k 筆評論) 的關鍵字搜尋：LIKE 掃描與評論搜尋索引的延遲比較 (SampleTime -> p50 / p99)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ReviewSearchIndexBenchmark {
+
+    private static final int REVIEWS = 200_000;
+    private static final int INSERT_BATCH = 10_000;
+    private static final int PRODUCT_ID = 1;
+    private static final String[] WORDS = {"comfortable", "sturdy", "broken", "cheap", "solid", "wobbly", "soft",
+            "delivery", "late", "great", "color", "size", "很舒服", "顏色不好看", "物流很快", "做工粗糙", "推薦購買"};
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private ReviewSearchIndex searchIndex;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(new Class<?>[]{ReviewSearchIndex.class});
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        searchIndex = context.getBean(ReviewSearchIndex.class);
+
+        jdbcTemplate.update("INSERT INTO categories (id, name) VALUES (1, 'category')");
+        jdbcTemplate.update("INSERT INTO products (id, reference, category_id, width, height, depth, price, stock, "
+                + "sales, created_at) VALUES (?, 'CHAIR-1', 1, 1, 1, 1, 10, 1, 0, LOCALTIMESTAMP)", PRODUCT_ID);
+        jdbcTemplate.update("INSERT INTO users (id, first_name, last_name, email, birthday, address, city, state, "
+                + "zipcode, password, has_newsletter, first_seen) VALUES (1, 'first', 'last', 'a@example.com', "
+                + "DATE '2000-01-01', 'address', 'city', 'state', '100', 'secret', FALSE, LOCALTIMESTAMP)");
+        Random random = new Random(42);
+        ReviewStatus[] statuses = ReviewStatus.values();
+        List<Object[]> rows = new ArrayList<>(INSERT_BATCH);
+        for (int i = 0; i < REVIEWS; i++) {
+            rows.add(new Object[]{1 + random.nextInt(5), comment(random), statuses[random.nextInt(statuses.length)].name()});
+            if (rows.size() == INSERT_BATCH) {
+                jdbcTemplate.batchUpdate("INSERT INTO reviews (date, rating, comment, status, customer_id, product_id) "
+                        + "VALUES (CURRENT_DATE, ?, ?, ?, 1, " + PRODUCT_ID + ")", rows);
+                rows.clear();
+            }
+        }
+
+        long start = System.nanoTime();
+        int indexed = searchIndex.rebuild();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        searchIndex.bindTo(registry);
+        System.out.printf("%nbuild: %d reviews in %.1f s, %.0f terms%n", indexed, (System.nanoTime() - start) / 1e9,
+                registry.get("review.search.index.terms").gauge().value());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Integer likeOneWord() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reviews WHERE product_id = ? AND deleted_at IS NULL "
+                + "AND LOWER(comment) LIKE ?", Integer.class, PRODUCT_ID, "%" + oneWord() + "%");
+    }
+
+    @Benchmark
+    public int[] indexOneWord() {
+        return searchIndex.search(PRODUCT_ID, oneWord(), null, null, null);
+    }
+
+    @Benchmark
+    public int[] indexTwoWords() {
+        return searchIndex.search(PRODUCT_ID, twoWords(), null, null, null);
+    }
+
+    @Benchmark
+    public int[] indexWithFilters() {
+        return searchIndex.search(PRODUCT_ID, twoWords(), ReviewStatus.ACCEPTED, 4, 5);
+    }
+
+    private String oneWord() {
+        return WORDS[Math.floorMod(next++, WORDS.length)];
+    }
+
+    private String twoWords() {
+        int i = Math.floorMod(next++, WORDS.length);
+        return WORDS[i] + " " + WORDS[(i + 5) % WORDS.length];
+    }
+
+    private static String comment(Random random) {
+        StringBuilder comment = new StringBuilder();
+        for (int w = 0; w < 6; w++) {
+            comment.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return comment.append("#").append(random.nextInt(100_000)).toString();
+    }
+}
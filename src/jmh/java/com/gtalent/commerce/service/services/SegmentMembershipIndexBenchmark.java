@@ -0,0 +1,117 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.enums.SegmentType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Segment 成員索引在 1M 使用者下的計數延遲 (SampleTime -> p50 / p99)，並以 SQL JOIN 計數作為對照
+//建立時間與記憶體用量在 @Setup 輸出
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class SegmentMembershipIndexBenchmark {
+
+    private static final int USERS = 1_000_000;
+    private static final int INSERT_BATCH = 10_000;
+    private static final double[] DENSITY = {0.5, 0.2, 0.3, 0.05, 0.01, 0.001};  //SEGMENT1 ~ SEGMENT6 的成員比例
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private SegmentMembershipIndex membershipIndex;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(new Class<?>[]{SegmentMembershipIndex.class});
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        membershipIndex = context.getBean(SegmentMembershipIndex.class);
+
+        for (SegmentType type : SegmentType.values()) {
+            jdbcTemplate.update("INSERT INTO segments (id, names) VALUES (?, ?)", type.getId(), type.getName());
+        }
+        Random random = new Random(42);
+        List<Object[]> users = new ArrayList<>(INSERT_BATCH);
+        List<Object[]> members = new ArrayList<>(INSERT_BATCH);
+        for (int id = 1; id <= USERS; id++) {
+            users.add(new Object[]{id, "user" + id + "@example.com", random.nextInt(3) == 0});
+            for (SegmentType type : SegmentType.values()) {
+                if (random.nextDouble() < DENSITY[type.getId() - 1]) {
+                    members.add(new Object[]{id, type.getId()});
+                }
+            }
+            if (users.size() == INSERT_BATCH) {
+                jdbcTemplate.batchUpdate("INSERT INTO users (id, first_name, last_name, email, birthday, address, city, "
+                        + "state, zipcode, password, has_newsletter, first_seen) VALUES (?, 'first', 'last', ?, "
+                        + "DATE '2000-01-01', 'address', 'city', 'state', '100', 'secret', ?, LOCALTIMESTAMP)", users);
+                jdbcTemplate.batchUpdate("INSERT INTO user_segments (user_id, segment_id) VALUES (?, ?)", members);
+                users.clear();
+                members.clear();
+            }
+        }
+
+        long start = System.nanoTime();
+        int indexed = membershipIndex.rebuild();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        membershipIndex.bindTo(registry);
+        System.out.printf("%nbuild: %d users in %.1f s, memory: %.1f KB%n", indexed, (System.nanoTime() - start) / 1e9,
+                registry.get("segment.membership.memory").gauge().value() / 1024);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long andNotNewsletter() {
+        return membershipIndex.count("SEGMENT1 and SEGMENT3 and not newsletter");
+    }
+
+    @Benchmark
+    public long orThree() {
+        return membershipIndex.count("SEGMENT2 or SEGMENT4 or SEGMENT6");
+    }
+
+    @Benchmark
+    public long nestedWithDifference() {
+        return membershipIndex.count("(SEGMENT1 or SEGMENT2) and newsletter - SEGMENT5");
+    }
+
+    @Benchmark
+    public long notSegment() {
+        return membershipIndex.count("not SEGMENT1");
+    }
+
+    @Benchmark
+    public long sparseAnd() {
+        return membershipIndex.count("SEGMENT5 and SEGMENT6");
+    }
+
+    //對照：與 andNotNewsletter 相同條件的 SQL JOIN 計數
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Long sqlJoinCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users u JOIN user_segments a ON a.user_id = u.id "
+                + "AND a.segment_id = 1 JOIN user_segments b ON b.user_id = u.id AND b.segment_id = 3 "
+                + "WHERE u.has_newsletter = FALSE", Long.class);
+    }
+}
@@ -0,0 +1,107 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.enums.SegmentType;
+import com.gtalent.commerce.service.responses.BulkAssignResponse;
+import com.gtalent.commerce.service.responses.UserSegmentResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//批次分配 1M 筆 (userId, segmentId) 的耗時 (每次 iteration 從空的 user_segments 開始)，並與逐筆 /assign 比較
+//H2 以 MySQL 相容模式執行 INSERT ... ON DUPLICATE KEY UPDATE
+@State(Scope.Benchmark)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class UserSegmentBulkBenchmark {
+
+    private static final int USERS = 200_000;
+    private static final int PAIRS = 1_000_000;
+    private static final int INSERT_BATCH = 10_000;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private UserSegmentBulkService bulkService;
+    private UserSegmentService userSegmentService;
+    private SegmentMembershipIndex membershipIndex;
+    private String csv;
+    private final Random random = new Random(42);
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(new Class<?>[]{UserSegmentBulkService.class, UserSegmentService.class,
+                        SegmentMembershipIndex.class, ReferenceDataRegistry.class},
+                "spring.datasource.url=jdbc:h2:mem:bulk-benchmark;MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        bulkService = context.getBean(UserSegmentBulkService.class);
+        userSegmentService = context.getBean(UserSegmentService.class);
+        membershipIndex = context.getBean(SegmentMembershipIndex.class);
+
+        for (SegmentType type : SegmentType.values()) {
+            jdbcTemplate.update("INSERT INTO segments (id, names) VALUES (?, ?)", type.getId(), type.getName());
+        }
+        List<Object[]> users = new ArrayList<>(INSERT_BATCH);
+        for (int id = 1; id <= USERS; id++) {
+            users.add(new Object[]{id, "user" + id + "@example.com"});
+            if (users.size() == INSERT_BATCH) {
+                jdbcTemplate.batchUpdate("INSERT INTO users (id, first_name, last_name, email, birthday, address, city, "
+                        + "state, zipcode, password, has_newsletter, first_seen) VALUES (?, 'first', 'last', ?, "
+                        + "DATE '2000-01-01', 'address', 'city', 'state', '100', 'secret', FALSE, LOCALTIMESTAMP)",
+                        users);
+                users.clear();
+            }
+        }
+
+        //1% 的使用者不存在；(userId, segmentId) 可能重複
+        StringBuilder pairs = new StringBuilder(PAIRS * 12);
+        for (int i = 0; i < PAIRS; i++) {
+            int userId = random.nextInt(100) == 0 ? USERS + 1 + random.nextInt(1000) : 1 + random.nextInt(USERS);
+            pairs.append(userId).append(',').append(1 + random.nextInt(SegmentType.values().length)).append('\n');
+        }
+        csv = pairs.toString();
+    }
+
+    @Setup(Level.Iteration)
+    public void clearAssignments() {
+        jdbcTemplate.update("DELETE FROM user_segments");
+        membershipIndex.rebuild();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public BulkAssignResponse bulkAssign() throws IOException {
+        return bulkService.assignFromCsv(new StringReader(csv));
+    }
+
+    //逐筆分配 (原本的 /assign)：三次查詢 + INSERT
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public UserSegmentResponse singleAssign() {
+        return userSegmentService.assignUserToSegment(1 + random.nextInt(USERS), 1 + random.nextInt(6));
+    }
+}
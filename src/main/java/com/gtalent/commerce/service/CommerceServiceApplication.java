@@ -7,6 +7,7 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(scanBasePackages = "com.gtalent.commerce.service")  //表示這邊是此專案的"Web服務"的"進入點"
 @EnableJpaRepositories("com.gtalent.commerce.service.repositories")
+@EnableScheduling  //定時任務 (例如登入時間緩衝的批次寫入)
 public class CommerceServiceApplication {
 
 	public static void main(String[] args) {
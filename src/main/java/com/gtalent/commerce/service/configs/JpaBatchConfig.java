@@ -0,0 +1,40 @@
+package com.gtalent.commerce.service.configs;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@Configuration
+public class JpaBatchConfig {
+
+    static final int BATCH_SIZE = 50;
+
+    @Bean
+    //開啟 Hibernate 的 JDBC batch：同一種 INSERT / UPDATE 累積 BATCH_SIZE 筆後一次送出
+    //MySQL 連線需加上 rewriteBatchedStatements=true，驅動程式才會把 batch 合併成單一多值 INSERT
+    public HibernatePropertiesCustomizer jdbcBatchCustomizer() {
+        return properties -> {
+            properties.put("hibernate.jdbc.batch_size", BATCH_SIZE);
+            properties.put("hibernate.order_inserts", true);
+            properties.put("hibernate.order_updates", true);
+        };
+    }
+
+    @Bean
+    //orders_items 由 IDENTITY 改為 sequence 後，MySQL 以 orders_items_seq 表模擬 sequence
+    //啟動時確保其值大於現有最大 ID，避免新配置的 ID 與舊資料衝突
+    public CommandLineRunner alignOrderItemSequence(JdbcTemplate jdbcTemplate) {
+        return args -> {
+            Integer tables = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM information_schema.tables " +
+                    "WHERE table_schema = DATABASE() AND table_name = 'orders_items_seq'", Integer.class);
+            if (tables == null || tables == 0) {
+                return;  //資料庫原生支援 sequence，不需要調整
+            }
+            jdbcTemplate.update("UPDATE orders_items_seq SET next_val = GREATEST(next_val, " +
+                    "(SELECT COALESCE(MAX(id), 0) + ? FROM orders_items))", BATCH_SIZE + 1);
+        };
+    }
+}
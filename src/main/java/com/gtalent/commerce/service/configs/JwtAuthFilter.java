@@ -1,7 +1,6 @@
 package com.gtalent.commerce.service.configs;
 
-import com.gtalent.commerce.service.models.User;
-import com.gtalent.commerce.service.repositories.SegmentRepository;
+import com.gtalent.commerce.service.dto.AuthPrincipal;
 import com.gtalent.commerce.service.repositories.UserRepository;
 import com.gtalent.commerce.service.services.JwtService;
 import jakarta.servlet.FilterChain;
@@ -27,6 +26,8 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     private JwtService jwtService;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private JwtPrincipalCache principalCache;
 
 
     @Override
@@ -44,14 +45,15 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         String jwtToken = authHeader.substring(7);
         String email = jwtService.getEmailFromToken(jwtToken);
         if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            // 從資料庫查使用者並建立 Authentication -> db裡面找到對應的 username
-            Optional<User> user = userRepository.findByEmail(email);
-            if (user.isPresent()) {
+            // 先查快取，沒有才從資料庫查使用者並建立 Authentication -> db裡面找到對應的 username
+            Optional<AuthPrincipal> principal = principalCache.get(email, subject -> userRepository.findByEmail(subject)
+                    .map(user -> new AuthPrincipal(user.getId(), user.getEmail(), user.getRole())));
+            if (principal.isPresent()) {
                 // *** 若使用 Spring Security (library) 必須包含 授權 (Authorization) 邏輯 -> "該用戶能做什麼?" ***
-                List<? extends GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority(user.get().getRole()));
+                List<? extends GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority(principal.get().getRole()));
                 // 該 token 並非 jwt token，而是 Spring Security 內部使用的 token (包含 user & authorities)
                 UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
-                        user.get(), null, authorities);
+                        principal.get(), null, authorities);
                 // 將 內部使用的 token 投進 Spring Security 令牌認證箱 (SecurityContextHolder)
                 SecurityContextHolder.getContext().setAuthentication(authenticationToken);
             }
@@ -4,6 +4,7 @@ import com.gtalent.commerce.service.models.User;
 import com.gtalent.commerce.service.repositories.UserRepository;
 import com.gtalent.commerce.service.requests.LoginRequest;
 import com.gtalent.commerce.service.services.JwtService;
+import com.gtalent.commerce.service.services.SegmentMembershipIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
@@ -24,12 +25,16 @@ public class JwtAuthService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private SegmentMembershipIndex membershipIndex;
+
     public String register(User user) {
         user.setPassword(passwordEncoder.encode(user.getPassword()));  //將使用者的原始密碼加密後再存入資料庫
         userRepository.save(user);
         /* 將 User 物件存到資料庫
            1.如果是新使用者 → 會 INSERT
            2.如果已存在 → 會 UPDATE*/
+        membershipIndex.putUser(user.getId(), Boolean.TRUE.equals(user.getHasNewsletter()));  //同步 Segment 成員索引
         return jwtService.generateToken(user);  //註冊成功後，立即產生一個 JWT token 給前端作為授權使用
     }
 
@@ -0,0 +1,84 @@
+package com.gtalent.commerce.service.configs;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gtalent.commerce.service.dto.AuthPrincipal;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+//快取已驗證 JWT 的使用者 (以 token subject = email 為 key)，避免每個請求都查一次 users
+//1.Caffeine 快取：容量有上限 (W-TinyLFU 淘汰)，每筆項目有存活時間 (TTL)，過期後重新查資料庫
+//2.命中率、筆數、淘汰次數透過 Micrometer 提供 (cache.* , cache=jwt.principal)，方便調整容量
+//3.查詢不持有鎖 -> 每次查詢先登記一個 token，invalidate() 會移除它；查完時 token 已不在代表期間內資料已變更，結果不快取
+@Component
+public class JwtPrincipalCache implements MeterBinder {
+
+    private final Cache<String, AuthPrincipal> entries;
+    private final ConcurrentMap<String, Object> loading = new ConcurrentHashMap<>();  //查詢中的 subject -> token (只有進行中的查詢)
+
+    public JwtPrincipalCache(@Value("${jwt.principal-cache.maximum-size:10000}") long maximumSize,
+                             @Value("${jwt.principal-cache.ttl:5m}") Duration ttl) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    //取得快取中的使用者，沒有或已過期時呼叫 loader 查詢 (查不到的結果不快取)
+    public Optional<AuthPrincipal> get(String subject, Function<String, Optional<AuthPrincipal>> loader) {
+        AuthPrincipal cached = entries.getIfPresent(subject);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Object token = new Object();
+        loading.put(subject, token);
+
+        //不持有鎖查資料庫，避免慢查詢擋住其他請求
+        Optional<AuthPrincipal> loaded;
+        try {
+            loaded = loader.apply(subject);
+        } catch (RuntimeException e) {
+            loading.remove(subject, token);
+            throw e;
+        }
+        //compute 對同一個 subject 與 invalidate() 互斥 -> 檢查 token 與放入快取之間不會插入失效
+        loading.computeIfPresent(subject, (key, current) -> {
+            if (current != token) {
+                return current;  //同一 subject 有較新的查詢，由它負責快取
+            }
+            loaded.ifPresent(principal -> entries.put(key, principal));
+            return null;
+        });
+        return loaded;
+    }
+
+    //使用者 email / 角色變更或刪除時呼叫
+    public void invalidate(String subject) {
+        if (subject == null) {
+            return;
+        }
+        loading.compute(subject, (key, current) -> {
+            entries.invalidate(key);
+            return null;  //進行中的查詢結果不會被快取
+        });
+    }
+
+    public long size() {
+        return entries.estimatedSize();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, entries, "jwt.principal");
+    }
+}
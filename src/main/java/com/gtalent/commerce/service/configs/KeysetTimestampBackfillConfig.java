@@ -0,0 +1,16 @@
+package com.gtalent.commerce.service.configs;
+
+import com.gtalent.commerce.service.services.KeysetTimestampBackfill;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class KeysetTimestampBackfillConfig {
+
+    @Bean
+    //啟動時 (搜尋索引建立前) 回填沒有建立時間的舊產品與使用者
+    public CommandLineRunner backfillKeysetTimestamps(KeysetTimestampBackfill backfill) {
+        return args -> backfill.backfill();
+    }
+}
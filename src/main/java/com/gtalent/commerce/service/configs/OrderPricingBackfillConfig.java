@@ -0,0 +1,20 @@
+package com.gtalent.commerce.service.configs;
+
+import com.gtalent.commerce.service.services.OrderPricingBackfill;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class OrderPricingBackfillConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "order.pricing.backfill.enabled", havingValue = "true")
+    //啟動時回填尚未寫入運費與稅金的舊訂單 (order.pricing.backfill.enabled=true 時才執行，完成後可關閉)
+    public CommandLineRunner backfillOrderPricing(OrderPricingBackfill backfill,
+                                                  @Value("${order.pricing.backfill.chunk-size:500}") int chunkSize) {
+        return args -> backfill.backfill(chunkSize);
+    }
+}
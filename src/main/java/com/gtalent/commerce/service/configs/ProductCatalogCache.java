@@ -0,0 +1,112 @@
+package com.gtalent.commerce.service.configs;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gtalent.commerce.service.responses.ProductDetailResponse;
+import com.gtalent.commerce.service.responses.ProductListResponse;
+import com.gtalent.commerce.service.utils.AfterCommit;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+//產品目錄的本機快取 (Caffeine)，放在 ProductService 的明細與分類列表查詢前面
+//1.容量有上限，淘汰策略為 W-TinyLFU；每筆項目有存活時間 (TTL)
+//2.同一個 key 同時未命中時只有一個執行緒查資料庫，其他執行緒等待結果 (避免快取擊穿)
+//3.產品新增 / 修改 / 刪除與庫存變動時精準失效：只移除受影響的明細與列表頁
+//4.命中率、載入時間、淘汰次數透過 Micrometer 提供 (cache.* , cache=product.details / product.pages)
+@Component
+public class ProductCatalogCache implements MeterBinder {
+
+    private final Cache<Integer, ProductDetailResponse> details;
+    private final Cache<PageKey, Page<ProductListResponse>> pages;
+
+    public ProductCatalogCache(@Value("${product.cache.maximum-size:10000}") long maximumSize,
+                               @Value("${product.cache.ttl:10m}") Duration ttl,
+                               @Value("${product.cache.page-maximum-size:1000}") long pageMaximumSize,
+                               @Value("${product.cache.page-ttl:1m}") Duration pageTtl) {
+        this.details = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.pages = Caffeine.newBuilder()
+                .maximumSize(pageMaximumSize)
+                .expireAfterWrite(pageTtl)
+                .recordStats()
+                .build();
+    }
+
+    //1.產品明細 (loader 拋出例外時不快取，例如產品不存在)
+    public ProductDetailResponse getDetail(int productId, Supplier<ProductDetailResponse> loader) {
+        return details.get(productId, id -> loader.get());
+    }
+
+    //2.分類列表頁 (categoryId 為 null 代表全部分類)
+    public Page<ProductListResponse> getPage(Integer categoryId, Pageable pageable,
+                                             Supplier<Page<ProductListResponse>> loader) {
+        return pages.get(new PageKey(categoryId, pageable), key -> loader.get());
+    }
+
+    //3.產品新增 / 修改 / 刪除：移除明細，以及所屬分類 (含修改前分類) 與「全部分類」的列表頁
+    public void evictProduct(int productId, Collection<Integer> categoryIds) {
+        AfterCommit.run(() -> {
+            details.invalidate(productId);
+            pages.asMap().entrySet().removeIf(entry -> entry.getKey().categoryId() == null
+                    || categoryIds.contains(entry.getKey().categoryId())
+                    || contains(entry.getValue(), productId));
+        });
+    }
+
+    //4.庫存變動：分頁範圍不變，只移除明細與含有這些產品的列表頁
+    public void evictStock(Collection<Integer> productIds) {
+        AfterCommit.run(() -> {
+            details.invalidateAll(productIds);
+            pages.asMap().values().removeIf(page -> productIds.stream().anyMatch(id -> contains(page, id)));
+        });
+    }
+
+    //5.評分統計變動：只有明細含評分，列表頁不受影響
+    public void evictDetail(int productId) {
+        AfterCommit.run(() -> details.invalidate(productId));
+    }
+
+    private static boolean contains(Page<ProductListResponse> page, int productId) {
+        return page.getContent().stream().anyMatch(product -> product.getId() == productId);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindCache(registry, details, "product.details");
+        bindCache(registry, pages, "product.pages");
+    }
+
+    //CaffeineCacheMetrics 只替 LoadingCache 註冊載入指標 -> 這裡的 get(key, loader) 需自行補上
+    private static void bindCache(MeterRegistry registry, Cache<?, ?> cache, String name) {
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+        TimeGauge.builder("cache.load.duration", cache, TimeUnit.NANOSECONDS, c -> c.stats().totalLoadTime())
+                .tag("cache", name)
+                .register(registry);
+        FunctionCounter.builder("cache.load", cache, c -> c.stats().loadSuccessCount())
+                .tag("cache", name)
+                .tag("result", "success")
+                .register(registry);
+        FunctionCounter.builder("cache.load", cache, c -> c.stats().loadFailureCount())
+                .tag("cache", name)
+                .tag("result", "failure")
+                .register(registry);
+    }
+
+    private record PageKey(Integer categoryId, Pageable pageable) {
+    }
+}
@@ -0,0 +1,20 @@
+package com.gtalent.commerce.service.configs;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+//排程執行緒池：Spring Boot 預設只有一條執行緒，所有 @Scheduled 依序執行
+//索引重建 (自動完成每 10 分鐘、搜尋 / 評論 / Segment / 評分統計可設定排程) 每次可能數十秒，
+//期間會延後登入時間緩衝的寫入與 JWT 金鑰檔的輪詢 -> 預設改為 4 條，可用 spring.task.scheduling.pool.size 調整
+//(virtual-threads profile 的排程每個任務各自一條虛擬執行緒，不使用這個設定)
+@Configuration
+public class SchedulingConfig {
+
+    @Bean
+    public ThreadPoolTaskSchedulerCustomizer schedulingPoolSize(
+            @Value("${spring.task.scheduling.pool.size:4}") int poolSize) {
+        return scheduler -> scheduler.setPoolSize(poolSize);
+    }
+}
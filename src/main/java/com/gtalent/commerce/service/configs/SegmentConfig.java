@@ -3,6 +3,7 @@ package com.gtalent.commerce.service.configs;
 import com.gtalent.commerce.service.enums.SegmentType;
 import com.gtalent.commerce.service.models.Segment;
 import com.gtalent.commerce.service.repositories.SegmentRepository;
+import com.gtalent.commerce.service.services.ReferenceDataRegistry;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -11,7 +12,7 @@ import org.springframework.context.annotation.Configuration;
 public class SegmentConfig {
     @Bean
     //CommandLineRunner -> 是 Spring Boot 提供的一個接口，啟動完成後，DB 裡面一定有 SegmentType 定義的資料。
-    public CommandLineRunner initSegments(SegmentRepository segmentRepository) {
+    public CommandLineRunner initSegments(SegmentRepository segmentRepository, ReferenceDataRegistry referenceData) {
         return args -> {
             for (SegmentType type : SegmentType.values()) {  //遍歷 Enum SegmentType 的所有常數
                 if (!segmentRepository.existsByName(type.getName())) {
@@ -20,6 +21,7 @@ public class SegmentConfig {
                     segmentRepository.save(segment);  //如果沒有就建立新的 Segment 實體並存入資料庫
                 }
             }
+            referenceData.reloadSegments();  //Segment 建立完成後讀入記憶體，之後查詢不經過資料庫
         };
     }
 }
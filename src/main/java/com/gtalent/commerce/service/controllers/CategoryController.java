@@ -28,15 +28,20 @@ public class CategoryController {
     }
 
     //1.查詢所有分類 (包含分類下的產品列表)
-    @Operation(summary = "取得所有分類", description = "回傳分類及分類底下產品資訊",
+    @Operation(summary = "取得所有分類", description = "回傳分類及分類底下產品資訊；productLimit 限制每個分類的產品數，" +
+                    "summary=true 時只回傳每個分類的產品數",
                security = @SecurityRequirement(name = "bearerAuth"))
     @GetMapping
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "成功取得分類列表"),
+            @ApiResponse(responseCode = "400", description = "輸入錯誤"),
             @ApiResponse(responseCode = "500", description = "系統錯誤")
     })
-    public ResponseEntity<List<CategoryResponse>> getAllCategories() {
-        List<CategoryResponse> categories = categoryService.getAllCategories();
+    public ResponseEntity<List<CategoryResponse>> getAllCategories(
+            @RequestParam(required = false) Integer productLimit,  //每個分類最多回傳的產品數
+            @RequestParam(defaultValue = "false") boolean summary  //只回傳產品數
+    ) {
+        List<CategoryResponse> categories = categoryService.getAllCategories(productLimit, summary);
         return ResponseEntity.ok(categories);
     }
 
@@ -8,6 +8,8 @@ import com.gtalent.commerce.service.requests.LoginRequest;
 import com.gtalent.commerce.service.responses.AuthResponse;
 import com.gtalent.commerce.service.responses.LoginResponse;
 import com.gtalent.commerce.service.services.JwtService;
+import com.gtalent.commerce.service.services.LoginTimestampBuffer;
+import com.gtalent.commerce.service.services.SegmentMembershipIndex;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -33,13 +35,18 @@ public class JwtAuthController {
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
     private final JwtAuthService jwtAuthService;
+    private final LoginTimestampBuffer loginTimestampBuffer;
+    private final SegmentMembershipIndex membershipIndex;
 
     public JwtAuthController(UserRepository userRepository, PasswordEncoder passwordEncoder,
-                             JwtService jwtService, JwtAuthService jwtAuthService) {
+                             JwtService jwtService, JwtAuthService jwtAuthService,
+                             LoginTimestampBuffer loginTimestampBuffer, SegmentMembershipIndex membershipIndex) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.jwtService = jwtService;
         this.jwtAuthService = jwtAuthService;
+        this.loginTimestampBuffer = loginTimestampBuffer;
+        this.membershipIndex = membershipIndex;
     }
 
     @Operation(
@@ -76,6 +83,7 @@ public class JwtAuthController {
         user.setHasNewsletter(request.getHasNewsletter());
 
         userRepository.save(user);
+        membershipIndex.putUser(user.getId(), Boolean.TRUE.equals(user.getHasNewsletter()));  //同步 Segment 成員索引
         //產生 JWT
         String token = jwtService.generateToken(user);
         //回傳 DTO (前端只需要token)
@@ -108,8 +116,9 @@ public class JwtAuthController {
         //3.產生JWT
         String token = jwtService.generateToken(user);
         //4.更新最後登入時間
+        //  先寫入緩衝，由 LoginTimestampBuffer 定時批次寫回 (不 save 整個使用者、不開寫入交易)
         user.setUpdateLoginTime(LocalDateTime.now());
-        userRepository.save(user);
+        loginTimestampBuffer.record(user.getId(), user.getUpdateLoginTime());
         //5.回傳登入資訊
         LoginResponse response = new LoginResponse(
                 user.getId(),
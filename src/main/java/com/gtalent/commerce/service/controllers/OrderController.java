@@ -1,10 +1,13 @@
 package com.gtalent.commerce.service.controllers;
 
+import com.gtalent.commerce.service.enums.ExportFormat;
 import com.gtalent.commerce.service.enums.OrderStatus;
 import com.gtalent.commerce.service.requests.OrderRequest;
 import com.gtalent.commerce.service.requests.PatchOrderRequest;
+import com.gtalent.commerce.service.responses.CursorPageResponse;
 import com.gtalent.commerce.service.responses.OrderResponse;
 import com.gtalent.commerce.service.responses.PendingOrderResponse;
+import com.gtalent.commerce.service.services.OrderExportService;
 import com.gtalent.commerce.service.services.OrderService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -15,10 +18,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
 
 @Tag(name = "Order 功能-第一版", description = "提供訂單列表 CRUD 功能")
@@ -27,10 +36,12 @@ import java.util.List;
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderExportService orderExportService;
 
     @Autowired
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, OrderExportService orderExportService) {
         this.orderService = orderService;
+        this.orderExportService = orderExportService;
     }
 
     //1.取得所有訂單
@@ -62,6 +73,54 @@ public class OrderController {
         return orderService.getOrdersByPage(status, pageable);
     }
 
+    //1.2 依訂單狀態篩選取得游標分頁列表
+    @GetMapping("/orders/cursor")
+    @Operation(summary = "取得訂單游標分頁列表",
+            description = "依下單時間由新到舊，以 nextCursor 取得下一頁；深分頁不需 OFFSET 掃描。" +
+                    "includeTotal=true 時才計算總筆數")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "成功取得訂單列表"),
+            @ApiResponse(responseCode = "400", description = "輸入參數錯誤 (例如游標無效、每頁筆數超出 1 ~ 100)"),
+            @ApiResponse(responseCode = "500", description = "伺服器內部錯誤")
+    })
+    public CursorPageResponse<OrderResponse> getOrdersByCursor(
+            @RequestParam(required = false) String cursor,  //上一頁回傳的 nextCursor，第一頁不帶
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestParam(required = false) OrderStatus status
+    ) {
+        return orderService.getOrdersAfter(status, cursor, size, includeTotal);
+    }
+
+    //1.3 匯出訂單 (邊讀邊寫到回應，不會一次把所有訂單載入記憶體)
+    @GetMapping("/export")
+    @Operation(summary = "匯出訂單",
+            description = "以 NDJSON (每行一筆訂單，含商品明細) 或 CSV (每行一筆訂單摘要) 串流匯出，" +
+                    "可依訂單狀態與下單日期區間 (from、to 皆包含當天) 篩選")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "開始匯出"),
+            @ApiResponse(responseCode = "400", description = "輸入參數錯誤 (例如起始日期晚於結束日期)")
+    })
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        if (from != null && to != null && from.isAfter(to)) {
+            //串流開始後就無法再回傳 400，先在這裡檢查
+            throw new IllegalArgumentException("起始日期不可晚於結束日期");
+        }
+        boolean csv = format == ExportFormat.CSV;
+        StreamingResponseBody body = out -> orderExportService.exportOrders(status, from, to, format, out);
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"orders." + (csv ? "csv" : "ndjson") + "\"")
+                .body(body);
+    }
+
     //2.取得單筆訂單
     @GetMapping("/{id}")
     @Operation(summary = "取得單筆訂單", description = "依訂單 ID 回傳訂單詳細資訊")
@@ -116,13 +175,19 @@ public class OrderController {
     //6.待處理訂單
     @GetMapping("/pending")
     @Operation(summary = "取得待處理訂單列表",
-            description = "列出所有待處理訂單 (狀態為 ORDERED)，包含商品明細與金額")
+            description = "分頁列出待處理訂單 (狀態為 ORDERED)，依下單時間由舊到新，包含總金額與商品數量；" +
+                    "olderThanMinutes 可只列出下單超過 N 分鐘仍未處理的訂單")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "成功取得待處理訂單列表"),
+            @ApiResponse(responseCode = "400", description = "輸入參數錯誤"),
             @ApiResponse(responseCode = "500", description = "伺服器內部錯誤")
     })
-    public List<PendingOrderResponse> getPendingOrders() {
-        return orderService.getPendingOrders();
+    public Page<PendingOrderResponse> getPendingOrders(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) Integer olderThanMinutes  //只列出下單超過 N 分鐘的訂單
+    ) {
+        return orderService.getPendingOrders(olderThanMinutes, PageRequest.of(page, size));
     }
 
 
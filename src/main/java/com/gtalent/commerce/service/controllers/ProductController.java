@@ -1,6 +1,5 @@
 package com.gtalent.commerce.service.controllers;
 
-import com.gtalent.commerce.service.models.Product;
 import com.gtalent.commerce.service.requests.CreateProductRequest;
 import com.gtalent.commerce.service.responses.*;
 import com.gtalent.commerce.service.services.ProductService;
@@ -61,25 +60,45 @@ public class ProductController {
     ) {
         //建立 Pageable 物件，用於分頁查詢
         Pageable pageable = PageRequest.of(page, size);
-        //呼叫 service，返回 Page<Product>
-        Page<Product> productsPage = productService.getAllProductPages(query, categoryId, stockFrom, stockTo, pageable);
-        //將 Page<Product> 轉成 Page<ProductListResponse>
-        return productsPage.map(this::toResponse);  //直接用 map 轉 DTO
+        //呼叫 service，返回 Page<ProductListResponse> (只依分類瀏覽時會走快取)
+        return productService.getAllProductPages(query, categoryId, stockFrom, stockTo, pageable);
     }
-    private ProductListResponse toResponse(Product product) {
-        CategoryResponse category = new CategoryResponse();
-        category.setId(product.getCategory().getId());
-        category.setName(product.getCategory().getName());
-
-        return ProductListResponse.builder()
-                .id(product.getId())
-                .reference(product.getReference())
-                .imageUrl(product.getImageUrl())
-                .thumbnailUrl(product.getThumbnailUrl())
-                .price(product.getPrice())
-                .stock(product.getStock())
-                .category(category)
-                .build();
+
+    //1.2 查詢所有產品 (Keyset 分頁)
+    @GetMapping("/cursor")
+    @Operation(summary = "取得產品清單（游標分頁 + 搜尋）",
+            description = "依建立時間由新到舊，以 nextCursor 取得下一頁；深分頁不需 OFFSET 掃描。" +
+                    "includeTotal=true 時才計算總筆數")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "成功取得產品清單"),
+            @ApiResponse(responseCode = "400", description = "輸入錯誤 (例如游標無效、每頁筆數超出 1 ~ 100)"),
+            @ApiResponse(responseCode = "500", description = "伺服器內部錯誤")
+    })
+    public CursorPageResponse<ProductListResponse> getProductsByCursor(
+            @RequestParam(required = false) String cursor,  //上一頁回傳的 nextCursor，第一頁不帶
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestParam(defaultValue = "") String query,
+            @RequestParam(required = false) Integer categoryId,
+            @RequestParam(required = false) Integer stockFrom,
+            @RequestParam(required = false) Integer stockTo
+    ) {
+        return productService.getProductsAfter(query, categoryId, stockFrom, stockTo, cursor, size, includeTotal);
+    }
+
+    //1.3 產品編號自動完成
+    @GetMapping("/suggest")
+    @Operation(summary = "產品編號自動完成",
+            description = "依產品編號前綴 (不分大小寫) 回傳銷售量最高的產品，供輸入時即時提示；不查詢資料庫")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "成功取得建議清單"),
+            @ApiResponse(responseCode = "400", description = "建議筆數超出範圍 (1 ~ 50)")
+    })
+    public List<ProductSuggestResponse> suggestReferences(
+            @RequestParam(defaultValue = "") String prefix,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        return productService.suggestReferences(prefix, limit);
     }
 
     //2.查詢單一產品
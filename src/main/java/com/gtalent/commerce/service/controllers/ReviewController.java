@@ -6,7 +6,9 @@ import com.gtalent.commerce.service.exceptions.ResourceNotFoundException;
 import com.gtalent.commerce.service.models.Review;
 import com.gtalent.commerce.service.requests.CreateReviewRequest;
 import com.gtalent.commerce.service.requests.UpdateReviewRequest;
+import com.gtalent.commerce.service.responses.ProductRatingResponse;
 import com.gtalent.commerce.service.responses.ReviewResponse;
+import com.gtalent.commerce.service.services.ProductRatingService;
 import com.gtalent.commerce.service.services.ReviewService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -25,9 +27,24 @@ import org.springframework.web.bind.annotation.*;
 public class ReviewController {
 
     private final ReviewService reviewService;
+    private final ProductRatingService productRatingService;
 
-    public ReviewController(ReviewService reviewService) {
+    public ReviewController(ReviewService reviewService, ProductRatingService productRatingService) {
         this.reviewService = reviewService;
+        this.productRatingService = productRatingService;
+    }
+
+    //1.1 取得某產品的評分統計 (評論數、平均評分、1~5 星分布)
+    @Operation(summary = "取得某產品的評分統計",
+            description = "只計入審核通過 (ACCEPTED) 的評論；統計隨評論新增、修改、刪除同步更新，不需分頁查詢評論")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "成功取得評分統計"),
+            @ApiResponse(responseCode = "400", description = "產品不存在")
+    })
+    @GetMapping("/products/{productId}/rating")
+    public ProductRatingResponse getProductRating(
+            @Parameter(description = "產品ID", required = true) @PathVariable Integer productId) {
+        return productRatingService.getRating(productId);
     }
 
     //1.取得某產品的所有評論 (分頁 + 排序 + 過濾)
@@ -4,6 +4,7 @@ import com.gtalent.commerce.service.models.UserSegment;
 import com.gtalent.commerce.service.requests.CreateUserRequest;
 import com.gtalent.commerce.service.requests.UpdateUserRequest;
 import com.gtalent.commerce.service.responses.CreateUserResponse;
+import com.gtalent.commerce.service.responses.CursorPageResponse;
 import com.gtalent.commerce.service.responses.UpdateUserResponse;
 import com.gtalent.commerce.service.responses.UserResponse;
 import com.gtalent.commerce.service.models.User;
@@ -114,6 +115,42 @@ public class UserController {
            即"從資料庫取得的分頁結果"中的"符合條件的總筆數"。*/
     }
 
+    //1.2 取得使用者(游標分頁)
+    @GetMapping("/cursor")
+    @Operation(summary = "取得使用者清單（游標分頁 + 搜尋）",
+            description = "依建立時間由新到舊，以 nextCursor 取得下一頁；深分頁不需 OFFSET 掃描。" +
+                    "includeTotal=true 時才計算總筆數",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "成功取得使用者清單"),
+            @ApiResponse(responseCode = "400", description = "輸入錯誤 (例如游標無效、每頁筆數超出 1 ~ 100)"),
+            @ApiResponse(responseCode = "500", description = "伺服器內部錯誤")
+    })
+    public CursorPageResponse<UserResponse> getUsersByCursor(
+            @RequestParam(required = false) String cursor,  //上一頁回傳的 nextCursor，第一頁不帶
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestParam(defaultValue = "") String query,
+            @RequestParam(required = false) Boolean hasNewsletter,
+            @RequestParam(required = false) Integer segmentId
+    ) {
+        return userService.getUsersAfter(query, hasNewsletter, segmentId, cursor, size, includeTotal)
+                .map(user -> {
+                    UserResponse ur = new UserResponse();
+                    ur.setId(user.getId());
+                    ur.setFirstName(user.getFirstName());
+                    ur.setLastName(user.getLastName());
+                    ur.setHasNewsletter(user.getHasNewsletter());
+
+                    List<UserSegmentResponse> segmentResponses = new ArrayList<>();
+                    for (UserSegment us : user.getUserSegments()) {
+                        segmentResponses.add(new UserSegmentResponse(us));
+                    }
+                    ur.setSegments(segmentResponses);
+                    return ur;
+                });
+    }
+
     //2.依照 ID 取得單一使用者
     @GetMapping("/{id}")
     @Operation(summary = "依照 ID 取得單一使用者",description = "依照使用者 ID 取得單一使用者資訊。")
@@ -1,20 +1,27 @@
 package com.gtalent.commerce.service.controllers;
 
 import com.gtalent.commerce.service.requests.UserSegmentRequest;
+import com.gtalent.commerce.service.responses.BulkAssignResponse;
 import com.gtalent.commerce.service.responses.UserResponse;
 import com.gtalent.commerce.service.responses.UserSegmentResponse;
+import com.gtalent.commerce.service.services.UserSegmentBulkService;
 import com.gtalent.commerce.service.services.UserSegmentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,6 +32,8 @@ import java.util.Optional;
 public class UserSegmentController {
     @Autowired
     private UserSegmentService userSegmentService;
+    @Autowired
+    private UserSegmentBulkService userSegmentBulkService;
 
     //1.查詢某使用者所屬的 Segment
     @GetMapping("/{userId}/segments")
@@ -97,4 +106,53 @@ public class UserSegmentController {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 找不到 → 回傳 404
         }
     }
+
+    //5.依 Segment 查詢式計算使用者數 (記憶體 bitmap 集合運算，不查資料庫)
+    @GetMapping("/segments/count")
+    @Operation(summary = "依 Segment 查詢式計算使用者數",
+            description = "查詢式由 Segment 名稱或 id、newsletter、all 與 and / or / not / - 組成，"
+                    + "例如 SEGMENT1 and SEGMENT3 and not newsletter")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "成功取得使用者數"),
+            @ApiResponse(responseCode = "400", description = "查詢式格式錯誤或 Segment 不存在"),
+            @ApiResponse(responseCode = "503", description = "Segment 索引建立中，請稍後再試")
+    })
+    public ResponseEntity<Long> countUsers(@RequestParam String expression) {
+        return ResponseEntity.ok(userSegmentService.countUsers(expression));
+    }
+
+    //6.依 Segment 查詢式列出使用者 (分頁，依 id 由小到大)
+    @GetMapping("/segments/users")
+    @Operation(summary = "依 Segment 查詢式列出使用者", description = "查詢式格式同 /segments/count")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "成功取得使用者清單"),
+            @ApiResponse(responseCode = "400", description = "查詢式格式錯誤或 Segment 不存在"),
+            @ApiResponse(responseCode = "503", description = "Segment 索引建立中，請稍後再試")
+    })
+    public Page<UserResponse> getUsersByExpression(@RequestParam String expression,
+                                                   @RequestParam(defaultValue = "0") int page,
+                                                   @RequestParam(defaultValue = "10") int size) {
+        return userSegmentService.getUsersByExpression(expression, PageRequest.of(page, size));
+    }
+
+    //7.批次分配 Segment (串流上傳，CSV 每行 "userId,segmentId" 或 JSON 陣列)
+    @PostMapping(value = "/assign/bulk", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    @Operation(summary = "批次分配 Segment (CSV)", description = "每行 userId,segmentId，可有標題列；回傳成功筆數與每筆失敗原因")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "處理完成 (部分資料列可能失敗，見 failures)"),
+            @ApiResponse(responseCode = "500", description = "伺服器內部錯誤")
+    })
+    public ResponseEntity<BulkAssignResponse> bulkAssignCsv(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(userSegmentBulkService.assignFromCsv(request.getReader()));
+    }
+
+    @PostMapping(value = "/assign/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "批次分配 Segment (JSON)", description = "[{\"userId\": 1, \"segmentId\": 2}, ...]；回傳成功筆數與每筆失敗原因")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "處理完成 (部分資料列可能失敗，見 failures)"),
+            @ApiResponse(responseCode = "500", description = "伺服器內部錯誤")
+    })
+    public ResponseEntity<BulkAssignResponse> bulkAssignJson(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(userSegmentBulkService.assignFromJson(request.getInputStream()));
+    }
 }
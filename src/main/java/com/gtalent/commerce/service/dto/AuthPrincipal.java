@@ -0,0 +1,11 @@
+package com.gtalent.commerce.service.dto;
+
+import lombok.Value;
+
+//JWT 驗證後放進 SecurityContext 的精簡使用者資訊 (不可變，可安全快取)
+@Value
+public class AuthPrincipal {
+    int id;
+    String email;
+    String role;
+}
@@ -0,0 +1,14 @@
+package com.gtalent.commerce.service.dto;
+
+import java.math.BigDecimal;
+
+//分類底下產品列表的查詢結果 (interface projection)，只包含列表欄位與所屬分類 ID
+public interface CategoryProductRow {
+    Integer getId();
+    Integer getCategoryId();
+    String getImageUrl();
+    String getThumbnailUrl();
+    String getReference();
+    BigDecimal getPrice();
+    Integer getStock();
+}
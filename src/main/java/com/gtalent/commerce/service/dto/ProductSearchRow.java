@@ -0,0 +1,11 @@
+package com.gtalent.commerce.service.dto;
+
+import java.time.LocalDateTime;
+
+//建立產品搜尋索引時逐筆讀取的欄位 (interface projection)，description 只取前段，建立時間供游標分頁排序
+public interface ProductSearchRow {
+    Integer getId();
+    String getReference();
+    String getDescription();
+    LocalDateTime getCreatedAt();
+}
@@ -0,0 +1,8 @@
+package com.gtalent.commerce.service.dto;
+
+//建立產品編號自動完成時讀取的欄位 (interface projection)
+public interface ProductSuggestRow {
+    Integer getId();
+    String getReference();
+    Integer getSales();
+}
@@ -0,0 +1,6 @@
+package com.gtalent.commerce.service.enums;
+
+public enum ExportFormat {
+    NDJSON,  //每行一筆訂單 JSON (含商品明細)
+    CSV      //每行一筆訂單摘要 (不含商品明細)
+}
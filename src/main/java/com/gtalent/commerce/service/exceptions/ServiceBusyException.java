@@ -0,0 +1,8 @@
+package com.gtalent.commerce.service.exceptions;
+
+//服務暫時忙碌 (例如密碼雜湊的排隊已滿) -> 回傳 503，請用戶端稍後重試
+public class ServiceBusyException extends RuntimeException {
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+}
@@ -1,9 +1,11 @@
 package com.gtalent.commerce.service.handles;
 
 import com.gtalent.commerce.service.exceptions.OrderNotFoundException;
+import com.gtalent.commerce.service.exceptions.ServiceBusyException;
 import com.gtalent.commerce.service.responses.ErrorResponse;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -39,6 +41,15 @@ public class GlobalExceptionHandler {  //處理已存在的例外類別
         return buildErrorResponse("資料衝突: " + ex.getMessage(), HttpStatus.CONFLICT);
     }
 
+    //503 Service Unavailable -> ServiceBusyException -> 暫時忙碌 (例如密碼雜湊排隊已滿)，請用戶端稍後重試
+    @ExceptionHandler(ServiceBusyException.class)
+    public ResponseEntity<ErrorResponse> handleServiceBusy(ServiceBusyException ex) {
+        ResponseEntity<ErrorResponse> response = buildErrorResponse(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+        return ResponseEntity.status(response.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(response.getBody());
+    }
+
     //500 Internal Server Error -> Exception -> 其他未知錯誤
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleAll(Exception ex) {
@@ -1,6 +1,7 @@
 package com.gtalent.commerce.service.models;
 
 import com.gtalent.commerce.service.enums.OrderStatus;
+import com.gtalent.commerce.service.utils.MoneyCalculator;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -15,7 +16,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders",
+        //訂單編號不可重複
+        uniqueConstraints = @UniqueConstraint(name = "uk_orders_order_reference", columnNames = "order_reference"),
+        //Keyset 分頁依 (created_at, id) 排序與定位
+        indexes = {
+                @Index(name = "idx_orders_created_at_id", columnList = "created_at, id"),
+                //待處理訂單依狀態篩選、下單時間排序
+                @Index(name = "idx_orders_status_created_at", columnList = "status, created_at")
+        })
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -41,6 +50,12 @@ public class Order {
     @Column(name = "returned", nullable = false)
     private boolean returned = false;  //是否退貨
 
+    @Column(name = "stock_reserved", nullable = false, columnDefinition = "BOOLEAN DEFAULT FALSE")
+    private boolean stockReserved = false;  //建立訂單時是否已扣庫存 (取消時據此釋放)
+
+    @Column(name = "pricing_frozen", nullable = false, columnDefinition = "BOOLEAN DEFAULT FALSE")
+    private boolean pricingFrozen = false;  //運費與稅金是否已在建立訂單時計算並寫入 (舊訂單由 OrderPricingBackfill 補上)
+
     @Column(name = "total_amount", nullable = false)
     private BigDecimal totalAmount;  //商品總金額
 
@@ -66,7 +81,12 @@ public class Order {
     private LocalDateTime deletedAt;
 
     public BigDecimal calculateTotal() {
-        return totalAmount.add(deliveryFee).add(taxAmount);  //計算整筆訂單的總額（含運費、稅金）
+        //計算整筆訂單的總額（含運費、稅金）；金額小數位數超過 2 位時改用 BigDecimal 相加
+        try {
+            return MoneyCalculator.sum(totalAmount, deliveryFee, taxAmount);
+        } catch (ArithmeticException e) {
+            return totalAmount.add(deliveryFee).add(taxAmount);
+        }
     }
 
     /* @Enumerated(EnumType.STRING) 的作用
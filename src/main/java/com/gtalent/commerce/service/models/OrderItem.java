@@ -16,8 +16,11 @@ import java.time.LocalDate;
 @NoArgsConstructor
 @AllArgsConstructor
 public class OrderItem {
+    //使用 sequence (MySQL 以 orders_items_seq 表模擬) 預先配置 ID，明細才能以 JDBC batch 寫入
+    //IDENTITY 需要每筆 INSERT 後取回 ID，會讓 Hibernate 無法批次
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_items_seq")
+    @SequenceGenerator(name = "orders_items_seq", sequenceName = "orders_items_seq", allocationSize = 50)
     private int id;
 
     @ManyToOne
@@ -25,10 +28,25 @@ public class OrderItem {
     @ToString.Exclude  //避免循環引用
     private Order order;  //對應 orders.id
 
-    @ManyToOne
+    //LAZY -> 讀取明細時使用下單當下凍結的商品欄位，不需要再 join products
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id", nullable = false)
+    @ToString.Exclude
     private Product product;  //對應 products.id
 
+    //下單當下的商品編號與尺寸 (舊資料為 null，由 OrderPricingBackfill 補上)
+    @Column(name = "product_reference", length = 50)
+    private String productReference;
+
+    @Column(name = "width", precision = 6, scale = 2)
+    private BigDecimal width;
+
+    @Column(name = "height", precision = 6, scale = 2)
+    private BigDecimal height;
+
+    @Column(name = "depth", precision = 6, scale = 2)
+    private BigDecimal depth;
+
     @Column(name = "product_name", length = 100, nullable = false)
     private String productName;
 
@@ -41,6 +59,18 @@ public class OrderItem {
     @Column(name = "date", nullable = false)
     private LocalDate date;  // 僅存下單日期，用於列表顯示
 
+    //將商品目前的編號與尺寸複製到明細，之後商品修改也不影響這筆訂單的運費
+    public void freezeProduct(Product product) {
+        this.productReference = product.getReference();
+        this.width = product.getWidth();
+        this.height = product.getHeight();
+        this.depth = product.getDepth();
+    }
+
+    public boolean isProductFrozen() {
+        return productReference != null;
+    }
+
     public BigDecimal getTotal() {
         return price.multiply(BigDecimal.valueOf(quantity));  //計算單個商品明細的小計
     }
@@ -10,7 +10,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products",
+        //Keyset 分頁依 (created_at, id) 排序與定位
+        indexes = @Index(name = "idx_products_created_at_id", columnList = "created_at, id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -54,7 +56,7 @@ public class Product {
     private String description;
 
     @CreationTimestamp  //自動填充實體的建立時間
-    @Column(name = "created_at")
+    @Column(name = "created_at", nullable = false)  //Keyset 分頁依 (created_at, id) 定位，不可為 NULL
     private LocalDateTime createdAt;
 
     @Column(name = "deleted_at")
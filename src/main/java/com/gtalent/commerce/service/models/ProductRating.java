@@ -0,0 +1,40 @@
+package com.gtalent.commerce.service.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//產品評分統計 (只計入 ACCEPTED 且未刪除的評論)
+//由 ReviewService 在新增 / 修改 / 刪除評論時以差量 UPDATE 維護，ProductRatingService.rebuild() 可從評論重新計算
+@Entity
+@Table(name = "product_ratings")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductRating {
+    @Id
+    @Column(name = "product_id")
+    private int productId;  //對應 products.id (一個產品一筆)
+
+    @Column(name = "review_count", nullable = false)
+    private int reviewCount;  //評論數
+
+    @Column(name = "rating_sum", nullable = false)
+    private long ratingSum;  //評分總和 (平均 = ratingSum / reviewCount)
+
+    @Column(name = "stars_1", nullable = false)
+    private int stars1;  //各星等的評論數
+
+    @Column(name = "stars_2", nullable = false)
+    private int stars2;
+
+    @Column(name = "stars_3", nullable = false)
+    private int stars3;
+
+    @Column(name = "stars_4", nullable = false)
+    private int stars4;
+
+    @Column(name = "stars_5", nullable = false)
+    private int stars5;
+}
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDate;
@@ -12,7 +13,9 @@ import java.util.List;
 
 
 @Entity
-@Table(name = "users")
+@Table(name = "users",
+        //Keyset 分頁依 (first_seen, id) 排序與定位
+        indexes = @Index(name = "idx_users_first_seen_id", columnList = "first_seen, id"))
 @Data                 //Lombok: 自動產生所有欄位的 getter、setter、toString()
 @NoArgsConstructor    //Lombok: 產生 無參數建構子
 @AllArgsConstructor   //Lombok: 產生 全參數建構子
@@ -55,10 +58,11 @@ public class User {
     private Boolean hasNewsletter = false;  //默認為未訂閱 (false)
 
     @CreationTimestamp //自動填充實體的建立時間
-    @Column(name = "first_seen", updatable = false)
+    @Column(name = "first_seen", updatable = false, nullable = false)  //Keyset 分頁依 (first_seen, id) 定位
     private LocalDateTime firstLoginTime;
 
-    @Column(name = "last_seen")  //使用者登入或活動時間
+    //使用者登入或活動時間；只由 LoginTimestampBuffer 以 UPDATE 寫入，儲存使用者時不會以舊值覆蓋
+    @Column(name = "last_seen", updatable = false)
     private LocalDateTime updateLoginTime;
 
     @UpdateTimestamp
@@ -72,10 +76,14 @@ public class User {
     /* fetch = FetchType.LAZY:
        1.關聯資料不會在主實體查詢時立即被讀取，而是等到你真正 訪問關聯屬性 時才去資料庫查詢。
        2.減少不必要的資料庫查詢以提高效能。*/
-    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
-    private List<UserSegment> userSegments;
     /* fetch = FetchType.EAGER:
        1.立即載入：只要查 User，JPA 會自動同時抓出所有關聯的 UserSegment。
-       2.適用情境：關聯資料量小，幾乎每次都需要用到時方便。*/
+       2.適用情境：關聯資料量小，幾乎每次都需要用到時方便。
+       登入、JWT 驗證、修改使用者都用不到 Segment -> 改為 LAZY；需要 Segment 的查詢在 UserRepository 以 entity graph 一次載入。*/
+    /* @BatchSize:
+       其他情況 (例如分頁列表逐一取出 Segment) 以 IN 一次載入最多 100 個使用者的 UserSegment，不會每個使用者各查一次。*/
+    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @BatchSize(size = 100)
+    private List<UserSegment> userSegments;
 
 }
@@ -1,9 +1,40 @@
 package com.gtalent.commerce.service.repositories;
 
+import com.gtalent.commerce.service.dto.CategoryProductRow;
 import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.responses.CategoryResponse;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 //提供最基本的 CRUD 操作（查詢、儲存、刪除）
 public interface CategoryRepository extends JpaRepository<Category, Integer> {
     boolean existsByName(String name);
+
+    //未刪除的分類 (軟刪除在 SQL 過濾)
+    List<Category> findByDeletedAtIsNullOrderByIdAsc();
+
+    //一次查出多個分類底下的產品 (只取列表欄位)
+    @Query("select p.id as id, c.id as categoryId, p.imageUrl as imageUrl, p.thumbnailUrl as thumbnailUrl, "
+            + "p.reference as reference, p.price as price, p.stock as stock "
+            + "from Product p join p.category c where c.id in :categoryIds order by c.id, p.id")
+    List<CategoryProductRow> findProductRowsByCategoryIdIn(@Param("categoryIds") Collection<Integer> categoryIds);
+
+    //同上，但每個分類最多取 limit 筆 (ROW_NUMBER 依分類分組編號)
+    @Query(value = "SELECT t.id AS id, t.category_id AS categoryId, t.image_url AS imageUrl, "
+            + "t.thumbnail_url AS thumbnailUrl, t.reference AS reference, t.price AS price, t.stock AS stock "
+            + "FROM (SELECT p.*, ROW_NUMBER() OVER (PARTITION BY p.category_id ORDER BY p.id) AS rn "
+            + "      FROM products p WHERE p.category_id IN (:categoryIds)) t "
+            + "WHERE t.rn <= :limit ORDER BY t.category_id, t.id", nativeQuery = true)
+    List<CategoryProductRow> findLimitedProductRowsByCategoryIdIn(@Param("categoryIds") Collection<Integer> categoryIds,
+                                                                  @Param("limit") int limit);
+
+    //摘要模式：單一 GROUP BY 查出每個分類的產品數 (沒有產品的分類為 0)
+    @Query("select new com.gtalent.commerce.service.responses.CategoryResponse(c.id, c.name, count(p.id)) "
+            + "from Category c left join c.productList p where c.deletedAt is null "
+            + "group by c.id, c.name order by c.id")
+    List<CategoryResponse> findCategorySummaries();
 }
@@ -2,11 +2,22 @@ package com.gtalent.commerce.service.repositories;
 
 import com.gtalent.commerce.service.models.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Integer> {
     List<OrderItem> findByOrderId(int orderId);
+
+    //以 IN 批次載入多筆訂單的明細與商品，避免每筆訂單各查一次 (N+1)
+    @Query("select i from OrderItem i join fetch i.product where i.order.id in :orderIds order by i.order.id, i.id")
+    List<OrderItem> findWithProductByOrderIdIn(@Param("orderIds") Collection<Integer> orderIds);
+
+    //明細已凍結商品欄位時只查 orders_items，不需要 join products
+    @Query("select i from OrderItem i where i.order.id in :orderIds order by i.order.id, i.id")
+    List<OrderItem> findByOrderIdIn(@Param("orderIds") Collection<Integer> orderIds);
 }
@@ -2,17 +2,85 @@ package com.gtalent.commerce.service.repositories;
 
 import com.gtalent.commerce.service.enums.OrderStatus;
 import com.gtalent.commerce.service.models.Order;
+import com.gtalent.commerce.service.responses.PendingOrderResponse;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order, Integer> {
+public interface OrderRepository extends JpaRepository<Order, Integer>, JpaSpecificationExecutor<Order> {
     List<Order> findByStatus(OrderStatus status);  //根據訂單狀態查詢，如取得 Pending Orders 功能
     Page<Order> findByStatus(OrderStatus status, Pageable pageable);
 
+    //列表專用：先只分頁查出訂單 ID (不 fetch join 集合，分頁交給資料庫處理)
+    @Query(value = "select o.id from Order o",
+           countQuery = "select count(o) from Order o")
+    Page<Integer> findPageIds(Pageable pageable);
+
+    @Query(value = "select o.id from Order o where o.status = :status",
+           countQuery = "select count(o) from Order o where o.status = :status")
+    Page<Integer> findPageIdsByStatus(@Param("status") OrderStatus status, Pageable pageable);
+
+    //再依 ID 一次載入訂單與訂購者 (user 為 ManyToOne，fetch join 不影響筆數)
+    @EntityGraph(attributePaths = {"user"})
+    @Query("select o from Order o where o.id in :ids")
+    List<Order> findWithUserByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @EntityGraph(attributePaths = {"user"})
+    @Query("select o from Order o")
+    List<Order> findAllWithUser();
+
+    //修改訂單時鎖定該列 -> 同一張訂單同時被取消時，後到的交易等待並讀到已取消的狀態，預留的庫存不會重複釋放
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from Order o where o.id = :id")
+    Optional<Order> findForUpdate(@Param("id") int id);
+
+    //回填用：依 ID 遞增取出尚未寫入運費與稅金的訂單 ID
+    @Query("select o.id from Order o where o.pricingFrozen = false and o.id > :afterId order by o.id")
+    List<Integer> findUnpricedIdsAfter(@Param("afterId") int afterId, Pageable pageable);
+
+    //匯出用：由訂單出發 left join 明細 (沒有明細的訂單也會匯出，明細為 null)，依訂單 ID 排序逐列讀取 [訂單, 明細]；
+    //每次只從資料庫取回 fetch size 筆，需在交易內使用並關閉 Stream (MySQL 連線需加上 useCursorFetch=true)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select o, i from Order o join fetch o.user left join o.items i " +
+           "where (:status is null or o.status = :status) " +
+           "and (:from is null or o.createdAt >= :from) " +
+           "and (:to is null or o.createdAt < :to) " +
+           "order by o.id, i.id")
+    Stream<Object[]> streamForExport(@Param("status") OrderStatus status,
+                                     @Param("from") LocalDateTime from,
+                                     @Param("to") LocalDateTime to);
+
+    //待處理訂單：單次 GROUP BY 查詢回傳金額與明細數，不載入訂單 entity 與明細集合 (依下單時間由舊到新)
+    @Query(value = "select new com.gtalent.commerce.service.responses.PendingOrderResponse(" +
+                   "o.id, o.totalAmount + o.deliveryFee + o.taxAmount, o.createdAt, count(i)) " +
+                   "from Order o left join o.items i " +
+                   "where o.status = :status and (:before is null or o.createdAt < :before) " +
+                   "group by o.id, o.totalAmount, o.deliveryFee, o.taxAmount, o.createdAt " +
+                   "order by o.createdAt, o.id",
+           countQuery = "select count(o) from Order o " +
+                        "where o.status = :status and (:before is null or o.createdAt < :before)")
+    Page<PendingOrderResponse> findSummariesByStatus(@Param("status") OrderStatus status,
+                                                     @Param("before") LocalDateTime before,
+                                                     Pageable pageable);
 }
@@ -0,0 +1,14 @@
+package com.gtalent.commerce.service.repositories;
+
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.responses.ProductListResponse;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+//產品列表分頁 (ProductRepository 的自訂查詢)：條件由 Specification 組成，結果直接建立 DTO
+public interface ProductListRepository {
+
+    //與 findAllListResponses 相同的 constructor projection：不建立 Product entity，也不讀取 description
+    Page<ProductListResponse> findListResponses(Specification<Product> spec, Pageable pageable);
+}
@@ -0,0 +1,66 @@
+package com.gtalent.commerce.service.repositories;
+
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.responses.ProductListResponse;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.List;
+
+//Spring Data 依名稱 (介面名稱 + Impl) 組合進 ProductRepository
+public class ProductListRepositoryImpl implements ProductListRepository {
+
+    private final EntityManager entityManager;
+
+    public ProductListRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Page<ProductListResponse> findListResponses(Specification<Product> spec, Pageable pageable) {
+        //1.這一頁：只選列表欄位並 join 分類名稱
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductListResponse> query = criteriaBuilder.createQuery(ProductListResponse.class);
+        Root<Product> root = query.from(Product.class);
+        Join<Product, Category> category = root.join("category");
+        query.select(criteriaBuilder.construct(ProductListResponse.class, root.get("id"), root.get("imageUrl"),
+                root.get("thumbnailUrl"), root.get("reference"), root.get("price"), root.get("stock"),
+                category.get("id"), category.get("name")));
+        Predicate predicate = spec.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, criteriaBuilder));
+        TypedQuery<ProductListResponse> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        List<ProductListResponse> content = typedQuery.getResultList();
+        //2.總筆數 (這一頁未滿且是第一頁等可推算的情況不查 COUNT)
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(spec));
+    }
+
+    private long count(Specification<Product> spec) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Product> root = query.from(Product.class);
+        query.select(criteriaBuilder.count(root));
+        Predicate predicate = spec.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+}
@@ -0,0 +1,21 @@
+package com.gtalent.commerce.service.repositories;
+
+import com.gtalent.commerce.service.models.ProductRating;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProductRatingRepository extends JpaRepository<ProductRating, Integer> {
+
+    //差量更新：在資料庫端加減，不需要先讀出統計值 (同時更新的交易不會互相覆蓋)
+    @Modifying
+    @Query("update ProductRating r set r.reviewCount = r.reviewCount + :count, r.ratingSum = r.ratingSum + :sum, "
+            + "r.stars1 = r.stars1 + :stars1, r.stars2 = r.stars2 + :stars2, r.stars3 = r.stars3 + :stars3, "
+            + "r.stars4 = r.stars4 + :stars4, r.stars5 = r.stars5 + :stars5 where r.productId = :productId")
+    int applyDelta(@Param("productId") int productId, @Param("count") int count, @Param("sum") long sum,
+                   @Param("stars1") int stars1, @Param("stars2") int stars2, @Param("stars3") int stars3,
+                   @Param("stars4") int stars4, @Param("stars5") int stars5);
+}
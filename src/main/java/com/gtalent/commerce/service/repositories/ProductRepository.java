@@ -1,9 +1,79 @@
 package com.gtalent.commerce.service.repositories;
 
+import com.gtalent.commerce.service.dto.ProductSearchRow;
+import com.gtalent.commerce.service.dto.ProductSuggestRow;
 import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.responses.ProductDetailResponse;
+import com.gtalent.commerce.service.responses.ProductListResponse;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 //提供最基本的 CRUD 操作（查詢、儲存、刪除）
-public interface ProductRepository extends JpaRepository<Product, Integer>, JpaSpecificationExecutor<Product> {
+public interface ProductRepository extends JpaRepository<Product, Integer>, JpaSpecificationExecutor<Product>,
+        ProductListRepository {
+
+    //回填功能上線前沒有建立時間的舊產品 (Keyset 分頁需要每筆都有建立時間)
+    @Modifying
+    @Query(value = "UPDATE products SET created_at = :createdAt WHERE created_at IS NULL", nativeQuery = true)
+    int fillMissingCreatedAt(@Param("createdAt") LocalDateTime createdAt);
+
+    //列表專用：只查列表需要的欄位並 join 分類名稱 (不含 description)，一次查詢直接建立 DTO
+    @Query("select new com.gtalent.commerce.service.responses.ProductListResponse("
+            + "p.id, p.imageUrl, p.thumbnailUrl, p.reference, p.price, p.stock, c.id, c.name) "
+            + "from Product p join p.category c order by p.id")
+    List<ProductListResponse> findAllListResponses();
+
+    //明細專用：同樣不經過 entity，分類名稱與評分統計在同一個查詢取得
+    @Query("select new com.gtalent.commerce.service.responses.ProductDetailResponse("
+            + "p.id, p.imageUrl, p.thumbnailUrl, p.reference, p.width, p.height, p.depth, p.price, p.stock, "
+            + "p.sales, p.description, c.id, c.name, "
+            + "r.reviewCount, r.ratingSum, r.stars1, r.stars2, r.stars3, r.stars4, r.stars5) "
+            + "from Product p join p.category c left join ProductRating r on r.productId = p.id "
+            + "where p.id = :id")
+    Optional<ProductDetailResponse> findDetailResponseById(@Param("id") int id);
+
+    //搜尋索引建立用：依 id 逐筆讀取產品編號與描述前段，每次只從資料庫取回 fetch size 筆 (需在交易內使用並關閉 Stream)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p.id as id, p.reference as reference, substring(p.description, 1, :descriptionLength) as description, "
+            + "p.createdAt as createdAt from Product p order by p.id")
+    Stream<ProductSearchRow> streamSearchRows(@Param("descriptionLength") int descriptionLength);
+
+    //搜尋結果再套用分類與庫存條件：只對候選 id 以主鍵查詢，回傳符合的 id
+    @Query("select p.id from Product p where p.id in :ids "
+            + "and (:categoryId is null or p.category.id = :categoryId) "
+            + "and (:stockFrom is null or p.stock >= :stockFrom) "
+            + "and (:stockTo is null or p.stock <= :stockTo)")
+    List<Integer> findIdsMatching(@Param("ids") Collection<Integer> ids, @Param("categoryId") Integer categoryId,
+                                  @Param("stockFrom") Integer stockFrom, @Param("stockTo") Integer stockTo);
+
+    //搜尋結果的一頁產品 (連同分類)
+    @Query("select p from Product p join fetch p.category where p.id in :ids")
+    List<Product> findWithCategoryByIdIn(@Param("ids") Collection<Integer> ids);
+
+    //自動完成索引建立用：只讀取 id、產品編號與銷售量
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p.id as id, p.reference as reference, p.sales as sales from Product p")
+    Stream<ProductSuggestRow> streamSuggestRows();
+
+    //自動完成索引第一次建立完成前改查資料庫
+    List<ProductSuggestRow> findByReferenceStartingWithIgnoreCaseOrderBySalesDesc(String prefix, Pageable pageable);
 }
@@ -1,14 +1,23 @@
 package com.gtalent.commerce.service.repositories;
 
 import com.gtalent.commerce.service.models.Review;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
 public interface ReviewRepository extends JpaRepository<Review, Integer>, JpaSpecificationExecutor<Review> {
     Optional<Review> findByIdAndDeletedAtIsNull(int id);
     Page<Review> findByProductIdAndDeletedAtIsNull(int productId, Pageable pageable);  //查詢某產品所有未刪除的評論
+
+    //修改 / 刪除評論時鎖定該列 -> 同一則評論同時被修改時，評分統計的差量不會重複計算
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from Review r where r.id = :id and r.deletedAt is null")
+    Optional<Review> findForUpdate(@Param("id") int id);
 }
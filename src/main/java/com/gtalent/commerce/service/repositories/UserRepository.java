@@ -3,15 +3,26 @@ package com.gtalent.commerce.service.repositories;
 import com.gtalent.commerce.service.models.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository  //直接操作資料庫 (CRUD)
 public interface UserRepository extends JpaRepository<User, Integer>, JpaSpecificationExecutor<User> {
+
+    //回填沒有 first_seen 的舊使用者 (Keyset 分頁需要每筆都有建立時間)
+    @Modifying
+    @Query(value = "UPDATE users SET first_seen = :firstSeen WHERE first_seen IS NULL", nativeQuery = true)
+    int fillMissingFirstSeen(@Param("firstSeen") LocalDateTime firstSeen);
     boolean existsByEmail(String email);  //為了POST方法只是要檢查 Email 是否重複 (Service)
     boolean existsByEmailAndIdNot(String email, int id);  //為了PUT方法只是要檢查 Email 是否重複 (Service)
     Optional<User> findByEmail(String email);  //用"信箱"與"密碼"登入
@@ -21,6 +32,21 @@ public interface UserRepository extends JpaRepository<User, Integer>, JpaSpecifi
     Page<User> findByHasNewsletter(Boolean hasNewsletter, Pageable pageable);
     Page<User> findByUserSegments_Segment_Id(Integer segmentId, Pageable pageable);
 
+    //需要 Segment 的查詢：以 entity graph 在同一個 SELECT 中 JOIN 載入 userSegments (Segment 本身只需 id，不載入)
+    @EntityGraph(attributePaths = "userSegments")
+    @Query("select u from User u")
+    List<User> findAllWithSegments();
+
+    @EntityGraph(attributePaths = "userSegments")
+    Optional<User> findWithSegmentsById(int id);
+
+    @EntityGraph(attributePaths = "userSegments")
+    List<User> findWithSegmentsByIdIn(Collection<Integer> ids);
+
+    //批次分配 Segment：成員索引尚未建立時以一次查詢確認哪些使用者存在
+    @Query("select u.id from User u where u.id in :ids")
+    List<Integer> findExistingIds(@Param("ids") Collection<Integer> ids);
+
     /* Page<T>
        是 Spring Data JPA 提供的介面，用來表示"User資料的分頁結果"，內容包括：
        1.當前頁資料 → getContent()
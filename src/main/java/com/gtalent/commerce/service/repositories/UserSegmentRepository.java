@@ -3,7 +3,10 @@ package com.gtalent.commerce.service.repositories;
 
 import com.gtalent.commerce.service.models.User;
 import com.gtalent.commerce.service.models.UserSegment;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,6 +15,13 @@ import java.util.Optional;
 
 @Repository
 public interface UserSegmentRepository extends JpaRepository<UserSegment, Integer> {
-    List<UserSegment> findBySegmentId(int segmentId);  //取得某個 Segment 對應的使用者
-    Optional<UserSegment> findByUserIdAndSegmentId(int userId, int segmentId);  //取得特定使用者與 Segment 的關聯（用於新增或刪除前檢查）
+    //取得某個 Segment 對應的使用者 (連同每個使用者的 userSegments 一次載入)
+    @EntityGraph(attributePaths = {"user", "user.userSegments"})
+    @Query("select us from UserSegment us where us.segment.id = :segmentId")
+    List<UserSegment> findBySegmentId(@Param("segmentId") int segmentId);
+
+    //取得特定使用者與 Segment 的關聯（用於新增或刪除前檢查）
+    //直接比對外鍵欄位，走 (user_id, segment_id) 唯一索引；方法名稱推導的查詢會多 LEFT JOIN users 與 segments
+    @Query("select us from UserSegment us where us.user.id = :userId and us.segment.id = :segmentId")
+    Optional<UserSegment> findByUserIdAndSegmentId(@Param("userId") int userId, @Param("segmentId") int segmentId);
 }
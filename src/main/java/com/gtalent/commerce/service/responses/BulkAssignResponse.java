@@ -0,0 +1,27 @@
+package com.gtalent.commerce.service.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class BulkAssignResponse {
+    private long received;   //收到的資料列數
+    private long assigned;   //已寫入 (新增或原本已存在) 的關聯數
+    private long failed;     //失敗的資料列數
+    private List<Failure> failures = new ArrayList<>();  //失敗明細 (最多列出前 1000 筆)
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Failure {
+        private long row;           //第幾筆 (CSV 為行號，JSON 為陣列中的順序，從 1 開始)
+        private Integer userId;     //格式錯誤時為 null
+        private Integer segmentId;
+        private String reason;
+    }
+}
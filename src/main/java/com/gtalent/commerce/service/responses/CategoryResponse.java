@@ -1,5 +1,6 @@
 package com.gtalent.commerce.service.responses;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -10,8 +11,23 @@ import java.util.List;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)  //摘要模式只有 productCount、一般模式只有 products
 public class CategoryResponse {
     private int id;
     private String name;
     private List<ProductListResponse> products; // 包含分類下的產品
+    private Long productCount;                  // 摘要模式：分類下的產品數
+
+    //只需要分類 id / 名稱時使用 (例如產品所屬分類)
+    public CategoryResponse(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    //給 JPQL constructor expression 使用：摘要模式 (GROUP BY 計算產品數)
+    public CategoryResponse(int id, String name, Long productCount) {
+        this.id = id;
+        this.name = name;
+        this.productCount = productCount;
+    }
 }
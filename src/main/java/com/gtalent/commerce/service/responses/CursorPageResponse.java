@@ -0,0 +1,24 @@
+package com.gtalent.commerce.service.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+
+//Keyset 分頁結果
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageResponse<T> {
+    private List<T> content;
+    private String nextCursor;     //下一頁的游標 (沒有下一頁時為 null)
+    private boolean hasNext;
+    private Long totalElements;    //includeTotal=true 時才計算總筆數，否則為 null
+
+    public <R> CursorPageResponse<R> map(Function<? super T, ? extends R> converter) {
+        List<R> converted = content.stream().<R>map(converter).toList();
+        return new CursorPageResponse<>(converted, nextCursor, hasNext, totalElements);
+    }
+}
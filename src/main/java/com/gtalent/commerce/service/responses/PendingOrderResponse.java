@@ -15,4 +15,9 @@ public class PendingOrderResponse {
     private BigDecimal totalAmount;   //訂單總金額
     private LocalDateTime createdAt;  //下單時間
     private int itemCount;            //商品數量
+
+    //JPQL 投影用 (count 的結果為 long)
+    public PendingOrderResponse(int orderId, BigDecimal totalAmount, LocalDateTime createdAt, long itemCount) {
+        this(orderId, totalAmount, createdAt, Math.toIntExact(itemCount));
+    }
 }
@@ -26,4 +26,18 @@ public class ProductDetailResponse {
     //讓前端知道該產品屬於哪個分類
     //這樣就不需要將整個 Category Entity 回傳
     private CategoryResponse category;
+    //評分統計 (評論數、平均、各星等數量)
+    private ProductRatingResponse rating;
+
+    //給 JPQL constructor expression (select new ...) 使用：直接查出明細欄位，不建立 Product entity
+    //評分統計以 left join 在同一個查詢取得 (尚無統計時為 null)
+    public ProductDetailResponse(int id, String imageUrl, String thumbnailUrl, String reference, BigDecimal width,
+                                 BigDecimal height, BigDecimal depth, BigDecimal price, int stock, int sales,
+                                 String description, int categoryId, String categoryName,
+                                 Integer reviewCount, Long ratingSum, Integer stars1, Integer stars2,
+                                 Integer stars3, Integer stars4, Integer stars5) {
+        this(id, imageUrl, thumbnailUrl, reference, width, height, depth, price, stock, sales, description,
+                new CategoryResponse(categoryId, categoryName),
+                ProductRatingResponse.of(id, reviewCount, ratingSum, stars1, stars2, stars3, stars4, stars5));
+    }
 }
@@ -19,4 +19,10 @@ public class ProductListResponse {
     private BigDecimal price;
     private int stock;
     private CategoryResponse category; //分類名稱 + 圖示
+
+    //給 JPQL constructor expression (select new ...) 使用：只查列表欄位，不建立 Product entity
+    public ProductListResponse(int id, String imageUrl, String thumbnailUrl, String reference, BigDecimal price,
+                               int stock, int categoryId, String categoryName) {
+        this(id, imageUrl, thumbnailUrl, reference, price, stock, new CategoryResponse(categoryId, categoryName));
+    }
 }
@@ -0,0 +1,36 @@
+package com.gtalent.commerce.service.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductRatingResponse {
+    private int productId;
+    private int reviewCount;              //評論數 (只計入 ACCEPTED)
+    private BigDecimal averageRating;     //平均評分 (小數 2 位，沒有評論時為 null)
+    private Map<Integer, Integer> stars;  //各星等 (1~5) 的評論數
+
+    //統計值為 null 代表尚未有評分統計 (沒有任何通過審核的評論)
+    public static ProductRatingResponse of(int productId, Integer reviewCount, Long ratingSum, Integer stars1,
+                                           Integer stars2, Integer stars3, Integer stars4, Integer stars5) {
+        int count = reviewCount != null ? reviewCount : 0;
+        Map<Integer, Integer> histogram = new LinkedHashMap<>();
+        histogram.put(1, stars1 != null ? stars1 : 0);
+        histogram.put(2, stars2 != null ? stars2 : 0);
+        histogram.put(3, stars3 != null ? stars3 : 0);
+        histogram.put(4, stars4 != null ? stars4 : 0);
+        histogram.put(5, stars5 != null ? stars5 : 0);
+        BigDecimal average = count > 0
+                ? BigDecimal.valueOf(ratingSum).divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP)
+                : null;
+        return new ProductRatingResponse(productId, count, average, histogram);
+    }
+}
@@ -0,0 +1,15 @@
+package com.gtalent.commerce.service.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//產品編號自動完成的一筆建議 (依銷售量排序)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductSuggestResponse {
+    private int id;
+    private String reference;
+    private int sales;
+}
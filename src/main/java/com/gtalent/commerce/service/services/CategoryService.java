@@ -1,5 +1,6 @@
 package com.gtalent.commerce.service.services;
 
+import com.gtalent.commerce.service.dto.CategoryProductRow;
 import com.gtalent.commerce.service.models.Category;
 import com.gtalent.commerce.service.repositories.CategoryRepository;
 import com.gtalent.commerce.service.requests.CreateCategoryRequest;
@@ -10,47 +11,69 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 
 @Service
 public class CategoryService {
 
+    private static final int CATEGORY_BATCH_SIZE = 500;  //IN 查詢每批的分類數
+
     private final CategoryRepository categoryRepository;
+    private final ReferenceDataRegistry referenceData;
 
-    public CategoryService(CategoryRepository categoryRepository) {
+    public CategoryService(CategoryRepository categoryRepository, ReferenceDataRegistry referenceData) {
         this.categoryRepository = categoryRepository;
+        this.referenceData = referenceData;
     }
 
     //1.查詢所有分類 (包含分類下的產品列表)
-    public List<CategoryResponse> getAllCategories() {
-        return categoryRepository.findAll()
-                .stream()
-                .filter(category -> category.getDeletedAt() == null)  //過濾掉已經被刪除的資料
-                .map(category -> {
-                    CategoryResponse response = new CategoryResponse();
-                    response.setId(category.getId());
-                    response.setName(category.getName());
+    //productLimit -> 每個分類最多回傳幾筆產品 (null 代表不限制)
+    //summary -> true 時只回傳每個分類的產品數，不回傳產品列表
+    public List<CategoryResponse> getAllCategories(Integer productLimit, boolean summary) {
+        if (productLimit != null && productLimit < 0) {
+            throw new IllegalArgumentException("每個分類的產品數上限不可小於 0");
+        }
+        //1.摘要模式：一次 GROUP BY 查詢完成
+        if (summary) {
+            return categoryRepository.findCategorySummaries();
+        }
 
-                    //轉換分類下產品為 DTO
-                    List<ProductListResponse> productList = category.getProductList()
-                            .stream()
-                            .map(product -> {
-                                ProductListResponse products = new ProductListResponse();
-                                products.setId(product.getId());
-                                products.setImageUrl(product.getImageUrl());
-                                products.setThumbnailUrl(product.getThumbnailUrl());
-                                products.setReference(product.getReference());
-                                products.setPrice(product.getPrice());
-                                products.setStock(product.getStock());
-                                return products;
-                            })
-                            .toList();
-                    response.setProducts(productList);
-                    return response;
-                })
-                .toList();
+        //2.過濾掉已經被刪除的資料 (在 SQL 過濾)
+        List<Category> categories = categoryRepository.findByDeletedAtIsNullOrderByIdAsc();
+        Map<Integer, CategoryResponse> responsesById = new LinkedHashMap<>();
+        for (Category category : categories) {
+            CategoryResponse response = new CategoryResponse(category.getId(), category.getName());
+            response.setProducts(new ArrayList<>());
+            responsesById.put(category.getId(), response);
+        }
+        if (responsesById.isEmpty() || (productLimit != null && productLimit == 0)) {
+            return new ArrayList<>(responsesById.values());
+        }
+
+        //3.分批 (每 CATEGORY_BATCH_SIZE 個分類一次) 查出分類底下的產品，不再逐一載入 productList
+        List<Integer> categoryIds = new ArrayList<>(responsesById.keySet());
+        for (int from = 0; from < categoryIds.size(); from += CATEGORY_BATCH_SIZE) {
+            List<Integer> batch = categoryIds.subList(from, Math.min(from + CATEGORY_BATCH_SIZE, categoryIds.size()));
+            List<CategoryProductRow> rows = productLimit == null
+                    ? categoryRepository.findProductRowsByCategoryIdIn(batch)
+                    : categoryRepository.findLimitedProductRowsByCategoryIdIn(batch, productLimit);
+            for (CategoryProductRow row : rows) {
+                ProductListResponse product = new ProductListResponse();
+                product.setId(row.getId());
+                product.setImageUrl(row.getImageUrl());
+                product.setThumbnailUrl(row.getThumbnailUrl());
+                product.setReference(row.getReference());
+                product.setPrice(row.getPrice());
+                product.setStock(row.getStock());
+                responsesById.get(row.getCategoryId()).getProducts().add(product);
+            }
+        }
+        return new ArrayList<>(responsesById.values());
     }
 
     //2.建立分類
@@ -66,6 +89,7 @@ public class CategoryService {
         Category category = new Category();
         category.setName(request.getName());
         categoryRepository.save(category);  //存進資料庫
+        referenceData.putCategory(category.getId(), category.getName());  //同步記憶體中的分類對照表
 
         //回傳 DTO
         CategoryResponse response = new CategoryResponse();
@@ -88,6 +112,7 @@ public class CategoryService {
 
         category.setDeletedAt(LocalDateTime.now());
         categoryRepository.save(category);
+        referenceData.removeCategory(id);  //已刪除的分類不可再被產品引用
     }
 
 }
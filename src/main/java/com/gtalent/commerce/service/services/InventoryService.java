@@ -0,0 +1,91 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+//庫存預留 / 釋放
+//1.使用條件式 UPDATE (stock >= ?) 由資料庫保證不超賣，不做「先讀再寫」
+//2.同一購物車的 UPDATE 以 JDBC batch 一次送出
+//3.一律依商品 ID 由小到大更新 -> 所有交易以相同順序取得列鎖，避免死結
+//必須在呼叫端的交易 (@Transactional) 中執行，任一商品庫存不足時拋出例外讓整筆交易回滾
+@Service
+public class InventoryService {
+
+    private static final String RESERVE_SQL =
+            "UPDATE products SET stock = stock - ?, sales = sales + ? WHERE id = ? AND stock >= ?";
+    private static final String RELEASE_SQL =
+            "UPDATE products SET stock = stock + ?, sales = sales - ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductCatalogCache catalogCache;
+
+    public InventoryService(JdbcTemplate jdbcTemplate, ProductCatalogCache catalogCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.catalogCache = catalogCache;
+    }
+
+    //1.預留庫存 (key: 商品 ID, value: 數量)
+    public void reserve(Map<Integer, Integer> quantities) {
+        List<Map.Entry<Integer, Integer>> rows = sortedRows(quantities);
+        int[] counts = jdbcTemplate.batchUpdate(RESERVE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<Integer, Integer> row = rows.get(i);
+                ps.setInt(1, row.getValue());
+                ps.setInt(2, row.getValue());
+                ps.setInt(3, row.getKey());
+                ps.setInt(4, row.getValue());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+
+        //更新筆數為 0 -> 商品庫存不足 (或商品不存在)
+        List<Integer> insufficient = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                insufficient.add(rows.get(i).getKey());
+            }
+        }
+        if (!insufficient.isEmpty()) {
+            throw new IllegalArgumentException("商品庫存不足, 商品 ID: " + insufficient);
+        }
+        catalogCache.evictStock(quantities.keySet());  //庫存已變動 -> 交易提交後讓產品快取失效
+    }
+
+    //2.釋放庫存 (訂單取消時)
+    public void release(Map<Integer, Integer> quantities) {
+        List<Map.Entry<Integer, Integer>> rows = sortedRows(quantities);
+        jdbcTemplate.batchUpdate(RELEASE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<Integer, Integer> row = rows.get(i);
+                ps.setInt(1, row.getValue());
+                ps.setInt(2, row.getValue());
+                ps.setInt(3, row.getKey());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+        catalogCache.evictStock(quantities.keySet());
+    }
+
+    private List<Map.Entry<Integer, Integer>> sortedRows(Map<Integer, Integer> quantities) {
+        return new ArrayList<>(new TreeMap<>(quantities).entrySet());
+    }
+}
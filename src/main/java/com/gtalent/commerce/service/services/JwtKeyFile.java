@@ -0,0 +1,64 @@
+package com.gtalent.commerce.service.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+//JWT 金鑰檔 (jwt.keys-file)：定期讀取，載入全部金鑰，active 的 kid 變更時輪替 JwtService 的簽章金鑰，不需重啟
+//1.檔案格式 (properties)：active=<kid>，keys.<kid>=<Base64 金鑰>；同一個 kid 的金鑰不可更換 (會拒絕整個檔案)，換金鑰需使用新的 kid
+//2.檔案沒有變更 (修改時間相同) 時不重新讀取
+//3.未設定 jwt.keys-file 時不做任何事 (只使用 jwt.secret / jwt.key-id)
+@Component
+public class JwtKeyFile {
+
+    private final JwtService jwtService;
+    private final Path path;
+    private long lastModified = Long.MIN_VALUE;
+
+    public JwtKeyFile(JwtService jwtService, @Value("${jwt.keys-file:}") String path) {
+        this.jwtService = jwtService;
+        this.path = path.isBlank() ? null : Path.of(path);
+    }
+
+    //重新讀取金鑰檔，簽章金鑰有輪替時回傳 true
+    @Scheduled(fixedDelayString = "${jwt.keys-file.poll-interval-ms:60000}")
+    public synchronized boolean reload() {
+        if (path == null) {
+            return false;
+        }
+        Properties properties = new Properties();
+        try {
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            if (modified == lastModified) {
+                return false;
+            }
+            try (Reader reader = Files.newBufferedReader(path)) {
+                properties.load(reader);
+            }
+            lastModified = modified;
+        } catch (IOException e) {
+            throw new RuntimeException("無法讀取 JWT 金鑰檔: " + path, e);  //保留目前的金鑰
+        }
+
+        String active = properties.getProperty("active");
+        if (active == null) {
+            throw new IllegalArgumentException("JWT 金鑰檔缺少 active");
+        }
+        //全部的 keys.<kid> 都載入：重啟後或其他台主機仍可驗證以先前 active 金鑰簽發、尚未過期的 token
+        Map<String, String> secrets = new LinkedHashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith("keys.")) {
+                secrets.put(name.substring("keys.".length()), properties.getProperty(name));
+            }
+        }
+        return jwtService.loadKeys(active, secrets);
+    }
+}
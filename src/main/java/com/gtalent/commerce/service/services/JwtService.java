@@ -2,43 +2,138 @@ package com.gtalent.commerce.service.services;
 
 
 import com.gtalent.commerce.service.models.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 
 import java.security.Key;
+import java.security.MessageDigest;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Service
 public class JwtService {
 
-    //1.產生密鑰
-    private Key getKey() {
-        byte[] keyBytes = Decoders.BASE64.decode("dGlueXNhbWVoYW5kc29tZXlvdW5nY2FsbHJlY29yZGdpZnRpbnZlbnRlZHdpdGhvdXQ=");
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
+    private static final long EXPIRATION_MILLIS = 28800000;  //八小時後過期
 
+    //目前的金鑰組 (不可變)，輪替時整組替換
+    private volatile KeyRing keyRing;
+    //JwtParser 為 thread-safe，啟動時建立一次，之後依 token header 的 kid 找對應金鑰
+    private final JwtParser parser;
+
+    public JwtService(@Value("${jwt.secret:dGlueXNhbWVoYW5kc29tZXlvdW5nY2FsbHJlY29yZGdpZnRpbnZlbnRlZHdpdGhvdXQ=}") String secret,
+                      @Value("${jwt.key-id:default}") String keyId) {
+        //1.產生密鑰 (只在啟動時做一次)
+        Map<String, Key> keys = new LinkedHashMap<>();
+        keys.put(keyId, toKey(secret));
+        this.keyRing = new KeyRing(keyId, keyId, Collections.unmodifiableMap(keys), Map.of());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return resolveKey(header.getKeyId());
+                    }
+                })
+                .build();
+    }
 
     //2.從JWT中 解析 出Email
     public String getEmailFromToken(String jwtToken) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getKey())
-                .build()
-                .parseClaimsJws(jwtToken)
+        return parser.parseClaimsJws(jwtToken)
                 .getBody().getSubject();
 
     }
 
     //3.負責 生產 (Jason Web token)
     public String generateToken(User user) {
+        KeyRing current = keyRing;
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, current.activeKeyId)
                 .setSubject(user.getEmail())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + 28800000))  //八小時後過期
-                .signWith(getKey(), SignatureAlgorithm.HS256)
+                .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_MILLIS))
+                .signWith(current.keys.get(current.activeKeyId), SignatureAlgorithm.HS256)
                 .compact();
     }
+
+    //4.載入金鑰檔的全部金鑰 (不需重啟，由 JwtKeyFile 讀取金鑰檔後呼叫)，回傳簽章用的金鑰是否變更
+    //  新 token 改用 activeKeyId 的金鑰簽章；其他金鑰都保留供驗證，輪替前簽發的 token 不受影響
+    //  同一個 kid 的金鑰不可更換 (已簽發的 token 會無法驗證)
+    public boolean loadKeys(String activeKeyId, Map<String, String> base64Secrets) {
+        return loadKeys(activeKeyId, base64Secrets, System.currentTimeMillis());
+    }
+
+    //package-private：測試可指定目前時間
+    synchronized boolean loadKeys(String activeKeyId, Map<String, String> base64Secrets, long nowMillis) {
+        if (!base64Secrets.containsKey(activeKeyId)) {
+            throw new IllegalArgumentException("JWT 金鑰檔缺少 keys." + activeKeyId);
+        }
+        KeyRing current = keyRing;
+        Map<String, Key> keys = new LinkedHashMap<>(current.keys);
+        //1.先全部檢查，有任何一個 kid 的金鑰被更換就整批拒絕，保留目前的金鑰
+        Map<String, Key> loaded = new LinkedHashMap<>();
+        base64Secrets.forEach((keyId, secret) -> {
+            Key key = toKey(secret);
+            Key known = keys.get(keyId);
+            if (known != null && !MessageDigest.isEqual(known.getEncoded(), key.getEncoded())) {
+                throw new IllegalArgumentException("JWT 金鑰 " + keyId + " 不可更換，換金鑰需使用新的 kid");
+            }
+            loaded.put(keyId, key);
+        });
+        keys.putAll(loaded);
+
+        //2.已從金鑰檔移除的金鑰：移除後再保留一個 token 有效期間 (之前簽發的 token 可能仍未過期)
+        //  啟動時的 legacy 金鑰 (沒有 kid 的舊 token 需要它) 與簽章用的金鑰不會移除
+        Map<String, Long> removedAt = new HashMap<>(current.removedAt);
+        for (String keyId : keys.keySet().toArray(new String[0])) {
+            if (loaded.containsKey(keyId) || keyId.equals(current.legacyKeyId)) {
+                removedAt.remove(keyId);
+                continue;
+            }
+            long removed = removedAt.computeIfAbsent(keyId, id -> nowMillis);
+            if (nowMillis - removed > EXPIRATION_MILLIS) {
+                keys.remove(keyId);
+                removedAt.remove(keyId);
+            }
+        }
+        keyRing = new KeyRing(activeKeyId, current.legacyKeyId, Collections.unmodifiableMap(keys),
+                Collections.unmodifiableMap(removedAt));
+        return !activeKeyId.equals(current.activeKeyId);
+    }
+
+    //4.1 目前簽章用的金鑰 ID
+    public String activeKeyId() {
+        return keyRing.activeKeyId;
+    }
+
+    private Key resolveKey(String keyId) {
+        KeyRing current = keyRing;
+        //沒有 kid 的 token 為輪替功能上線前簽發 -> 使用啟動時的金鑰
+        Key key = current.keys.get(keyId != null ? keyId : current.legacyKeyId);
+        if (key == null) {
+            throw new SignatureException("未知的金鑰 ID: " + keyId);
+        }
+        return key;
+    }
+
+    private static Key toKey(String base64Secret) {
+        byte[] keyBytes = Decoders.BASE64.decode(base64Secret);
+        return Keys.hmacShaKeyFor(keyBytes);
+    }
+
+    //removedAt：已從金鑰檔移除、仍保留供驗證的金鑰與移除時間
+    private record KeyRing(String activeKeyId, String legacyKeyId, Map<String, Key> keys, Map<String, Long> removedAt) {
+    }
 }
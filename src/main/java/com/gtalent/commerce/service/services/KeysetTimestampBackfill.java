@@ -0,0 +1,35 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.repositories.ProductRepository;
+import com.gtalent.commerce.service.repositories.UserRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+//回填 Keyset 分頁的排序欄位：功能上線前的舊產品 created_at、舊使用者 first_seen 可能為 NULL
+//NULL 不符合 created_at < ? 的條件，這些資料在游標分頁中永遠取不到，也無法編碼成游標
+//建立時間不明的資料視為最舊 (排在最後一頁)；沒有 NULL 時只是兩個走索引的 UPDATE，可在每次啟動時執行
+@Service
+public class KeysetTimestampBackfill {
+
+    public static final LocalDateTime UNKNOWN_CREATED_AT = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final ProductRepository productRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public KeysetTimestampBackfill(ProductRepository productRepository, UserRepository userRepository,
+                                   PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    //回傳回填的筆數 (產品 + 使用者)
+    public int backfill() {
+        return transactionTemplate.execute(status -> productRepository.fillMissingCreatedAt(UNKNOWN_CREATED_AT)
+                + userRepository.fillMissingFirstSeen(UNKNOWN_CREATED_AT));
+    }
+}
@@ -0,0 +1,116 @@
+package com.gtalent.commerce.service.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//最後登入時間的寫入緩衝 (write-behind)
+//1.登入時只記錄到記憶體，同一使用者多次登入只保留最新時間 (合併)
+//2.定時 (user.login-buffer.flush-interval-ms) 與關閉應用程式時，以 JDBC batch 一次寫入 last_seen
+//3.只更新 last_seen，不經過 Hibernate -> 不會 dirty check 整列，也不會更新 updated_at
+//4.緩衝筆數、寫入耗時透過 Micrometer 提供 (user.login.buffer.*)
+@Service
+public class LoginTimestampBuffer implements MeterBinder {
+
+    //只往後更新：較晚寫入的舊時間不會覆蓋較新的登入時間
+    private static final String UPDATE_SQL =
+            "UPDATE users SET last_seen = ? WHERE id = ? AND (last_seen IS NULL OR last_seen < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentHashMap<Integer, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private Timer flushTimer;
+
+    public LoginTimestampBuffer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    //1.記錄登入時間 (不開交易、不碰資料庫)
+    public void record(int userId, LocalDateTime loginTime) {
+        pending.merge(userId, loginTime, (current, next) -> next.isAfter(current) ? next : current);
+    }
+
+    //2.寫入緩衝中的登入時間，回傳寫入的使用者數
+    @Scheduled(fixedDelayString = "${user.login-buffer.flush-interval-ms:5000}")
+    public int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        //逐筆取出 (remove) -> 取出後才登入的時間留在緩衝，下一次再寫入；依使用者 ID 排序以固定取得列鎖的順序
+        Map<Integer, LocalDateTime> drained = new TreeMap<>();
+        for (Integer userId : pending.keySet()) {
+            LocalDateTime loginTime = pending.remove(userId);
+            if (loginTime != null) {
+                drained.put(userId, loginTime);
+            }
+        }
+        List<Map.Entry<Integer, LocalDateTime>> rows = new ArrayList<>(drained.entrySet());
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    Map.Entry<Integer, LocalDateTime> row = rows.get(i);
+                    Timestamp loginTime = Timestamp.valueOf(row.getValue());
+                    ps.setTimestamp(1, loginTime);
+                    ps.setInt(2, row.getKey());
+                    ps.setTimestamp(3, loginTime);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return rows.size();
+                }
+            });
+        } catch (RuntimeException e) {
+            //寫入失敗 -> 放回緩衝等下一次重試，例外交給排程記錄
+            rows.forEach(row -> record(row.getKey(), row.getValue()));
+            throw e;
+        }
+        flushedRows.addAndGet(rows.size());
+        if (flushTimer != null) {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return rows.size();
+    }
+
+    //3.關閉應用程式時寫入剩餘的登入時間
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    //目前緩衝中的使用者數
+    public int size() {
+        return pending.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("user.login.buffer.size", pending, Map::size)
+                .register(registry);
+        FunctionCounter.builder("user.login.buffer.flushed", flushedRows, AtomicLong::get)
+                .register(registry);
+        flushTimer = Timer.builder("user.login.buffer.flush")
+                .register(registry);
+    }
+}
@@ -0,0 +1,163 @@
+package com.gtalent.commerce.service.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gtalent.commerce.service.enums.ExportFormat;
+import com.gtalent.commerce.service.enums.OrderStatus;
+import com.gtalent.commerce.service.models.Order;
+import com.gtalent.commerce.service.models.OrderItem;
+import com.gtalent.commerce.service.repositories.OrderRepository;
+import com.gtalent.commerce.service.responses.OrderItemResponse;
+import com.gtalent.commerce.service.responses.OrderResponse;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+//訂單匯出：以 Stream 逐列讀取訂單與明細 (沒有明細的訂單也會匯出)，每讀一列就清空 persistence context
+//記憶體用量只與單筆訂單的明細數有關，不會隨訂單總數成長
+@Service
+public class OrderExportService {
+
+    private static final String CSV_HEADER =
+            "id,order_reference,created_at,status,returned,user_name,shipping_address,item_count,sum,delivery,tax,total";
+
+    private final OrderRepository orderRepository;
+    private final OrderService orderService;
+    private final OrderItemService orderItemService;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public OrderExportService(OrderRepository orderRepository, OrderService orderService,
+                              OrderItemService orderItemService, EntityManager entityManager,
+                              ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.orderRepository = orderRepository;
+        this.orderService = orderService;
+        this.orderItemService = orderItemService;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    //匯出訂單 (from / to 為下單日期，皆包含當天；null 代表不限制)，回傳匯出的訂單數
+    public int exportOrders(OrderStatus status, LocalDate from, LocalDate to, ExportFormat format, OutputStream out) {
+        //1.檢查參數
+        if (format == null) {
+            throw new IllegalArgumentException("匯出格式不得為空");
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("起始日期不可晚於結束日期");
+        }
+        LocalDateTime fromTime = from != null ? from.atStartOfDay() : null;
+        LocalDateTime toTime = to != null ? to.plusDays(1).atStartOfDay() : null;  //結束日期當天也包含在內
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        Integer count = transactionTemplate.execute(tx -> {
+            try (Stream<Object[]> rows = orderRepository.streamForExport(status, fromTime, toTime)) {
+                if (format == ExportFormat.CSV) {
+                    writer.write(CSV_HEADER);
+                    writer.write('\n');
+                }
+                //2.依訂單 ID 排序 -> 相鄰且屬於同一訂單的列組成一筆訂單
+                int written = 0;
+                Order current = null;
+                List<OrderItemResponse> items = new ArrayList<>();
+                Iterator<Object[]> iterator = rows.iterator();
+                while (iterator.hasNext()) {
+                    Object[] row = iterator.next();
+                    Order order = (Order) row[0];
+                    OrderItem item = (OrderItem) row[1];  //沒有明細的訂單為 null
+                    if (current != null && current.getId() != order.getId()) {
+                        write(writer, format, orderService.toOrderResponse(current, items));
+                        written++;
+                        items = new ArrayList<>();
+                    }
+                    current = order;
+                    if (item != null) {
+                        //先轉換 (舊明細可能需要讀取關聯商品，必須在 entity 尚未 detach 前完成)
+                        items.add(orderItemService.mapToDto(item, order.getCreatedAt()));
+                    }
+                    //3.已轉換的 entity 不再需要 -> 清空 persistence context，讓讀過的資料可被回收
+                    entityManager.clear();
+                }
+                if (current != null) {
+                    write(writer, format, orderService.toOrderResponse(current, items));
+                    written++;
+                }
+                writer.flush();
+                return written;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);  //用戶端中斷下載等寫出失敗
+            }
+        });
+        return count != null ? count : 0;
+    }
+
+    private void write(Writer writer, ExportFormat format, OrderResponse order) throws IOException {
+        if (format == ExportFormat.NDJSON) {
+            writer.write(toJson(order));
+        } else {
+            writer.write(String.valueOf(order.getId()));
+            writer.write(',');
+            writer.write(csv(order.getOrderReference()));
+            writer.write(',');
+            writer.write(csv(order.getCreatedAt()));
+            writer.write(',');
+            writer.write(csv(order.getStatus()));
+            writer.write(',');
+            writer.write(String.valueOf(order.isReturned()));
+            writer.write(',');
+            writer.write(csv(order.getUserName()));
+            writer.write(',');
+            writer.write(csv(order.getShippingAddress()));
+            writer.write(',');
+            writer.write(String.valueOf(order.getItems().size()));
+            writer.write(',');
+            writer.write(csv(order.getSum()));
+            writer.write(',');
+            writer.write(csv(order.getDelivery()));
+            writer.write(',');
+            writer.write(csv(order.getTax()));
+            writer.write(',');
+            writer.write(csv(order.getTotal()));
+        }
+        writer.write('\n');
+    }
+
+    private String toJson(OrderResponse order) {
+        try {
+            return objectMapper.writeValueAsString(order);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("訂單 " + order.getId() + " 轉換 JSON 失敗", e);
+        }
+    }
+
+    //CSV 欄位：含逗號、雙引號或換行時以雙引號包住，內容中的雙引號改為兩個
+    static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -1,8 +1,10 @@
 package com.gtalent.commerce.service.services;
 
+import com.gtalent.commerce.service.models.Order;
 import com.gtalent.commerce.service.models.OrderItem;
 import com.gtalent.commerce.service.responses.OrderItemResponse;
 import com.gtalent.commerce.service.responses.OrderResponse;
+import com.gtalent.commerce.service.utils.MoneyCalculator;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -12,27 +14,102 @@ import java.time.LocalDateTime;
 @Service
 public class OrderItemService {
 
+    private static final BigDecimal TAX_RATE = BigDecimal.valueOf(0.2);               //20% 稅率
+    private static final BigDecimal DELIVERY_RATE_PER_UNIT = BigDecimal.valueOf(10);  //假設每單位體積 10 美元
+    private static final long TAX_RATE_TENTHS = 2;                                    //20% = 2 / 10
+    private static final long DELIVERY_RATE_PER_UNIT_INT = 10;
+    private static final long VOLUME_TO_CENTS = 10_000;  //體積小數 6 位 -> 金額小數 2 位
+
     //DTO 轉換
     //mapToDto -> 將資料庫實體 (OrderItem) 轉換成 API 回傳格式 (OrderItemResponse)，並填入必要欄位 (例如商品名稱、價格、數量、小計、下單日期等)
+    //明細已凍結商品欄位時直接讀明細的欄位；舊資料 (尚未回填) 才讀取關聯的 Product
     public OrderItemResponse mapToDto(OrderItem item, LocalDateTime orderCreatedAt) {
         OrderItemResponse response = new OrderItemResponse();  //創建一個 response 物件
-        response.setProductReference(item.getProduct().getReference());  //將資訊存入
-        response.setProductName(item.getProductName());
+        response.setProductName(item.getProductName());  //將資訊存入
         response.setUnitPrice(item.getPrice());
         response.setQuantity(item.getQuantity());
         response.setTotal(item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
         response.setDate(orderCreatedAt.toLocalDate().toString()); //年/月/日
-        response.setWidth(item.getProduct().getWidth());
-        response.setHeight(item.getProduct().getHeight());
-        response.setDepth(item.getProduct().getDepth());
+        if (item.isProductFrozen()) {
+            response.setProductReference(item.getProductReference());
+            response.setWidth(item.getWidth());
+            response.setHeight(item.getHeight());
+            response.setDepth(item.getDepth());
+        } else {
+            response.setProductReference(item.getProduct().getReference());
+            response.setWidth(item.getProduct().getWidth());
+            response.setHeight(item.getProduct().getHeight());
+            response.setDepth(item.getProduct().getDepth());
+        }
         return response;  //儲存後回傳 response 物件
     }
 
+    //計算金額並寫入訂單 (建立訂單與回填共用)，之後讀取訂單不需要再計算
+    public void freezeTotals(Order order, OrderResponse response) {
+        calculateTotals(response);
+        order.setTotalAmount(response.getSum());
+        order.setDeliveryFee(response.getDelivery());
+        order.setTaxAmount(response.getTax());
+        order.setPricingFrozen(true);
+    }
+
+    //套用訂單上已寫入的金額 (明細小計已在 mapToDto 算好)
+    public void applyFrozenTotals(OrderResponse response, Order order) {
+        response.setSum(order.getTotalAmount());
+        response.setDelivery(order.getDeliveryFee());
+        response.setTax(order.getTaxAmount());
+        response.setTotal(order.calculateTotal());
+    }
+
     //計算金額
+    //先以 long (分) 計算；金額或尺寸無法用 long 精確表示 (小數位數過多、溢位) 時改用 BigDecimal 計算，兩者結果完全相同
     public void calculateTotals(OrderResponse response) {
-        final BigDecimal TAX_RATE = BigDecimal.valueOf(0.2);               //20% 稅率
-        final BigDecimal DELIVERY_RATE_PER_UNIT = BigDecimal.valueOf(10);  //假設每單位體積 10 美元
+        try {
+            calculateTotalsInCents(response);
+        } catch (ArithmeticException e) {
+            calculateTotalsExact(response);
+        }
+    }
+
+    private void calculateTotalsInCents(OrderResponse response) {
+        long sum = 0;         //商品總額 (分)
+        int sumScale = 0;     //BigDecimal.ZERO 起算 -> 小數位數取各小計的最大值
+        long totalVolume = 0; //累計體積 (小數 6 位)
+
+        //1.計算商品總額 & 累計體積
+        for (OrderItemResponse item : response.getItems()) {
+            BigDecimal unitPrice = item.getUnitPrice();
+            if (unitPrice != null) {
+                long itemTotal = Math.multiplyExact(MoneyCalculator.toCents(unitPrice), item.getQuantity());
+                item.setTotal(MoneyCalculator.fromCents(itemTotal, unitPrice.scale()));
+                sum = Math.addExact(sum, itemTotal);
+                sumScale = Math.max(sumScale, unitPrice.scale());
+            } else {
+                item.setTotal(BigDecimal.ZERO);
+            }
+            if (item.getWidth() != null && item.getHeight() != null && item.getDepth() != null) {
+                totalVolume = Math.addExact(totalVolume, MoneyCalculator.volumeUnits(
+                        item.getWidth(), item.getHeight(), item.getDepth(), item.getQuantity()));
+            }
+        }
+        response.setSum(MoneyCalculator.fromCents(sum, sumScale));
+
+        //2.計算運費：體積 * 10，從小數 6 位四捨五入到 2 位
+        long delivery = MoneyCalculator.divideHalfUp(
+                Math.multiplyExact(totalVolume, DELIVERY_RATE_PER_UNIT_INT), VOLUME_TO_CENTS);
+        response.setDelivery(MoneyCalculator.fromCents(delivery, MoneyCalculator.MONEY_SCALE));
+
+        //3.計算稅金 (Sum + Delivery) * 20%：分 * 2 為小數 3 位，再四捨五入到 2 位
+        long taxable = Math.addExact(sum, delivery);
+        long tax = MoneyCalculator.divideHalfUp(Math.multiplyExact(taxable, TAX_RATE_TENTHS), 10);
+        response.setTax(MoneyCalculator.fromCents(tax, MoneyCalculator.MONEY_SCALE));
+
+        //4.計算最終總額
+        response.setTotal(MoneyCalculator.fromCents(Math.addExact(taxable, tax), MoneyCalculator.MONEY_SCALE));
+    }
 
+    //BigDecimal 計算 (原本的做法，long 無法表示時使用，也作為正確性比對的基準)
+    void calculateTotalsExact(OrderResponse response) {
         BigDecimal sum = BigDecimal.ZERO;           //商品總額
         BigDecimal totalVolume = BigDecimal.ZERO;   //累計體積，用於運費
 
@@ -0,0 +1,74 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.models.Order;
+import com.gtalent.commerce.service.models.OrderItem;
+import com.gtalent.commerce.service.repositories.OrderItemRepository;
+import com.gtalent.commerce.service.repositories.OrderRepository;
+import com.gtalent.commerce.service.responses.OrderItemResponse;
+import com.gtalent.commerce.service.responses.OrderResponse;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//回填舊訂單：將商品尺寸凍結到明細，並計算運費、稅金寫入訂單
+//每批 chunkSize 筆訂單各自一個交易，中途失敗時已完成的批次不會回滾，重新執行會從尚未回填的訂單繼續
+@Service
+public class OrderPricingBackfill {
+
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final OrderItemService orderItemService;
+    private final TransactionTemplate transactionTemplate;
+
+    public OrderPricingBackfill(OrderRepository orderRepository, OrderItemRepository orderItemRepository,
+                                OrderItemService orderItemService, PlatformTransactionManager transactionManager) {
+        this.orderRepository = orderRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.orderItemService = orderItemService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    //回傳回填的訂單數
+    public int backfill(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("每批訂單數必須大於 0");
+        }
+        int total = 0;
+        int afterId = 0;  //依 ID 遞增逐批處理 (Keyset)，避免 OFFSET 越來越慢
+        while (true) {
+            List<Integer> ids = orderRepository.findUnpricedIdsAfter(afterId, PageRequest.of(0, chunkSize));
+            if (ids.isEmpty()) {
+                return total;
+            }
+            transactionTemplate.executeWithoutResult(status -> backfillChunk(ids));
+            total += ids.size();
+            afterId = ids.get(ids.size() - 1);
+        }
+    }
+
+    private void backfillChunk(List<Integer> ids) {
+        //1.一次載入這批訂單的明細與商品
+        Map<Integer, List<OrderItem>> itemsByOrderId = new HashMap<>();
+        for (OrderItem item : orderItemRepository.findWithProductByOrderIdIn(ids)) {
+            itemsByOrderId.computeIfAbsent(item.getOrder().getId(), k -> new ArrayList<>()).add(item);
+        }
+        //2.凍結商品欄位並計算金額 (與建立訂單相同的計算方式)
+        for (Order order : orderRepository.findAllById(ids)) {
+            List<OrderItemResponse> itemResponses = new ArrayList<>();
+            for (OrderItem item : itemsByOrderId.getOrDefault(order.getId(), List.of())) {
+                item.freezeProduct(item.getProduct());
+                itemResponses.add(orderItemService.mapToDto(item, order.getCreatedAt()));
+            }
+            OrderResponse response = new OrderResponse();
+            response.setItems(itemResponses);
+            orderItemService.freezeTotals(order, response);
+        }
+        //3.交易提交時 Hibernate 以 JDBC batch 送出 UPDATE
+    }
+}
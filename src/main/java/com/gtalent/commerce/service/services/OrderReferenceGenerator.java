@@ -0,0 +1,8 @@
+package com.gtalent.commerce.service.services;
+
+//訂單編號產生器 -> 可依部署需求替換實作 (預設為 SnowflakeOrderReferenceGenerator)
+public interface OrderReferenceGenerator {
+
+    //回傳唯一的訂單編號，長度不可超過 orders.order_reference 欄位 (20 字元)
+    String nextReference();
+}
@@ -6,68 +6,139 @@ import com.gtalent.commerce.service.models.Order;
 import com.gtalent.commerce.service.models.OrderItem;
 import com.gtalent.commerce.service.models.Product;
 import com.gtalent.commerce.service.models.User;
+import com.gtalent.commerce.service.repositories.OrderItemRepository;
 import com.gtalent.commerce.service.repositories.OrderRepository;
 import com.gtalent.commerce.service.repositories.ProductRepository;
 import com.gtalent.commerce.service.repositories.UserRepository;
 import com.gtalent.commerce.service.requests.OrderRequest;
 import com.gtalent.commerce.service.requests.PatchOrderRequest;
 import com.gtalent.commerce.service.requests.OrderItemRequest;
+import com.gtalent.commerce.service.responses.CursorPageResponse;
 import com.gtalent.commerce.service.responses.OrderItemResponse;
 import com.gtalent.commerce.service.responses.OrderResponse;
 import com.gtalent.commerce.service.responses.PendingOrderResponse;
+import com.gtalent.commerce.service.utils.KeysetCursor;
 import jakarta.transaction.Transactional;
 import org.springframework.data.domain.*;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 public class OrderService {
+    private static final int ITEM_BATCH_SIZE = 500;  //每次以 IN 載入明細的訂單數上限
+
     private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
     private final OrderItemService orderItemService;
+    private final OrderReferenceGenerator orderReferenceGenerator;
+    private final InventoryService inventoryService;
 
-    public OrderService(OrderRepository orderRepository, UserRepository userRepository,
-                        ProductRepository productRepository, OrderItemService orderItemService) {
+    public OrderService(OrderRepository orderRepository, OrderItemRepository orderItemRepository,
+                        UserRepository userRepository, ProductRepository productRepository,
+                        OrderItemService orderItemService, OrderReferenceGenerator orderReferenceGenerator,
+                        InventoryService inventoryService) {
         this.orderRepository = orderRepository;
+        this.orderItemRepository = orderItemRepository;
         this.userRepository = userRepository;
         this.productRepository = productRepository;
         this.orderItemService = orderItemService;
+        this.orderReferenceGenerator = orderReferenceGenerator;
+        this.inventoryService = inventoryService;
     }
 
     //1.取得所有訂單列表
     public List<OrderResponse> getAllOrders() {
-        List<Order> orders = orderRepository.findAll();  //先取得訂單
-        List<OrderResponse> responses = new ArrayList<>();  //建立一個空List
-        for (Order order : orders) {
-        responses.add(convertToOrderResponse(order));
-        }
-        return responses;
+        List<Order> orders = orderRepository.findAllWithUser();  //先取得訂單 (連同訂購者)
+        return toOrderResponses(orders);
     }
 
     //1.1 依訂單狀態篩選取得分頁列表
     public Page<OrderResponse> getOrdersByPage(OrderStatus status, Pageable pageable) {
-        Page<Order> ordersPage;
+        Page<Integer> idsPage;
 
         if (status != null) {
             //有指定狀態就依狀態查詢
-            ordersPage = orderRepository.findByStatus(status, pageable);
+            idsPage = orderRepository.findPageIdsByStatus(status, pageable);
         } else {
             //沒指定就查全部
-            ordersPage = orderRepository.findAll(pageable);
+            idsPage = orderRepository.findPageIds(pageable);
+        }
+        if (idsPage.isEmpty()) {
+            return new PageImpl<>(Collections.emptyList(), pageable, idsPage.getTotalElements());
         }
 
-        List<OrderResponse> orderResponses = ordersPage.getContent().stream()
-                .map(this::convertToOrderResponse)
-                .toList();
+        //依分頁取得的 ID 載入訂單，並維持分頁查詢的排序
+        Map<Integer, Order> ordersById = new HashMap<>();
+        for (Order order : orderRepository.findWithUserByIdIn(idsPage.getContent())) {
+            ordersById.put(order.getId(), order);
+        }
+        List<Order> orders = new ArrayList<>();
+        for (Integer id : idsPage.getContent()) {
+            Order order = ordersById.get(id);
+            if (order != null) {
+                orders.add(order);
+            }
+        }
+
+        return new PageImpl<>(toOrderResponses(orders), pageable, idsPage.getTotalElements());
+    }
+
+    //1.2 依訂單狀態篩選取得 Keyset 分頁列表 (依下單時間由新到舊)
+    public CursorPageResponse<OrderResponse> getOrdersAfter(OrderStatus status, String cursor, int size,
+                                                            boolean includeTotal) {
+        KeysetCursor.checkSize(size);
+        Specification<Order> filter = (root, query, criteriaBuilder) ->
+                status != null ? criteriaBuilder.equal(root.get("status"), status) : null;
+        List<Order> rows = orderRepository.findBy(
+                filter.and(KeysetCursor.after(KeysetCursor.decode(cursor), "createdAt")),
+                q -> q.sortBy(KeysetCursor.sort("createdAt"))
+                        .project("user")  //訂購者一起載入
+                        .limit(size + 1)
+                        .all());
+        Long total = includeTotal ? orderRepository.count(filter) : null;  //不需要總筆數時省略 COUNT(*)
+        CursorPageResponse<Order> page =
+                KeysetCursor.toPage(rows, size, o -> new KeysetCursor(o.getCreatedAt(), o.getId()), total);
+        return new CursorPageResponse<>(toOrderResponses(page.getContent()), page.getNextCursor(),
+                page.isHasNext(), page.getTotalElements());
+    }
+
+    //批次載入明細後再轉換 DTO -> 查詢數固定為「訂單 1 次 + 明細每 ITEM_BATCH_SIZE 筆 1 次」
+    //整批都已凍結金額時只查 orders_items；含舊訂單時才連同商品一起載入
+    private List<OrderResponse> toOrderResponses(List<Order> orders) {
+        Map<Integer, List<OrderItem>> itemsByOrderId = new HashMap<>();
+        for (int from = 0; from < orders.size(); from += ITEM_BATCH_SIZE) {
+            List<Order> batch = orders.subList(from, Math.min(from + ITEM_BATCH_SIZE, orders.size()));
+            List<Integer> ids = batch.stream()
+                    .map(Order::getId)
+                    .toList();
+            boolean allFrozen = batch.stream().allMatch(Order::isPricingFrozen);
+            List<OrderItem> items = allFrozen
+                    ? orderItemRepository.findByOrderIdIn(ids)
+                    : orderItemRepository.findWithProductByOrderIdIn(ids);
+            for (OrderItem item : items) {
+                itemsByOrderId.computeIfAbsent(item.getOrder().getId(), k -> new ArrayList<>()).add(item);
+            }
+        }
 
-        return new PageImpl<>(orderResponses, pageable, ordersPage.getTotalElements());
+        List<OrderResponse> responses = new ArrayList<>();  //建立一個空List
+        for (Order order : orders) {
+            responses.add(convertToOrderResponse(order,
+                    itemsByOrderId.getOrDefault(order.getId(), Collections.emptyList())));
+        }
+        return responses;
     }
 
 
@@ -76,7 +147,7 @@ public class OrderService {
     public OrderResponse getOrderById(int id) {
         Order order = orderRepository.findById(id)
                 .orElseThrow(() -> new OrderNotFoundException("找不到 ID 為 " + id + " 的訂單"));
-        return convertToOrderResponse(order);
+        return convertToOrderResponse(order, order.getItems());
     }
 
     //3.建立訂單
@@ -100,20 +171,38 @@ public class OrderService {
         order.setStatus(OrderStatus.ORDERED);
         order.setReturned(false);  // 預設未退貨
 
-        String reference = "ORD" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-        order.setOrderReference(reference);
+        order.setOrderReference(orderReferenceGenerator.nextReference());  //唯一且大致依時間排序的訂單編號
 
-        //3.建立訂單明細
-        List<OrderItem> orderItems = new ArrayList<>();
+        //3.一次查出購物車內所有商品 (以不重複的商品 ID 做單次 IN 查詢)
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();  //同一商品可能出現多次 -> 合併數量
         for (OrderItemRequest itemReq : request.getItems()) {
-            Product product = productRepository.findById(itemReq.getProductId())
-                    .orElseThrow(() -> new IllegalArgumentException(
-                            "找不到商品 ID: " + itemReq.getProductId()
-                    ));
-
             if (itemReq.getQuantity() <= 0) {
                 throw new IllegalArgumentException("商品數量必須大於 0");
             }
+            quantities.merge(itemReq.getProductId(), itemReq.getQuantity(), Integer::sum);
+        }
+        Set<Integer> productIds = quantities.keySet();
+        Map<Integer, Product> productsById = new HashMap<>();
+        for (Product product : productRepository.findAllById(productIds)) {
+            productsById.put(product.getId(), product);
+        }
+        //所有找不到的商品 ID 一次回報
+        List<Integer> missingIds = productIds.stream()
+                .filter(id -> !productsById.containsKey(id))
+                .toList();
+        if (!missingIds.isEmpty()) {
+            throw new IllegalArgumentException("找不到商品 ID: " + missingIds.stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(", ")));
+        }
+        //預留庫存 (條件式 UPDATE，不足時拋出例外並回滾整筆訂單)
+        inventoryService.reserve(quantities);
+        order.setStockReserved(true);
+
+        //4.建立訂單明細
+        List<OrderItem> orderItems = new ArrayList<>();
+        for (OrderItemRequest itemReq : request.getItems()) {
+            Product product = productsById.get(itemReq.getProductId());
 
             //建立訂單項目
             OrderItem item = new OrderItem();
@@ -122,26 +211,25 @@ public class OrderService {
             item.setQuantity(itemReq.getQuantity());
             item.setPrice(product.getPrice());  //從資料庫設定價格
             item.setProductName(product.getReference());
+            item.freezeProduct(product);        //凍結下單當下的商品編號與尺寸
             item.setDate(LocalDate.now());      //系統自動填入日期
             orderItems.add(item);
         }
         order.setItems(orderItems);
 
-        //4.在 createOrder Service 儲存 Order 時，先給 totalAmount、deliveryFee、taxAmount
-        //一個非 null 的初值（例如小計、0、0），避免資料庫報錯
-        BigDecimal totalAmount = orderItems.stream()
-                .map(i -> i.getPrice().multiply(BigDecimal.valueOf(i.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        order.setTotalAmount(totalAmount);
-        order.setDeliveryFee(BigDecimal.ZERO);  //暫時
-        order.setTaxAmount(BigDecimal.ZERO);    //暫時
+        //5.建立訂單時計算一次運費、稅金並寫入訂單，之後讀取直接使用欄位值
+        OrderResponse response = new OrderResponse();
+        List<OrderItemResponse> itemResponses = new ArrayList<>();
+        for (OrderItem item : orderItems) {
+            itemResponses.add(orderItemService.mapToDto(item, order.getCreatedAt()));
+        }
+        response.setItems(itemResponses);
+        orderItemService.freezeTotals(order, response);
 
-        //5.儲存訂單
+        //6.儲存訂單 (明細以 JDBC batch 一次寫入)
         Order savedOrder = orderRepository.save(order);
 
-        //6.轉換成 Response
-        OrderResponse response = new OrderResponse();
+        //7.轉換成 Response
         response.setId(savedOrder.getId());
         response.setUserName(savedOrder.getUser().getFirstName() + " " + savedOrder.getUser().getLastName());
         response.setUserEmail(savedOrder.getUser().getEmail());
@@ -151,23 +239,16 @@ public class OrderService {
         response.setStatus(savedOrder.getStatus());
         response.setReturned(savedOrder.isReturned());
 
-        //套用 mapToDto 將每個 OrderItem 轉成 OrderItemResponse
-        List<OrderItemResponse> itemResponses = savedOrder.getItems().stream()
-                .map(i -> orderItemService.mapToDto(i, savedOrder.getCreatedAt()))
-                .peek(OrderItemResponse::calculateTotal)   //確保每個 item total 先計算
-                .toList();
-        response.setItems(itemResponses);
-
-        //7.計算 totals
-        orderItemService.calculateTotals(response);
-
         return response;
     }
 
     //4.部分更新訂單
+    @Transactional
     public OrderResponse patchOrder(int id, PatchOrderRequest patchRequest) {
-        Order order = orderRepository.findById(id)
+        //鎖定訂單列：狀態轉換與釋放庫存依據的是最新的 status / stockReserved (同時取消時只會釋放一次)
+        Order order = orderRepository.findForUpdate(id)
                 .orElseThrow(() -> new OrderNotFoundException("找不到 ID 為 " + id + " 的訂單"));
+        OrderStatus previousStatus = order.getStatus();
 
         if (patchRequest.getShippingAddress() != null) {
             order.setShippingAddress(patchRequest.getShippingAddress());
@@ -199,12 +280,19 @@ public class OrderService {
                         "不允許的狀態轉換: " + order.getStatus() + " → " + newStatus);
             }
         }
+        //訂單轉為取消 -> 釋放建立訂單時預留的庫存 (舊訂單未預留庫存則不處理)
+        if (previousStatus != OrderStatus.CANCELLED && order.getStatus() == OrderStatus.CANCELLED
+                && order.isStockReserved()) {
+            Map<Integer, Integer> quantities = new HashMap<>();
+            for (OrderItem item : order.getItems()) {
+                quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+            }
+            inventoryService.release(quantities);
+            order.setStockReserved(false);
+        }
         Order savedOrder = orderRepository.save(order);
 
-        OrderResponse response = convertToOrderResponse(savedOrder);
-        orderItemService.calculateTotals(response);
-
-        return response;
+        return convertToOrderResponse(savedOrder, savedOrder.getItems());
     }
 
     //5.刪除訂單
@@ -215,8 +303,20 @@ public class OrderService {
         orderRepository.save(order);
     }
 
-    //將 Order 轉換成 DTO
-    private OrderResponse convertToOrderResponse(Order order) {
+    //將 Order 轉換成 DTO (package-private：供 benchmark 直接量測)
+    OrderResponse convertToOrderResponse(Order order, List<OrderItem> orderItems) {
+        //轉換成 OrderItem
+        List<OrderItemResponse> items = new ArrayList<>();
+        for (OrderItem item : orderItems) {  //遍歷訂單中的每個商品明細
+            OrderItemResponse itemResponse = orderItemService.mapToDto(item, order.getCreatedAt());
+            //將每個 OrderItem 傳給 orderItemService 的 mapToDto 方法，並帶入 order.getCreatedAt() 作為下單日期。
+            items.add(itemResponse);  //每個轉換好的 OrderItemResponse 都放入 items 清單
+        }
+        return toOrderResponse(order, items);
+    }
+
+    //以已轉換的商品明細組成訂單 DTO (匯出時明細逐筆轉換後使用)
+    OrderResponse toOrderResponse(Order order, List<OrderItemResponse> items) {
         OrderResponse response = new OrderResponse();  //創建一個空的 OrderResponse 物件
         response.setId(order.getId());  //將 Order 的基本資料填入 OrderResponse
         response.setOrderReference(order.getOrderReference());
@@ -225,33 +325,27 @@ public class OrderService {
         response.setStatus(order.getStatus());
         response.setReturned(order.isReturned());
         response.setShippingAddress(order.getUser().getAddress());
-
-        //轉換成 OrderItem
-        List<OrderItemResponse> items = new ArrayList<>();
-        for (OrderItem item : order.getItems()) {  //遍歷訂單中的每個商品明細
-            OrderItemResponse itemResponse = orderItemService.mapToDto(item, order.getCreatedAt());
-            //將每個 OrderItem 傳給 orderItemService 的 mapToDto 方法，並帶入 order.getCreatedAt() 作為下單日期。
-            items.add(itemResponse);  //每個轉換好的 OrderItemResponse 都放入 items 清單
-        }
         response.setItems(items);  //最後將整個商品明細列表設置到 OrderResponse
 
-        //計算總金額
-        orderItemService.calculateTotals(response);
+        //總金額：建立訂單時已寫入 -> 直接使用；舊訂單 (尚未回填) 才重新計算
+        if (order.isPricingFrozen()) {
+            orderItemService.applyFrozenTotals(response, order);
+        } else {
+            orderItemService.calculateTotals(response);
+        }
 
         return response;
     }
 
-    //待處理訂單
-    public List<PendingOrderResponse> getPendingOrders() {
-        List<Order> pendingOrders = orderRepository.findByStatus(OrderStatus.ORDERED);
-        return pendingOrders.stream()
-                .map(o -> new PendingOrderResponse(
-                        o.getId(),
-                        o.calculateTotal(),   //總金額含稅金與運費
-                        o.getCreatedAt(),
-                        o.getItems().size()   //商品數量
-                ))
-                .toList();
+    //待處理訂單 (分頁，依下單時間由舊到新)
+    //olderThanMinutes -> 只列出下單超過 N 分鐘仍未處理的訂單 (null 代表不限制)
+    public Page<PendingOrderResponse> getPendingOrders(Integer olderThanMinutes, Pageable pageable) {
+        if (olderThanMinutes != null && olderThanMinutes < 0) {
+            throw new IllegalArgumentException("分鐘數不可小於 0");
+        }
+        LocalDateTime before = olderThanMinutes != null ? LocalDateTime.now().minusMinutes(olderThanMinutes) : null;
+        //總金額含稅金與運費、商品數量皆由資料庫 GROUP BY 算出
+        return orderRepository.findSummariesByStatus(OrderStatus.ORDERED, before, pageable);
     }
 
     /* @Transactional
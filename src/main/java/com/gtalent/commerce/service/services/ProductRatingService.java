@@ -0,0 +1,187 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.models.ProductRating;
+import com.gtalent.commerce.service.repositories.ProductRatingRepository;
+import com.gtalent.commerce.service.repositories.ProductRepository;
+import com.gtalent.commerce.service.responses.ProductRatingResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+//產品評分統計 (評論數、評分總和、1~5 星分布)
+//1.評論新增 / 修改 / 刪除時，在同一個交易中以差量 UPDATE 維護 (只計入 ACCEPTED 且未刪除的評論)
+//2.rebuild() 從評論重新計算並修正差異 (鎖定統計列後才寫入)，差異筆數透過 product.rating.rebuild.drift 指標提供
+@Service
+public class ProductRatingService implements MeterBinder {
+
+    private static final String INSERT_SQL = "INSERT INTO product_ratings "
+            + "(product_id, review_count, rating_sum, stars_1, stars_2, stars_3, stars_4, stars_5) "
+            + "VALUES (?, 0, 0, 0, 0, 0, 0, 0)";
+    private static final String AGGREGATE_SQL = "SELECT product_id, rating, COUNT(*) FROM reviews "
+            + "WHERE status = 'ACCEPTED' AND deleted_at IS NULL GROUP BY product_id, rating";
+    private static final String PRODUCT_AGGREGATE_SQL = "SELECT rating, COUNT(*) FROM reviews "
+            + "WHERE product_id = ? AND status = 'ACCEPTED' AND deleted_at IS NULL GROUP BY rating";
+    private static final String SELECT_SQL = "SELECT product_id, review_count, rating_sum, "
+            + "stars_1, stars_2, stars_3, stars_4, stars_5 FROM product_ratings";
+    private static final String UPDATE_SQL = "UPDATE product_ratings SET review_count = ?, rating_sum = ?, "
+            + "stars_1 = ?, stars_2 = ?, stars_3 = ?, stars_4 = ?, stars_5 = ? WHERE product_id = ?";
+
+    private final ProductRatingRepository productRatingRepository;
+    private final ProductRepository productRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductCatalogCache catalogCache;
+    private final TransactionTemplate repairTemplate;
+    private final AtomicLong drifted = new AtomicLong();
+
+    public ProductRatingService(ProductRatingRepository productRatingRepository, ProductRepository productRepository,
+                                JdbcTemplate jdbcTemplate, ProductCatalogCache catalogCache,
+                                PlatformTransactionManager transactionManager) {
+        this.productRatingRepository = productRatingRepository;
+        this.productRepository = productRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.catalogCache = catalogCache;
+        //修正時重新計算需讀到鎖定後才提交的評論 (MySQL 預設 REPEATABLE READ 會讀到交易開始時的快照)
+        this.repairTemplate = new TransactionTemplate(transactionManager);
+        this.repairTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    //1.取得評分統計 (主鍵查詢一次)
+    public ProductRatingResponse getRating(int productId) {
+        return productRatingRepository.findById(productId)
+                .map(r -> ProductRatingResponse.of(productId, r.getReviewCount(), r.getRatingSum(), r.getStars1(),
+                        r.getStars2(), r.getStars3(), r.getStars4(), r.getStars5()))
+                .orElseGet(() -> {
+                    if (!productRepository.existsById(productId)) {
+                        throw new IllegalArgumentException("無此產品");
+                    }
+                    return ProductRatingResponse.of(productId, null, null, null, null, null, null, null);
+                });
+    }
+
+    //2.評論對統計的貢獻改變 (oldRating / newRating 為 null 代表不計入統計)，需在呼叫端的交易中執行
+    public void applyChange(int productId, Integer oldRating, Integer newRating) {
+        if (oldRating == null && newRating == null || oldRating != null && oldRating.equals(newRating)) {
+            return;  //貢獻沒有改變 (例如只修改評論內容)
+        }
+        int[] stars = new int[6];
+        int count = 0;
+        long sum = 0;
+        if (oldRating != null) {
+            stars[oldRating]--;
+            count--;
+            sum -= oldRating;
+        }
+        if (newRating != null) {
+            stars[newRating]++;
+            count++;
+            sum += newRating;
+        }
+        if (productRatingRepository.applyDelta(productId, count, sum,
+                stars[1], stars[2], stars[3], stars[4], stars[5]) == 0) {
+            //第一次有評分 -> 先建立統計列 (同時建立時只有一方成功，另一方直接更新)
+            try {
+                jdbcTemplate.update(INSERT_SQL, productId);
+            } catch (DuplicateKeyException e) {
+                //其他交易已建立
+            }
+            productRatingRepository.applyDelta(productId, count, sum, stars[1], stars[2], stars[3], stars[4], stars[5]);
+        }
+        catalogCache.evictDetail(productId);  //產品明細含評分統計
+    }
+
+    //3.從評論重新計算所有產品的統計並修正差異，回傳有差異的產品數
+    //先以不加鎖的快照找出可能有差異的產品，再逐一鎖定統計列後重新計算 -> 期間提交的差量不會被快照覆蓋
+    @Scheduled(cron = "${product.rating.rebuild.cron:-}")  //預設不排程
+    public int rebuild() {
+        //1.由評論 GROUP BY 算出所有產品的統計，與目前的統計比對
+        Map<Integer, ProductRating> expected = new HashMap<>();
+        jdbcTemplate.query(AGGREGATE_SQL, rs -> {
+            add(expected.computeIfAbsent(rs.getInt(1), ProductRatingService::empty), rs.getInt(2), rs.getInt(3));
+        });
+        Map<Integer, ProductRating> stored = new HashMap<>();
+        jdbcTemplate.query(SELECT_SQL, rs -> {
+            stored.put(rs.getInt(1), toRating(rs));
+        });
+        Set<Integer> productIds = new HashSet<>(expected.keySet());
+        productIds.addAll(stored.keySet());
+
+        //2.有差異的產品逐一在自己的交易中修正
+        int drift = 0;
+        for (Integer productId : productIds) {
+            ProductRating correct = expected.getOrDefault(productId, empty(productId));
+            if (!correct.equals(stored.get(productId)) && Boolean.TRUE.equals(repairTemplate.execute(
+                    tx -> repair(productId)))) {
+                drift++;
+            }
+        }
+        drifted.addAndGet(drift);
+        return drift;
+    }
+
+    //3.1 鎖定統計列 (等待進行中的差量交易提交) 後重新計算該產品並修正，有修正時回傳 true
+    //之後才提交的評論，其差量 UPDATE 會等待這個鎖，再加在修正後的值上
+    private boolean repair(int productId) {
+        try {
+            jdbcTemplate.update(INSERT_SQL, productId);  //沒有統計列時先建立，才有列可以鎖定
+        } catch (DuplicateKeyException e) {
+            //已存在
+        }
+        ProductRating stored = jdbcTemplate.queryForObject(SELECT_SQL + " WHERE product_id = ? FOR UPDATE",
+                (rs, rowNum) -> toRating(rs), productId);
+        ProductRating correct = empty(productId);
+        jdbcTemplate.query(PRODUCT_AGGREGATE_SQL, rs -> {
+            add(correct, rs.getInt(1), rs.getInt(2));
+        }, productId);
+        if (correct.equals(stored)) {
+            return false;  //快照之後已由差量修正
+        }
+        jdbcTemplate.update(UPDATE_SQL, correct.getReviewCount(), correct.getRatingSum(), correct.getStars1(),
+                correct.getStars2(), correct.getStars3(), correct.getStars4(), correct.getStars5(), productId);
+        catalogCache.evictDetail(productId);
+        return true;
+    }
+
+    private static void add(ProductRating aggregate, int rating, int count) {
+        aggregate.setReviewCount(aggregate.getReviewCount() + count);
+        aggregate.setRatingSum(aggregate.getRatingSum() + (long) rating * count);
+        switch (rating) {
+            case 1 -> aggregate.setStars1(aggregate.getStars1() + count);
+            case 2 -> aggregate.setStars2(aggregate.getStars2() + count);
+            case 3 -> aggregate.setStars3(aggregate.getStars3() + count);
+            case 4 -> aggregate.setStars4(aggregate.getStars4() + count);
+            case 5 -> aggregate.setStars5(aggregate.getStars5() + count);
+            default -> throw new IllegalStateException("評分超出範圍: " + rating);
+        }
+    }
+
+    private static ProductRating toRating(ResultSet rs) throws SQLException {
+        return new ProductRating(rs.getInt(1), rs.getInt(2), rs.getLong(3), rs.getInt(4), rs.getInt(5), rs.getInt(6),
+                rs.getInt(7), rs.getInt(8));
+    }
+
+    private static ProductRating empty(int productId) {
+        return new ProductRating(productId, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("product.rating.rebuild.drift", drifted, AtomicLong::get)
+                .register(registry);
+    }
+}
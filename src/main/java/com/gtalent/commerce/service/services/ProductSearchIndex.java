@@ -0,0 +1,577 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.dto.ProductSearchRow;
+import com.gtalent.commerce.service.repositories.ProductRepository;
+import com.gtalent.commerce.service.utils.AfterCommit;
+import com.gtalent.commerce.service.utils.KeysetCursor;
+import com.gtalent.commerce.service.utils.PostingList;
+import com.gtalent.commerce.service.utils.SearchTokenizer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
+
+//產品搜尋的記憶體倒排索引，取代 lower(reference) LIKE '%q%' 每次全表掃描
+//1.產品編號切成三字元片段 (trigram)，查詢字串的片段全部出現後再確認編號包含查詢字串 (子字串比對，abcd 不符合 abc-bcd)
+//2.產品描述只取前段斷詞 (英文 / 數字為詞，中文兩字一組)，查詢的每個詞都出現才算符合
+//3.排序：編號與描述都符合 > 只有編號符合 > 只有描述符合，同分時新產品 (id 較大) 在前，最多回傳 maxResults 筆
+//  (有分類 / 庫存等資料庫條件時依相關度順序逐批取出並過濾，湊滿 maxResults 筆即停止，不先列出全部符合的 id)
+//  游標分頁依索引保存的 (建立時間, id) 排序，直接由索引取出一頁的 id
+//4.啟動後以 Stream 掃描建立；產品新增 / 修改 / 刪除於交易提交後增量更新；可設定排程整個重建
+//5.索引尚未建立完成或查詢少於三個字元時回傳 null，由呼叫端改用 LIKE 查詢
+@Service
+public class ProductSearchIndex implements MeterBinder {
+
+    private static final int GRAM_LENGTH = 3;
+    private static final PostingList[] NONE = new PostingList[0];
+    private static final int SCAN_BATCH_SIZE = 1000;  //建立索引時每批加鎖寫入的筆數
+    public static final int ID_BATCH_SIZE = 1000;  //以 id IN (...) 查資料庫時每批的 id 數
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxResults;
+    private final int descriptionLength;
+
+    //查詢共用讀鎖；增量更新與切換索引取得寫鎖
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Terms live;
+    private Terms building;  //重建中的索引 (null 代表沒有在重建)
+    private final Set<Integer> changedWhileBuilding = new HashSet<>();  //重建期間已增量更新的產品，掃描時略過
+    private volatile boolean ready;
+    private volatile long memoryBytes;  //最近一次建立完成時估計的記憶體用量
+
+    public ProductSearchIndex(ProductRepository productRepository, PlatformTransactionManager transactionManager,
+                              @Value("${product.search.max-results:1000}") int maxResults,
+                              @Value("${product.search.description-length:256}") int descriptionLength) {
+        this.productRepository = productRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.maxResults = maxResults;
+        this.descriptionLength = descriptionLength;
+        this.live = new Terms(descriptionLength);
+    }
+
+    //1.查詢：回傳依相關度排序的前 maxResults 筆產品 id (無法使用索引時回傳 null)
+    public List<Integer> search(String query) {
+        Match match = match(query);
+        if (match == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            return live.ranked(match, new Position(), maxResults);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //1.1 查詢並套用呼叫端的條件 (filter 回傳一批 id 中符合條件的 id)：先過濾再取前 maxResults 筆
+    public List<Integer> search(String query, Function<List<Integer>, Collection<Integer>> filter) {
+        Match match = match(query);
+        if (match == null) {
+            return null;
+        }
+        Set<Integer> matched = new LinkedHashSet<>();  //兩批之間產品被修改而換組時，同一個 id 只保留第一次
+        forEachFiltered(match, filter, id -> {
+            matched.add(id);
+            return matched.size() < maxResults;
+        });
+        return new ArrayList<>(matched);
+    }
+
+    //1.2 符合查詢與呼叫端條件的產品數 (不限 maxResults 筆，供游標分頁的總筆數使用)
+    public Long count(String query, Function<List<Integer>, Collection<Integer>> filter) {
+        Match match = match(query);
+        if (match == null) {
+            return null;
+        }
+        AtomicLong count = new AtomicLong();
+        forEachFiltered(match, filter, id -> {
+            count.incrementAndGet();
+            return true;
+        });
+        return count.get();
+    }
+
+    //1.3 游標分頁：依 (建立時間, id) 由新到舊，取出排在 after 之後的前 count 筆與全部符合的產品數
+    //在讀鎖中掃過符合的產品，只保留前 count 筆 (不建立完整的結果清單，也不查資料庫)
+    public KeysetMatches searchAfter(String query, KeysetCursor after, int count) {
+        Match match = match(query);
+        if (match == null) {
+            return null;
+        }
+        Key from = after == null ? null : new Key(toMicros(after.createdAt()), after.id());
+        lock.readLock().lock();
+        try {
+            return live.after(match, from, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //keys：這一批的 (建立時間, id)，由新到舊；total：全部符合查詢的產品數
+    public record KeysetMatches(List<KeysetCursor> keys, int total) {
+    }
+
+    //查詢字串切成片段與詞 (索引尚未建立完成或少於三個字元時回傳 null)
+    private Match match(String query) {
+        String normalized = SearchTokenizer.normalize(query).trim();
+        if (!ready || normalized.length() < GRAM_LENGTH) {
+            return null;
+        }
+        return new Match(normalized, SearchTokenizer.grams(normalized, GRAM_LENGTH),
+                SearchTokenizer.words(normalized, normalized.length()));
+    }
+
+    //依相關度順序每次只在讀鎖中取出 ID_BATCH_SIZE 筆，在鎖外以 filter 查資料庫，consumer 回傳 false 時停止
+    private void forEachFiltered(Match match, Function<List<Integer>, Collection<Integer>> filter,
+                                 IntPredicate consumer) {
+        Position position = new Position();
+        while (true) {
+            List<Integer> batch;
+            lock.readLock().lock();
+            try {
+                batch = live.ranked(match, position, ID_BATCH_SIZE);
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            Set<Integer> kept = new HashSet<>(filter.apply(batch));
+            for (Integer id : batch) {
+                if (kept.contains(id) && !consumer.test(id)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    //建立時間以微秒保存 (資料庫的精度)，不為每個產品保存 LocalDateTime 物件
+    //尚未回填的 NULL 視為 1970-01-01 (KeysetTimestampBackfill.UNKNOWN_CREATED_AT)，即 0
+    private static long toMicros(LocalDateTime createdAt) {
+        if (createdAt == null) {
+            return 0;
+        }
+        return createdAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + createdAt.getNano() / 1000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1000, ZoneOffset.UTC);
+    }
+
+    //2.產品新增 / 修改 / 刪除 (交易提交後才套用；舊的詞依索引自己保存的內容移除，不依賴呼叫端傳入修改前的資料)
+    public void add(int productId, String reference, String description, LocalDateTime createdAt) {
+        AfterCommit.run(() -> apply(productId, reference, description, createdAt));
+    }
+
+    public void update(int productId, String reference, String description, LocalDateTime createdAt) {
+        AfterCommit.run(() -> apply(productId, reference, description, createdAt));
+    }
+
+    public void remove(int productId) {
+        AfterCommit.run(() -> apply(productId, null, null, null));
+    }
+
+    private void apply(int productId, String reference, String description, LocalDateTime createdAt) {
+        lock.writeLock().lock();
+        try {
+            live.replace(productId, reference, description, createdAt);
+            if (building != null) {
+                //重建中的索引也要更新，並讓掃描略過這筆 (掃描讀到的可能是修改前的資料)
+                building.replace(productId, reference, description, createdAt);
+                changedWhileBuilding.add(productId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //3.重新建立整個索引 (查詢在重建期間繼續使用舊索引)，回傳索引的產品數
+    @Scheduled(cron = "${product.search.rebuild.cron:-}")  //預設不排程
+    public int rebuild() {
+        Terms fresh = new Terms(descriptionLength);
+        lock.writeLock().lock();
+        try {
+            if (building != null) {
+                throw new IllegalStateException("搜尋索引重建中");
+            }
+            building = fresh;
+            changedWhileBuilding.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            //1.依 id 逐筆讀取 (不一次載入全部)，每 SCAN_BATCH_SIZE 筆加鎖寫入一次
+            transactionTemplate.executeWithoutResult(tx -> {
+                try (Stream<ProductSearchRow> rows = productRepository.streamSearchRows(descriptionLength)) {
+                    List<ProductSearchRow> batch = new ArrayList<>(SCAN_BATCH_SIZE);
+                    Iterator<ProductSearchRow> iterator = rows.iterator();
+                    while (iterator.hasNext()) {
+                        batch.add(iterator.next());
+                        if (batch.size() == SCAN_BATCH_SIZE || !iterator.hasNext()) {
+                            addScanned(fresh, batch);
+                            batch.clear();
+                        }
+                    }
+                }
+            });
+            //2.切換成新索引
+            lock.writeLock().lock();
+            try {
+                fresh.trim();
+                memoryBytes = fresh.memoryBytes();
+                live = fresh;
+                ready = true;
+                return fresh.documents.size();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                building = null;
+                changedWhileBuilding.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    private void addScanned(Terms terms, List<ProductSearchRow> rows) {
+        lock.writeLock().lock();
+        try {
+            for (ProductSearchRow row : rows) {
+                if (!changedWhileBuilding.contains(row.getId())) {
+                    terms.replace(row.getId(), row.getReference(), row.getDescription(), row.getCreatedAt());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("product.search.index.documents", this, readLocked(index -> index.live.documents.size()))
+                .register(registry);
+        Gauge.builder("product.search.index.terms", this,
+                        readLocked(index -> index.live.referenceGrams.size() + index.live.descriptionWords.size()))
+                .register(registry);
+        Gauge.builder("product.search.index.memory", this, index -> index.memoryBytes)
+                .description("最近一次建立完成時估計的索引記憶體用量")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+    }
+
+    private static ToDoubleFunction<ProductSearchIndex> readLocked(ToDoubleFunction<ProductSearchIndex> value) {
+        return index -> {
+            index.lock.readLock().lock();
+            try {
+                return value.applyAsDouble(index);
+            } finally {
+                index.lock.readLock().unlock();
+            }
+        };
+    }
+
+    //一份完整的索引：詞 -> 含有該詞的產品 id
+    private static final class Terms {
+
+        private final int descriptionLength;
+        private final Map<String, PostingList> referenceGrams = new HashMap<>();
+        private final Map<String, Word> descriptionWords = new HashMap<>();
+        private final Map<Integer, Document> documents = new HashMap<>();  //產品目前在索引中的內容，修改 / 刪除時依此移除舊的詞
+
+        private Terms(int descriptionLength) {
+            this.descriptionLength = descriptionLength;
+        }
+
+        //先移除索引中這個產品原本的詞，再加入新的詞 (reference 為 null 代表刪除)
+        //交易提交的順序與套用的順序不同時，最後套用的內容生效，但不會留下沒有移除的舊詞
+        private void replace(int productId, String reference, String description, LocalDateTime createdAt) {
+            Document old = documents.remove(productId);
+            if (old != null) {
+                for (String gram : SearchTokenizer.grams(old.reference(), GRAM_LENGTH)) {
+                    PostingList list = referenceGrams.get(gram);
+                    if (list != null && list.remove(productId) && list.isEmpty()) {
+                        referenceGrams.remove(gram);
+                    }
+                }
+                for (Word word : old.words()) {
+                    if (word.ids.remove(productId) && word.ids.isEmpty()) {
+                        descriptionWords.remove(word.text, word);
+                    }
+                }
+            }
+            if (reference != null) {
+                for (String gram : SearchTokenizer.grams(reference, GRAM_LENGTH)) {
+                    referenceGrams.computeIfAbsent(gram, key -> new PostingList()).add(productId);
+                }
+                Set<String> terms = SearchTokenizer.words(description, descriptionLength);
+                Word[] words = new Word[terms.size()];
+                int i = 0;
+                for (String term : terms) {
+                    Word word = descriptionWords.computeIfAbsent(term, Word::new);
+                    word.ids.add(productId);
+                    words[i++] = word;
+                }
+                documents.put(productId, new Document(SearchTokenizer.normalize(reference), words, toMicros(createdAt)));
+            }
+        }
+
+        //依相關度由 position 繼續取出最多 count 筆，並把 position 移到最後看過的產品
+        //分組：0 編號與描述都符合、1 只有編號符合、2 只有描述符合，各組內 id 由大到小
+        private List<Integer> ranked(Match match, Position position, int count) {
+            PostingList[] reference = lookup(match.grams(), referenceGrams::get);
+            PostingList[] description = lookup(match.words(), this::wordIds);
+            List<Integer> ids = new ArrayList<>(Math.min(count, 64));
+            while (ids.size() < count && position.group <= 2) {
+                PostingList[] lists = switch (position.group) {
+                    case 0 -> reference.length == 0 || description.length == 0 ? NONE : concat(reference, description);
+                    case 1 -> reference;
+                    default -> description;
+                };
+                Intersection candidates = new Intersection(lists, position.below);
+                for (int id = candidates.next(); id >= 0 && ids.size() < count; id = candidates.next()) {
+                    position.below = id;
+                    boolean matches = switch (position.group) {
+                        case 0 -> referenceMatches(match, id);
+                        case 1 -> referenceMatches(match, id) && !containsAll(description, id);
+                        default -> !referenceMatches(match, id);
+                    };
+                    if (matches) {
+                        ids.add(id);
+                    }
+                }
+                if (ids.size() < count) {
+                    position.group++;
+                    position.below = Integer.MAX_VALUE;
+                }
+            }
+            return ids;
+        }
+
+        //依 (建立時間, id) 由新到舊排在 after 之後的前 count 筆 (heap 只保留 count 筆)，以及全部符合的產品數
+        private KeysetMatches after(Match match, Key after, int count) {
+            PostingList[] reference = lookup(match.grams(), referenceGrams::get);
+            PostingList[] description = lookup(match.words(), this::wordIds);
+            PriorityQueue<Key> page = new PriorityQueue<>(Math.max(1, Math.min(count, 1024)));  //最舊的在最前
+            int total = 0;
+            //編號符合的產品，加上只有描述符合的產品 (每個產品只算一次)
+            for (int side = 0; side < 2; side++) {
+                Intersection candidates = new Intersection(side == 0 ? reference : description, Integer.MAX_VALUE);
+                for (int id = candidates.next(); id >= 0; id = candidates.next()) {
+                    if (referenceMatches(match, id) != (side == 0)) {
+                        continue;
+                    }
+                    total++;
+                    long createdAt = documents.get(id).createdAt();
+                    if (after != null && after.compareTo(createdAt, id) <= 0) {
+                        continue;  //不在游標之後
+                    }
+                    if (page.size() < count) {
+                        page.add(new Key(createdAt, id));
+                    } else if (count > 0 && page.peek().compareTo(createdAt, id) < 0) {
+                        page.poll();
+                        page.add(new Key(createdAt, id));
+                    }
+                }
+            }
+            List<Key> keys = new ArrayList<>(page);
+            keys.sort(Comparator.reverseOrder());
+            return new KeysetMatches(keys.stream()
+                    .map(key -> new KeysetCursor(fromMicros(key.createdAt()), key.id()))
+                    .toList(), total);
+        }
+
+        //編號包含查詢字串 (片段都出現但不相鄰時不算，例如 abcd 與 abc-bcd)
+        private boolean referenceMatches(Match match, int id) {
+            return documents.get(id).reference().contains(match.query());
+        }
+
+        private PostingList wordIds(String term) {
+            Word word = descriptionWords.get(term);
+            return word == null ? null : word.ids;
+        }
+
+        //查詢的詞對應的 posting list，短的在前；沒有詞或有一個詞不存在時沒有符合的產品 (回傳空陣列)
+        private static PostingList[] lookup(Set<String> terms, Function<String, PostingList> index) {
+            PostingList[] lists = new PostingList[terms.size()];
+            int i = 0;
+            for (String term : terms) {
+                PostingList list = index.apply(term);
+                if (list == null) {
+                    return NONE;
+                }
+                lists[i++] = list;
+            }
+            Arrays.sort(lists, Comparator.comparingInt(PostingList::size));  //最短的先比對
+            return lists;
+        }
+
+        private static PostingList[] concat(PostingList[] first, PostingList[] second) {
+            PostingList[] lists = Arrays.copyOf(first, first.length + second.length);
+            System.arraycopy(second, 0, lists, first.length, second.length);
+            Arrays.sort(lists, Comparator.comparingInt(PostingList::size));
+            return lists;
+        }
+
+        private static boolean containsAll(PostingList[] lists, int id) {
+            if (lists.length == 0) {
+                return false;
+            }
+            for (PostingList list : lists) {
+                if (!list.contains(id)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void trim() {
+            referenceGrams.values().forEach(PostingList::trim);
+            descriptionWords.values().forEach(word -> word.ids.trim());
+        }
+
+        //估計值：HashMap 節點與 table (約 36 bytes)、詞與產品編號的 String (約 40 bytes + 字元)、posting list 陣列
+        private long memoryBytes() {
+            long bytes = 0;
+            for (Map.Entry<String, PostingList> entry : referenceGrams.entrySet()) {
+                bytes += 36 + 40 + entry.getKey().length() + entry.getValue().memoryBytes();
+            }
+            for (Word word : descriptionWords.values()) {
+                bytes += 36 + 40 + word.text.length() + 16 + word.ids.memoryBytes();  //節點、String、Word
+            }
+            for (Document document : documents.values()) {
+                //節點、Integer key、Document、產品編號 String、詞的參考陣列
+                bytes += 36 + 16 + 32 + 40 + document.reference().length() + 16 + 4L * document.words().length;
+            }
+            return bytes;
+        }
+    }
+
+    //reference：小寫的產品編號 (確認片段符合者確實包含查詢字串，也用來重新切出要移除的片段)
+    //words：描述的詞 (與 descriptionWords 共用同一個 Word，不另外保存字串)；createdAt：建立時間 (微秒)，供游標分頁排序
+    private record Document(String reference, Word[] words, long createdAt) {
+    }
+
+    //查詢字串 (小寫)、編號的片段與描述的詞
+    private record Match(String query, Set<String> grams, Set<String> words) {
+    }
+
+    //依相關度逐批取出時的位置：目前的分組與已看過的最小 id (下一批由比它小的 id 繼續)
+    private static final class Position {
+
+        private int group;
+        private int below = Integer.MAX_VALUE;
+    }
+
+    //游標分頁的排序 key：(建立時間, id)，由小到大
+    private record Key(long createdAt, int id) implements Comparable<Key> {
+
+        @Override
+        public int compareTo(Key other) {
+            return compareTo(other.createdAt, other.id);
+        }
+
+        private int compareTo(long otherCreatedAt, int otherId) {
+            int compared = Long.compare(createdAt, otherCreatedAt);
+            return compared != 0 ? compared : Integer.compare(id, otherId);
+        }
+    }
+
+    //描述的一個詞與含有該詞的產品 id
+    private static final class Word {
+
+        private final String text;
+        private final PostingList ids = new PostingList();
+
+        private Word(String text) {
+            this.text = text;
+        }
+    }
+
+    //多個 posting list 由大到小同時前進 (leapfrog)，只列舉到需要的筆數為止，不建立完整的交集
+    private static final class Intersection {
+
+        private final PostingList[] lists;
+        private final int[] positions;
+        private boolean exhausted;
+
+        //由小於 below 的 id 開始 (沒有 list 時沒有任何結果)
+        private Intersection(PostingList[] lists, int below) {
+            this.lists = lists;
+            this.positions = new int[lists.length];
+            this.exhausted = lists.length == 0;
+            for (int i = 0; i < lists.length; i++) {
+                positions[i] = lists[i].floorIndex(below - 1, lists[i].size() - 1);
+                exhausted |= positions[i] < 0;
+            }
+        }
+
+        //下一個 (較小的) 共同 id，沒有時回傳 -1
+        private int next() {
+            if (exhausted) {
+                return -1;
+            }
+            int candidate = Integer.MAX_VALUE;
+            int agreed = 0;
+            int i = 0;
+            while (true) {
+                int position = lists[i].floorIndex(candidate, positions[i]);
+                if (position < 0) {
+                    exhausted = true;
+                    return -1;
+                }
+                positions[i] = position;
+                int id = lists[i].get(position);
+                if (id != candidate) {
+                    candidate = id;
+                    agreed = 0;
+                }
+                if (++agreed == lists.length) {
+                    for (int j = 0; j < positions.length; j++) {
+                        positions[j]--;
+                    }
+                    return candidate;
+                }
+                i = (i + 1) % lists.length;
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.gtalent.commerce.service.services;
 
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
 import com.gtalent.commerce.service.models.Category;
 import com.gtalent.commerce.service.models.Product;
 
@@ -7,67 +8,220 @@ import com.gtalent.commerce.service.repositories.CategoryRepository;
 import com.gtalent.commerce.service.repositories.ProductRepository;
 import com.gtalent.commerce.service.requests.CreateProductRequest;
 import com.gtalent.commerce.service.responses.CategoryResponse;
+import com.gtalent.commerce.service.responses.CursorPageResponse;
 import com.gtalent.commerce.service.responses.ProductDetailResponse;
 import com.gtalent.commerce.service.responses.ProductListResponse;
+import com.gtalent.commerce.service.responses.ProductSuggestResponse;
+import com.gtalent.commerce.service.utils.KeysetCursor;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.transaction.Transactional;
 import org.springframework.data.domain.Page;
 
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 @Service
 public class ProductService {
 
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
+    private final ProductCatalogCache catalogCache;
+    private final ProductSearchIndex searchIndex;
+    private final ProductSuggestIndex suggestIndex;
+    private final ReferenceDataRegistry referenceData;
 
-    public ProductService(ProductRepository productRepository, CategoryRepository categoryRepository) {
+    public ProductService(ProductRepository productRepository, CategoryRepository categoryRepository,
+                          ProductCatalogCache catalogCache, ProductSearchIndex searchIndex,
+                          ProductSuggestIndex suggestIndex, ReferenceDataRegistry referenceData) {
         this.productRepository = productRepository;
         this.categoryRepository = categoryRepository;
+        this.catalogCache = catalogCache;
+        this.searchIndex = searchIndex;
+        this.suggestIndex = suggestIndex;
+        this.referenceData = referenceData;
     }
 
     //1.查詢所有產品 (列表用)
     public List<ProductListResponse> getAllProducts() {
-        return productRepository.findAll()
-                .stream()
-                .map(product -> {
-                    // 宣告 DTO
-                    ProductListResponse response = new ProductListResponse();
-                    response.setId(product.getId());
-                    response.setImageUrl(product.getImageUrl());
-                    response.setThumbnailUrl(product.getThumbnailUrl());
-                    response.setReference(product.getReference());
-                    response.setPrice(product.getPrice());
-                    response.setStock(product.getStock());
-
-                    //設定分類 DTO
-                    if (product.getCategory() != null) {
-                        CategoryResponse categoryResponse = new CategoryResponse();
-                        categoryResponse.setId(product.getCategory().getId());
-                        categoryResponse.setName(product.getCategory().getName());
-                        response.setCategory(categoryResponse);
-                    }
-
-                    return response;
-                })
-                .toList();
+        //直接查出 DTO：只選列表欄位並 join 分類名稱，不建立受管理的 Product entity
+        return productRepository.findAllListResponses();
     }
 
     //1.1 查詢所有產品 (分頁)
-    public Page<Product> getAllProductPages(String query, Integer categoryId, Integer stockFrom, Integer stockTo,
-                                            Pageable pageable) {
+    public Page<ProductListResponse> getAllProductPages(String query, Integer categoryId, Integer stockFrom,
+                                                        Integer stockTo, Pageable pageable) {
+        //有關鍵字時先查記憶體搜尋索引 (依相關度排序)，索引無法處理時才用 LIKE
+        if (query != null && !query.isEmpty()) {
+            //分類與庫存條件在取前 max-results 筆之前套用：只對候選 id 以主鍵過濾
+            List<Integer> ranked = categoryId == null && stockFrom == null && stockTo == null
+                    ? searchIndex.search(query)
+                    : searchIndex.search(query, ids -> productRepository.findIdsMatching(ids, categoryId, stockFrom, stockTo));
+            if (ranked != null) {
+                return findRankedPage(ranked, pageable);
+            }
+        }
         Specification<Product> spec = productSpecification(query, categoryId, stockFrom, stockTo);
-        return productRepository.findAll(spec, pageable);
+        //只依分類瀏覽 (沒有關鍵字與庫存條件) 的列表頁走快取，其他搜尋條件組合太多，直接查資料庫
+        if ((query == null || query.isEmpty()) && stockFrom == null && stockTo == null) {
+            return catalogCache.getPage(categoryId, pageable, () -> findProductPage(spec, pageable));
+        }
+        return findProductPage(spec, pageable);
+    }
+
+    private Page<ProductListResponse> findProductPage(Specification<Product> spec, Pageable pageable) {
+        //與 getAllProducts 相同直接查出 DTO (join 分類名稱)，不建立 Product entity、不讀取 description
+        return productRepository.findListResponses(spec, pageable);
+    }
+
+    //搜尋結果分頁：依相關度順序取出這一頁的產品
+    private Page<ProductListResponse> findRankedPage(List<Integer> matched, Pageable pageable) {
+        if (matched.isEmpty()) {
+            return Page.empty(pageable);
+        }
+        if (pageable.getSort().isSorted()) {
+            //指定排序時改依排序欄位分頁
+            List<Integer> ids = matched;
+            return findProductPage((root, query, criteriaBuilder) -> root.get("id").in(ids), pageable);
+        }
+        int from = (int) Math.min(pageable.getOffset(), matched.size());
+        List<Integer> pageIds = matched.subList(from, Math.min(from + pageable.getPageSize(), matched.size()));
+        Map<Integer, Product> products = findWithCategory(pageIds);
+        List<ProductListResponse> content = pageIds.stream()
+                .filter(products::containsKey)  //索引更新前已被刪除的產品
+                .map(id -> toListResponse(products.get(id)))
+                .toList();
+        return new PageImpl<>(content, pageable, matched.size());
+    }
+
+    private Map<Integer, Product> findWithCategory(List<Integer> ids) {
+        Map<Integer, Product> products = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (Product product : productRepository.findWithCategoryByIdIn(ids)) {
+                products.put(product.getId(), product);
+            }
+        }
+        return products;
+    }
+
+    //package-private：供 benchmark 直接量測
+    ProductListResponse toListResponse(Product product) {
+        CategoryResponse category = new CategoryResponse();
+        category.setId(product.getCategory().getId());
+        category.setName(product.getCategory().getName());
+
+        return ProductListResponse.builder()
+                .id(product.getId())
+                .reference(product.getReference())
+                .imageUrl(product.getImageUrl())
+                .thumbnailUrl(product.getThumbnailUrl())
+                .price(product.getPrice())
+                .stock(product.getStock())
+                .category(category)
+                .build();
+    }
+
+    //1.2 查詢所有產品 (Keyset 分頁，依建立時間由新到舊)
+    public CursorPageResponse<ProductListResponse> getProductsAfter(String query, Integer categoryId, Integer stockFrom,
+                                                        Integer stockTo, String cursor, int size,
+                                                        boolean includeTotal) {
+        KeysetCursor.checkSize(size);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        //有關鍵字時由搜尋索引依 (建立時間, id) 取出這一頁的 id，索引無法處理時才用 LIKE
+        if (query != null && !query.isEmpty()) {
+            CursorPageResponse<ProductListResponse> page = findIndexedProductsAfter(query, categoryId, stockFrom,
+                    stockTo, after, size, includeTotal);
+            if (page != null) {
+                return page;
+            }
+        }
+        Specification<Product> filter = productSpecification(query, categoryId, stockFrom, stockTo);
+        List<Product> rows = findProductsAfter(filter, after, size);
+        Long total = includeTotal ? productRepository.count(filter) : null;  //不需要總筆數時省略 COUNT(*)
+        return KeysetCursor.toPage(rows, size, p -> new KeysetCursor(p.getCreatedAt(), p.getId()), total)
+                .map(this::toListResponse);
+    }
+
+    //1.沒有分類 / 庫存條件：索引直接給出游標之後的 size + 1 個 key 與總筆數，只查一次這一頁的產品
+    //2.有條件：依 key 順序每批 ID_BATCH_SIZE 個 id 以主鍵過濾，湊滿 size + 1 筆即停止；
+    //  includeTotal 時總筆數仍需把全部符合的 id 分批過濾 (每批一次查詢)
+    private CursorPageResponse<ProductListResponse> findIndexedProductsAfter(String query, Integer categoryId,
+                                                                          Integer stockFrom, Integer stockTo,
+                                                                          KeysetCursor after, int size,
+                                                                          boolean includeTotal) {
+        boolean filtered = categoryId != null || stockFrom != null || stockTo != null;
+        Function<List<Integer>, Collection<Integer>> filter =
+                ids -> productRepository.findIdsMatching(ids, categoryId, stockFrom, stockTo);
+        List<KeysetCursor> keys = new ArrayList<>();
+        Long total = null;
+        KeysetCursor from = after;
+        while (keys.size() <= size) {
+            ProductSearchIndex.KeysetMatches batch = searchIndex.searchAfter(query, from,
+                    filtered ? ProductSearchIndex.ID_BATCH_SIZE : size + 1);
+            if (batch == null) {
+                return null;
+            }
+            if (!filtered) {
+                keys.addAll(batch.keys());
+                total = includeTotal ? (long) batch.total() : null;
+                break;
+            }
+            if (batch.keys().isEmpty()) {
+                break;
+            }
+            Set<Integer> kept = new HashSet<>(filter.apply(batch.keys().stream().map(KeysetCursor::id).toList()));
+            for (KeysetCursor key : batch.keys()) {
+                if (kept.contains(key.id()) && keys.size() <= size) {
+                    keys.add(key);
+                }
+            }
+            if (batch.keys().size() < ProductSearchIndex.ID_BATCH_SIZE) {
+                break;  //已經是最後一批
+            }
+            from = batch.keys().get(batch.keys().size() - 1);
+        }
+        if (filtered && includeTotal) {
+            total = searchIndex.count(query, filter);
+        }
+        CursorPageResponse<KeysetCursor> page = KeysetCursor.toPage(keys, size, key -> key, total);
+        Map<Integer, Product> products = findWithCategory(page.getContent().stream().map(KeysetCursor::id).toList());
+        List<ProductListResponse> content = page.getContent().stream()
+                .filter(key -> products.containsKey(key.id()))  //索引更新前已被刪除的產品
+                .map(key -> toListResponse(products.get(key.id())))
+                .toList();
+        return new CursorPageResponse<>(content, page.getNextCursor(), page.isHasNext(), page.getTotalElements());
+    }
+
+    private List<Product> findProductsAfter(Specification<Product> filter, KeysetCursor after, int size) {
+        return productRepository.findBy(
+                filter.and(KeysetCursor.after(after, "createdAt")),
+                q -> q.sortBy(KeysetCursor.sort("createdAt"))
+                        .project("category")  //列表需要分類名稱 -> 一起載入
+                        .limit(size + 1)
+                        .all());
     }
 
-    private Specification<Product> productSpecification(String queryName, Integer categoryId, Integer stockFrom,
+    //1.3 產品編號自動完成 (依銷售量排序，不查資料庫)
+    public List<ProductSuggestResponse> suggestReferences(String prefix, int limit) {
+        return suggestIndex.suggest(prefix, limit);
+    }
+
+    //package-private：供 benchmark 直接量測
+    Specification<Product> productSpecification(String queryName, Integer categoryId, Integer stockFrom,
                                                         Integer stockTo) {
+        //關鍵字以 LIKE 比對產品編號 (搜尋索引可用時呼叫端傳入 null，改以索引的 id 篩選)
         return ((root, query, criteriaBuilder) -> {
             List<Predicate> predicates = new ArrayList<>();
 
@@ -95,41 +249,14 @@ public class ProductService {
     }
 
     //2.查詢單一產品 (詳細產品資訊)
-    public ProductDetailResponse getProductById(int id) {  //Optional<> :回傳值可能不存在
-        Optional<Product> optionalProduct = productRepository.findById(id);
-        //若不存在先回傳Product not found
-        if (optionalProduct.isEmpty()) {
-            throw new RuntimeException("Product not found");
-        }
-        Product product = optionalProduct.get();  // 取出 Product
-
-        //將 Product 轉成 ProductDetailResponse
-        ProductDetailResponse response = new ProductDetailResponse();
-        response.setId(product.getId());
-        response.setImageUrl(product.getImageUrl());
-        response.setThumbnailUrl(product.getThumbnailUrl());
-        response.setReference(product.getReference());
-        response.setPrice(product.getPrice());
-        response.setStock(product.getStock());
-        response.setDescription(product.getDescription());
-        response.setWidth(product.getWidth());
-        response.setHeight(product.getHeight());
-
-        //設定分類資訊
-        if (product.getCategory() != null) {
-            //建立一個新的 CategoryResponse 物件
-            CategoryResponse categoryResponse = new CategoryResponse();
-            //設定 id 和 name
-            categoryResponse.setId(product.getCategory().getId());
-            categoryResponse.setName(product.getCategory().getName());
-            //把這個分類 DTO 設定到 ProductDetailResponse 的 category 欄位
-            response.setCategory(categoryResponse);
-        }
-
-        return response;
+    public ProductDetailResponse getProductById(int id) {
+        //先查快取；未命中時直接查出 DTO (含分類名稱)，不需要再把 entity 欄位逐一複製
+        return catalogCache.getDetail(id, () -> productRepository.findDetailResponseById(id)
+                .orElseThrow(() -> new RuntimeException("Product not found")));
     }
 
     //3.新增產品
+    @Transactional  //快取在交易提交後才失效
     public ProductDetailResponse createProduct(CreateProductRequest request) {
         Product product = new Product();
         product.setReference(request.getReference());
@@ -143,12 +270,14 @@ public class ProductService {
         product.setThumbnailUrl(request.getThumbnailUrl());
 
         if(request.getCategory() != null) {
-            Category category = categoryRepository.findById(request.getCategory())
-                    .orElseThrow(() -> new RuntimeException("無此分類"));
-            product.setCategory(category);
+            product.setCategory(categoryReference(request.getCategory()));
         }
 
         Product createdProduct = productRepository.save(product);
+        catalogCache.evictProduct(createdProduct.getId(), categoryIds(createdProduct));
+        searchIndex.add(createdProduct.getId(), createdProduct.getReference(), createdProduct.getDescription(),
+                createdProduct.getCreatedAt());
+        suggestIndex.add(createdProduct.getId(), createdProduct.getReference(), createdProduct.getSales());
 
         ProductDetailResponse response = new ProductDetailResponse();
         response.setId(createdProduct.getId());
@@ -163,19 +292,18 @@ public class ProductService {
         response.setDepth(createdProduct.getDepth());
 
         if (createdProduct.getCategory() != null) {
-            CategoryResponse categoryResponse = new CategoryResponse();
-            categoryResponse.setId(createdProduct.getCategory().getId());
-            categoryResponse.setName(createdProduct.getCategory().getName());
-            response.setCategory(categoryResponse);
+            response.setCategory(categoryResponse(createdProduct.getCategory()));
         }
         return response;
     }
 
     //4.更新產品
+    @Transactional  //快取在交易提交後才失效
     public ProductDetailResponse updateProduct(int id, CreateProductRequest request) {
         //1.根據 ID 取得現有產品(若不存在則拋出例外)
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("無此產品"));
+        Set<Integer> affectedCategoryIds = categoryIds(product);  //修改前的分類也需要失效
         //2.更新產品欄位
         product.setReference(request.getReference());
         product.setWidth(BigDecimal.valueOf(request.getWidth()));
@@ -188,12 +316,15 @@ public class ProductService {
 
         //3.更新分類
         if (request.getCategory() != null) {
-            Category category = categoryRepository.findById(request.getCategory())
-                    .orElseThrow(() -> new RuntimeException("無此分類"));
-            product.setCategory(category);
+            product.setCategory(categoryReference(request.getCategory()));
         }
         //4.儲存更新後的產品
         Product updatedProduct = productRepository.save(product);
+        affectedCategoryIds.addAll(categoryIds(updatedProduct));
+        catalogCache.evictProduct(updatedProduct.getId(), affectedCategoryIds);
+        searchIndex.update(updatedProduct.getId(), updatedProduct.getReference(), updatedProduct.getDescription(),
+                updatedProduct.getCreatedAt());
+        suggestIndex.update(updatedProduct.getId(), updatedProduct.getReference(), updatedProduct.getSales());
 
         //5.將更新後的產品轉成 DTO 回傳，而不是直接回傳 Entity
         ProductDetailResponse response = new ProductDetailResponse();
@@ -209,15 +340,13 @@ public class ProductService {
 
         //6.設定分類 DTO
         if (updatedProduct.getCategory() != null) {
-            CategoryResponse categoryResponse = new CategoryResponse();
-            categoryResponse.setId(updatedProduct.getCategory().getId());
-            categoryResponse.setName(updatedProduct.getCategory().getName());
-            response.setCategory(categoryResponse);
+            response.setCategory(categoryResponse(updatedProduct.getCategory()));
         }
         return response;
     }
 
     //5.刪除產品
+    @Transactional  //快取在交易提交後才失效
     public void deleteProduct(int id) {
         Optional<Product> optionalProduct = productRepository.findById(id);
         if (optionalProduct.isEmpty()) {
@@ -225,6 +354,31 @@ public class ProductService {
         }
         Product product = optionalProduct.get();
         productRepository.delete(product);
+        catalogCache.evictProduct(id, categoryIds(product));
+        searchIndex.remove(id);
+        suggestIndex.remove(id);
+    }
+
+    //分類由記憶體對照表確認 (不查資料庫)；產品只需外鍵 -> 以參考代替查詢
+    private Category categoryReference(int categoryId) {
+        if (referenceData.categoryName(categoryId).isEmpty()) {
+            throw new RuntimeException("無此分類");
+        }
+        return categoryRepository.getReferenceById(categoryId);
+    }
+
+    //分類名稱由對照表取得，不需為了名稱載入分類 (已刪除的分類不在對照表中 -> 才讀取 entity)
+    private CategoryResponse categoryResponse(Category category) {
+        return new CategoryResponse(category.getId(),
+                referenceData.categoryName(category.getId()).orElseGet(category::getName));
+    }
+
+    private static Set<Integer> categoryIds(Product product) {
+        Set<Integer> ids = new HashSet<>();
+        if (product.getCategory() != null) {
+            ids.add(product.getCategory().getId());
+        }
+        return ids;
     }
 
 
@@ -0,0 +1,339 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.dto.ProductSuggestRow;
+import com.gtalent.commerce.service.repositories.ProductRepository;
+import com.gtalent.commerce.service.responses.ProductSuggestResponse;
+import com.gtalent.commerce.service.utils.AfterCommit;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+//產品編號自動完成：依前綴 (不分大小寫) 找出銷售量最高的前 k 筆
+//1.快照：依產品編號排序的陣列，前綴對應到一段連續區間；另以銷售量的 segment tree 取區間最大值，
+//  前 k 筆只需約 k 次區間查詢，不需要掃過區間內所有產品
+//2.排程在背景執行緒讀取資料建立新快照，完成後整個替換，查詢不需要加鎖
+//3.兩次重建之間的新增 / 修改 / 刪除記在增量表：新版本放在 additions，快照中的舊版本依 id 標記為失效
+//4.銷售量 (下單時累加) 在下次重建後才反映到排序
+@Service
+public class ProductSuggestIndex implements MeterBinder {
+
+    public static final int MAX_LIMIT = 50;
+
+    //排序：產品編號 (不分大小寫)，相同時依 id
+    private static final Comparator<Suggestion> ORDER = Comparator.comparing(Suggestion::reference,
+            String.CASE_INSENSITIVE_ORDER).thenComparingInt(Suggestion::id);
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile Snapshot snapshot = new Snapshot(List.of());
+    private volatile boolean ready;
+    private volatile long lastBuildNanos;
+    //增量表 (記錄變動時的序號)：重建時移除序號不大於重建開始時序號的項目，這些變動已包含在新快照中
+    private final ConcurrentSkipListSet<Suggestion> additions = new ConcurrentSkipListSet<>(ORDER);
+    private final ConcurrentHashMap<Integer, Suggestion> additionsById = new ConcurrentHashMap<>();  //additions 依 id
+    private final ConcurrentHashMap<Integer, Long> staleIds = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public ProductSuggestIndex(ProductRepository productRepository, PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    //1.查詢：前綴相符且銷售量最高的 limit 筆 (銷售量相同時依產品編號)
+    public List<ProductSuggestResponse> suggest(String prefix, int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("建議筆數需介於 1 ~ " + MAX_LIMIT);
+        }
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        if (!ready) {
+            //第一次建立完成前改查資料庫
+            return productRepository.findByReferenceStartingWithIgnoreCaseOrderBySalesDesc(prefix,
+                            PageRequest.of(0, limit)).stream()
+                    .map(row -> new ProductSuggestResponse(row.getId(), row.getReference(), row.getSales()))
+                    .toList();
+        }
+        Snapshot current = snapshot;
+        List<ProductSuggestResponse> results = new ArrayList<>(limit);
+        current.top(prefix, limit, staleIds, results);
+        if (!additions.isEmpty()) {
+            mergeAdditions(prefix, limit, results);
+        }
+        return results;
+    }
+
+    //增量表通常很小：把前綴相符的項目插入快照結果中的對應位置
+    private void mergeAdditions(String prefix, int limit, List<ProductSuggestResponse> results) {
+        for (Suggestion added : additions.tailSet(new Suggestion(Integer.MIN_VALUE, prefix, 0, 0))) {
+            if (!startsWith(added.reference(), prefix)) {
+                break;
+            }
+            int position = 0;
+            while (position < results.size() && !ranksBefore(added, results.get(position))) {
+                position++;
+            }
+            if (position < limit) {
+                results.add(position, new ProductSuggestResponse(added.id(), added.reference(), added.sales()));
+                if (results.size() > limit) {
+                    results.remove(limit);
+                }
+            }
+        }
+    }
+
+    private static boolean ranksBefore(Suggestion added, ProductSuggestResponse existing) {
+        if (added.sales() != existing.getSales()) {
+            return added.sales() > existing.getSales();
+        }
+        return String.CASE_INSENSITIVE_ORDER.compare(added.reference(), existing.getReference()) < 0;
+    }
+
+    //2.產品新增 / 修改 / 刪除 (交易提交後才套用；增量表中原本的版本依 id 找到後移除，不依賴呼叫端傳入修改前的編號)
+    public void add(int productId, String reference, int sales) {
+        AfterCommit.run(() -> {
+            long changed = sequence.incrementAndGet();
+            staleIds.put(productId, changed);  //快照若已含這筆 (重建與新增同時發生) 也以增量表為準
+            replaceAddition(productId, new Suggestion(productId, reference, sales, changed));
+        });
+    }
+
+    public void update(int productId, String reference, int sales) {
+        AfterCommit.run(() -> {
+            long changed = sequence.incrementAndGet();
+            staleIds.put(productId, changed);
+            replaceAddition(productId, new Suggestion(productId, reference, sales, changed));
+        });
+    }
+
+    public void remove(int productId) {
+        AfterCommit.run(() -> {
+            staleIds.put(productId, sequence.incrementAndGet());
+            replaceAddition(productId, null);
+        });
+    }
+
+    //每個產品在增量表中只保留一個版本 (replacement 為 null 代表刪除)；同一產品的變動依序套用
+    private void replaceAddition(int productId, Suggestion replacement) {
+        additionsById.compute(productId, (id, previous) -> {
+            if (previous != null) {
+                additions.remove(previous);
+            }
+            if (replacement != null) {
+                additions.add(replacement);
+            }
+            return replacement;
+        });
+    }
+
+    //3.重新建立快照 (排程執行緒，啟動後立即執行一次)，回傳快照的產品數
+    @Scheduled(fixedDelayString = "${product.suggest.rebuild-interval-ms:600000}")
+    public synchronized int rebuild() {
+        long start = System.nanoTime();
+        long startSequence = sequence.get();
+        List<Suggestion> rows = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(tx -> {
+            try (Stream<ProductSuggestRow> stream = productRepository.streamSuggestRows()) {
+                stream.forEach(row -> rows.add(new Suggestion(row.getId(), row.getReference(), row.getSales(), 0)));
+            }
+        });
+        rows.sort(ORDER);
+        Snapshot built = new Snapshot(rows);
+        //替換快照後才移除已包含在快照中的增量 (先移除 additions：短暫少一筆，不會重複出現)
+        snapshot = built;
+        ready = true;
+        for (Suggestion added : additions) {
+            if (added.sequence() <= startSequence) {
+                additionsById.remove(added.id(), added);  //期間又被修改時 id 已對應到新版本，不移除
+                additions.remove(added);
+            }
+        }
+        staleIds.entrySet().removeIf(entry -> entry.getValue() <= startSequence);
+        lastBuildNanos = System.nanoTime() - start;
+        return built.references.length;
+    }
+
+    private static boolean startsWith(String reference, String prefix) {
+        return reference.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("product.suggest.size", this, index -> index.snapshot.references.length)
+                .register(registry);
+        Gauge.builder("product.suggest.pending", this, index -> index.additions.size() + index.staleIds.size())
+                .description("上次重建後的增量筆數")
+                .register(registry);
+        Gauge.builder("product.suggest.memory", this, index -> index.snapshot.memoryBytes)
+                .description("快照估計的記憶體用量")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+        TimeGauge.builder("product.suggest.rebuild.duration", this, TimeUnit.NANOSECONDS,
+                        index -> index.lastBuildNanos)
+                .register(registry);
+    }
+
+    private record Suggestion(int id, String reference, int sales, long sequence) {
+    }
+
+    //不可變的快照
+    private static final class Snapshot {
+
+        private final String[] references;
+        private final int[] ids;
+        private final int[] sales;
+        private final int[] tree;  //segment tree：tree[n + i] = i，上層為兩個子節點中排名較前的位置
+        private final long memoryBytes;
+
+        private Snapshot(List<Suggestion> sorted) {
+            int n = sorted.size();
+            references = new String[n];
+            ids = new int[n];
+            sales = new int[n];
+            for (int i = 0; i < n; i++) {
+                Suggestion suggestion = sorted.get(i);
+                references[i] = suggestion.reference();
+                ids[i] = suggestion.id();
+                sales[i] = suggestion.sales();
+            }
+            tree = new int[2 * n];
+            for (int i = 0; i < n; i++) {
+                tree[n + i] = i;
+            }
+            for (int i = n - 1; i > 0; i--) {
+                tree[i] = better(tree[2 * i], tree[2 * i + 1]);
+            }
+            //估計值：陣列 + segment tree + 產品編號 String (約 40 bytes + 字元)
+            long bytes = 16L * 4 + (8L + 4 + 4 + 8) * n;
+            for (String reference : references) {
+                bytes += 40 + reference.length();
+            }
+            memoryBytes = bytes;
+        }
+
+        //銷售量較高者排前面；相同時產品編號較前者 (陣列位置較小) 排前面
+        private int better(int a, int b) {
+            if (a < 0) {
+                return b;
+            }
+            return sales[b] > sales[a] || sales[b] == sales[a] && b < a ? b : a;
+        }
+
+        //[from, to) 中排名最前的位置
+        private int best(int from, int to) {
+            int n = references.length;
+            int result = -1;
+            for (int low = from + n, high = to + n; low < high; low >>= 1, high >>= 1) {
+                if ((low & 1) == 1) {
+                    result = better(result, tree[low++]);
+                }
+                if ((high & 1) == 1) {
+                    result = better(result, tree[--high]);
+                }
+            }
+            return result;
+        }
+
+        //前綴相符的區間中依序取出排名最前的項目 (每取出一筆就把區間切成左右兩段)，略過已失效的 id
+        private void top(String prefix, int limit, ConcurrentHashMap<Integer, Long> staleIds,
+                         List<ProductSuggestResponse> results) {
+            int from = lowerBound(prefix);
+            int to = prefixEnd(prefix, from);
+            if (from >= to) {
+                return;
+            }
+            int capacity = 2 * limit + 1;
+            int[] lows = new int[capacity];
+            int[] highs = new int[capacity];
+            int[] bests = new int[capacity];
+            lows[0] = from;
+            highs[0] = to;
+            bests[0] = best(from, to);
+            int ranges = 1;
+            boolean checkStale = !staleIds.isEmpty();
+            while (ranges > 0 && results.size() < limit) {
+                int chosen = 0;
+                for (int i = 1; i < ranges; i++) {
+                    if (better(bests[chosen], bests[i]) == bests[i]) {
+                        chosen = i;
+                    }
+                }
+                int position = bests[chosen];
+                int low = lows[chosen];
+                int high = highs[chosen];
+                ranges--;
+                lows[chosen] = lows[ranges];
+                highs[chosen] = highs[ranges];
+                bests[chosen] = bests[ranges];
+                if (!checkStale || !staleIds.containsKey(ids[position])) {
+                    results.add(new ProductSuggestResponse(ids[position], references[position], sales[position]));
+                }
+                if (ranges + 2 > lows.length) {
+                    //略過失效項目時可能超過預估的區間數
+                    lows = Arrays.copyOf(lows, lows.length * 2);
+                    highs = Arrays.copyOf(highs, highs.length * 2);
+                    bests = Arrays.copyOf(bests, bests.length * 2);
+                }
+                if (low < position) {
+                    lows[ranges] = low;
+                    highs[ranges] = position;
+                    bests[ranges++] = best(low, position);
+                }
+                if (position + 1 < high) {
+                    lows[ranges] = position + 1;
+                    highs[ranges] = high;
+                    bests[ranges++] = best(position + 1, high);
+                }
+            }
+        }
+
+        //第一個 >= prefix 的位置
+        private int lowerBound(String prefix) {
+            int low = 0;
+            int high = references.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (String.CASE_INSENSITIVE_ORDER.compare(references[middle], prefix) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        //from 之後第一個不是以 prefix 開頭的位置
+        private int prefixEnd(String prefix, int from) {
+            int low = from;
+            int high = references.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (startsWith(references[middle], prefix)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
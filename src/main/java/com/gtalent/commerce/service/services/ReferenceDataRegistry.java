@@ -0,0 +1,149 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Segment;
+import com.gtalent.commerce.service.repositories.CategoryRepository;
+import com.gtalent.commerce.service.repositories.SegmentRepository;
+import com.gtalent.commerce.service.utils.AfterCommit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+//參考資料的記憶體對照表 (Segment、未刪除的分類)，查詢只讀記憶體，不查資料庫
+//1.內容不可變：Segment 為 Map (id -> 名稱)，分類為依 id 排序的 int[] / String[] (二分搜尋)
+//2.異動時複製一份新的再整個換掉 (copy-on-write，volatile)，讀取不需加鎖，也不會看到一半的內容
+//3.Segment 只由 SegmentConfig 依 SegmentType 建立 -> 建立完成後讀入一次；
+//  分類由 CategoryService 新增 / 軟刪除時於交易提交後更新；查無此分類時重新讀取 (其他台新增或直接寫入資料庫的分類)，
+//  但每個 category.reload-interval-ms 最多一次，不存在或已刪除的 id 不會每次都查資料庫
+@Service
+public class ReferenceDataRegistry {
+
+    private final SegmentRepository segmentRepository;
+    private final CategoryRepository categoryRepository;
+    private volatile Map<Integer, String> segments;
+    private volatile Categories categories;
+    private final long reloadIntervalNanos;
+    private volatile long lastReloadNanos;
+
+    public ReferenceDataRegistry(SegmentRepository segmentRepository, CategoryRepository categoryRepository,
+                                 @Value("${category.reload-interval-ms:10000}") long reloadIntervalMs) {
+        this.segmentRepository = segmentRepository;
+        this.categoryRepository = categoryRepository;
+        this.reloadIntervalNanos = TimeUnit.MILLISECONDS.toNanos(reloadIntervalMs);
+    }
+
+    //1.Segment 是否存在
+    public boolean segmentExists(int segmentId) {
+        return segments().containsKey(segmentId);
+    }
+
+    //1.1 所有 Segment (id -> 名稱，不可修改)；第一次使用時讀入
+    public Map<Integer, String> segments() {
+        Map<Integer, String> current = segments;
+        return current != null ? current : reloadSegments();
+    }
+
+    //1.2 重新讀取 Segment (SegmentConfig 建立完成後呼叫)
+    public synchronized Map<Integer, String> reloadSegments() {
+        Map<Integer, String> loaded = new HashMap<>();
+        for (Segment segment : segmentRepository.findAll()) {
+            loaded.put(segment.getId(), segment.getName());
+        }
+        segments = Map.copyOf(loaded);
+        return segments;
+    }
+
+    //2.未刪除分類的名稱 (不存在或已刪除時為 empty)
+    public Optional<String> categoryName(int categoryId) {
+        Categories current = categories;
+        if (current == null) {
+            current = reloadCategories(0);
+        }
+        String name = current.name(categoryId);
+        if (name == null && System.nanoTime() - lastReloadNanos >= reloadIntervalNanos) {
+            name = reloadCategories(reloadIntervalNanos).name(categoryId);
+        }
+        return Optional.ofNullable(name);
+    }
+
+    //2.1 分類新增 / 改名、軟刪除 (交易提交後才套用)
+    public void putCategory(int categoryId, String name) {
+        AfterCommit.run(() -> updateCategories(current -> current.with(categoryId, name)));
+    }
+
+    public void removeCategory(int categoryId) {
+        AfterCommit.run(() -> updateCategories(current -> current.without(categoryId)));
+    }
+
+    //距離上次讀取未滿 minIntervalNanos 時直接回傳目前的內容 (同時查無的請求只讀一次)
+    private synchronized Categories reloadCategories(long minIntervalNanos) {
+        if (categories != null && System.nanoTime() - lastReloadNanos < minIntervalNanos) {
+            return categories;
+        }
+        List<Category> loaded = categoryRepository.findByDeletedAtIsNullOrderByIdAsc();
+        int[] ids = new int[loaded.size()];
+        String[] names = new String[loaded.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = loaded.get(i).getId();
+            names[i] = loaded.get(i).getName();
+        }
+        categories = new Categories(ids, names);
+        lastReloadNanos = System.nanoTime();
+        return categories;
+    }
+
+    private synchronized void updateCategories(UnaryOperator<Categories> change) {
+        if (categories != null) {  //尚未讀入時不需更新，第一次使用時會讀到最新內容
+            categories = change.apply(categories);
+        }
+    }
+
+    //依 id 排序的分類 id 與名稱 (不可修改，異動時回傳新的副本)
+    private record Categories(int[] ids, String[] names) {
+
+        String name(int id) {
+            int i = Arrays.binarySearch(ids, id);
+            return i >= 0 ? names[i] : null;
+        }
+
+        Categories with(int id, String name) {
+            int i = Arrays.binarySearch(ids, id);
+            if (i >= 0) {
+                String[] renamed = names.clone();
+                renamed[i] = name;
+                return new Categories(ids, renamed);
+            }
+            int at = -i - 1;
+            int[] newIds = new int[ids.length + 1];
+            String[] newNames = new String[names.length + 1];
+            System.arraycopy(ids, 0, newIds, 0, at);
+            System.arraycopy(names, 0, newNames, 0, at);
+            newIds[at] = id;
+            newNames[at] = name;
+            System.arraycopy(ids, at, newIds, at + 1, ids.length - at);
+            System.arraycopy(names, at, newNames, at + 1, names.length - at);
+            return new Categories(newIds, newNames);
+        }
+
+        Categories without(int id) {
+            int i = Arrays.binarySearch(ids, id);
+            if (i < 0) {
+                return this;
+            }
+            int[] newIds = new int[ids.length - 1];
+            String[] newNames = new String[names.length - 1];
+            System.arraycopy(ids, 0, newIds, 0, i);
+            System.arraycopy(names, 0, newNames, 0, i);
+            System.arraycopy(ids, i + 1, newIds, i, ids.length - i - 1);
+            System.arraycopy(names, i + 1, newNames, i, names.length - i - 1);
+            return new Categories(newIds, newNames);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.enums.ReviewStatus;
+import com.gtalent.commerce.service.models.Review;
+import com.gtalent.commerce.service.utils.AfterCommit;
+import com.gtalent.commerce.service.utils.PostingList;
+import com.gtalent.commerce.service.utils.SearchTokenizer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToDoubleFunction;
+
+//評論內容的記憶體倒排索引 (每個產品一份)，取代 comment LIKE '%q%' 每次掃描該產品的所有評論
+//1.斷詞與產品搜尋相同 (SearchTokenizer)：轉小寫，英文 / 數字為詞，中文兩字一組；查詢的每個詞都出現才算符合
+//2.每個詞的評論 id 存在 PostingList (int[])；評分與狀態也各有一個 PostingList，先在記憶體套用再以 id IN 分頁查詢
+//3.啟動後依 id 分批讀取建立；評論新增 / 修改 / 刪除於交易提交後增量更新；可設定排程整個重建
+//4.索引尚未建立完成或查詢含單一漢字 (只會出現在兩字一組的詞中間) 時回傳 null，由呼叫端改用 LIKE 查詢
+@Service
+public class ReviewSearchIndex implements MeterBinder {
+
+    static final int COMMENT_LENGTH = 1000;  //與 Review.comment 的長度上限相同
+    private static final int SCAN_BATCH_SIZE = 10_000;
+    private static final int[] NONE = new int[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    //查詢共用讀鎖；增量更新與切換索引取得寫鎖
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<Integer, ProductReviews> live = new HashMap<>();
+    private Map<Integer, ProductReviews> building;  //重建中的索引 (null 代表沒有在重建)
+    private final Set<Integer> changedWhileBuilding = new HashSet<>();  //重建期間已增量更新的評論，掃描時略過
+    private volatile boolean ready;
+
+    public ReviewSearchIndex(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    //1.查詢某產品符合關鍵字、狀態與評分範圍的評論 id (遞增排序)；無法使用索引時回傳 null
+    public int[] search(int productId, String query, ReviewStatus status, Integer ratingMin, Integer ratingMax) {
+        Set<String> words = SearchTokenizer.words(query, COMMENT_LENGTH);
+        if (!ready || words.isEmpty()
+                || words.stream().anyMatch(word -> word.length() == 1 && isHan(word.charAt(0)))) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            ProductReviews reviews = live.get(productId);
+            return reviews == null ? NONE : reviews.search(words, status,
+                    ratingMin == null ? 1 : ratingMin, ratingMax == null ? 5 : ratingMax);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //2.評論新增 / 修改 / 刪除 (交易提交後才套用；修改與刪除需傳入修改前的內容，才能移除舊的詞)
+    public void add(Entry review) {
+        AfterCommit.run(() -> apply(review.reviewId(), null, review));
+    }
+
+    public void update(Entry before, Entry after) {
+        AfterCommit.run(() -> apply(after.reviewId(), before, after));
+    }
+
+    public void remove(Entry review) {
+        AfterCommit.run(() -> apply(review.reviewId(), review, null));
+    }
+
+    private void apply(int reviewId, Entry before, Entry after) {
+        lock.writeLock().lock();
+        try {
+            replace(live, reviewId, before, after);
+            if (building != null) {
+                //重建中的索引也要更新，並讓掃描略過這筆 (掃描讀到的可能是修改前的資料)
+                replace(building, reviewId, before, after);
+                changedWhileBuilding.add(reviewId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //3.重新建立整個索引 (查詢在重建期間繼續使用舊索引)，回傳索引的評論數
+    @Scheduled(cron = "${review.search.rebuild.cron:-}")  //預設不排程
+    public int rebuild() {
+        Map<Integer, ProductReviews> fresh = new HashMap<>();
+        lock.writeLock().lock();
+        try {
+            if (building != null) {
+                throw new IllegalStateException("評論索引重建中");
+            }
+            building = fresh;
+            changedWhileBuilding.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            //1.依 id 分批讀取未刪除的評論 (keyset，每批 SCAN_BATCH_SIZE 筆)，每批加鎖寫入一次
+            transactionTemplate.executeWithoutResult(tx -> {
+                int lastId = 0;
+                while (true) {
+                    List<Entry> batch = jdbcTemplate.query("SELECT id, product_id, comment, rating, status FROM reviews "
+                                    + "WHERE deleted_at IS NULL AND id > ? ORDER BY id LIMIT ?",
+                            (rs, row) -> new Entry(rs.getInt(1), rs.getInt(2), rs.getString(3), rs.getInt(4),
+                                    ReviewStatus.valueOf(rs.getString(5))),
+                            lastId, SCAN_BATCH_SIZE);
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                    addScanned(fresh, batch);
+                    lastId = batch.get(batch.size() - 1).reviewId();
+                }
+            });
+            //2.切換成新索引
+            lock.writeLock().lock();
+            try {
+                fresh.values().forEach(ProductReviews::trim);
+                live = fresh;
+                ready = true;
+                return reviewCount(fresh);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                building = null;
+                changedWhileBuilding.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    private void addScanned(Map<Integer, ProductReviews> index, List<Entry> rows) {
+        lock.writeLock().lock();
+        try {
+            for (Entry row : rows) {
+                if (!changedWhileBuilding.contains(row.reviewId())) {
+                    replace(index, row.reviewId(), null, row);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //before 為 null 代表新增，after 為 null 代表刪除
+    private static void replace(Map<Integer, ProductReviews> index, int reviewId, Entry before, Entry after) {
+        if (before != null) {
+            ProductReviews reviews = index.get(before.productId());
+            if (reviews != null) {
+                reviews.remove(reviewId, before);
+                if (reviews.isEmpty()) {
+                    index.remove(before.productId());
+                }
+            }
+        }
+        if (after != null) {
+            index.computeIfAbsent(after.productId(), key -> new ProductReviews()).add(reviewId, after);
+        }
+    }
+
+    private static boolean isHan(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+
+    private static int reviewCount(Map<Integer, ProductReviews> index) {
+        return index.values().stream().mapToInt(reviews -> reviews.all.size()).sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("review.search.index.reviews", this, readLocked(index -> reviewCount(index.live)))
+                .register(registry);
+        Gauge.builder("review.search.index.terms", this,
+                        readLocked(index -> index.live.values().stream().mapToInt(reviews -> reviews.words.size()).sum()))
+                .register(registry);
+    }
+
+    private static ToDoubleFunction<ReviewSearchIndex> readLocked(ToDoubleFunction<ReviewSearchIndex> value) {
+        return index -> {
+            index.lock.readLock().lock();
+            try {
+                return value.applyAsDouble(index);
+            } finally {
+                index.lock.readLock().unlock();
+            }
+        };
+    }
+
+    //索引需要的評論欄位 (修改前後各一份)
+    public record Entry(int reviewId, int productId, String comment, int rating, ReviewStatus status) {
+
+        public static Entry of(Review review) {
+            return new Entry(review.getId(), review.getProduct().getId(), review.getComment(), review.getRating(),
+                    review.getStatus());
+        }
+    }
+
+    //一個產品的評論：詞 -> 評論 id，另有評分 (1 ~ 5) 與狀態的評論 id
+    private static final class ProductReviews {
+
+        private final Map<String, PostingList> words = new HashMap<>();
+        private final PostingList[] ratings = new PostingList[6];
+        private final Map<ReviewStatus, PostingList> statuses = new EnumMap<>(ReviewStatus.class);
+        private final PostingList all = new PostingList();
+
+        private ProductReviews() {
+            for (int rating = 0; rating < ratings.length; rating++) {
+                ratings[rating] = new PostingList();
+            }
+            for (ReviewStatus status : ReviewStatus.values()) {
+                statuses.put(status, new PostingList());
+            }
+        }
+
+        private void add(int reviewId, Entry review) {
+            for (String word : SearchTokenizer.words(review.comment(), COMMENT_LENGTH)) {
+                words.computeIfAbsent(word, key -> new PostingList()).add(reviewId);
+            }
+            ratings[review.rating()].add(reviewId);
+            statuses.get(review.status()).add(reviewId);
+            all.add(reviewId);
+        }
+
+        private void remove(int reviewId, Entry review) {
+            for (String word : SearchTokenizer.words(review.comment(), COMMENT_LENGTH)) {
+                PostingList list = words.get(word);
+                if (list != null && list.remove(reviewId) && list.isEmpty()) {
+                    words.remove(word);
+                }
+            }
+            ratings[review.rating()].remove(reviewId);
+            statuses.get(review.status()).remove(reviewId);
+            all.remove(reviewId);
+        }
+
+        private boolean isEmpty() {
+            return all.isEmpty();
+        }
+
+        //由最短的 posting list 由大到小逐一檢查其他詞、狀態與評分；候選 id 遞減 -> 每個 list 以 floorIndex() 由上次位置往前跳
+        private int[] search(Set<String> terms, ReviewStatus status, int ratingMin, int ratingMax) {
+            List<PostingList> lists = new ArrayList<>(terms.size() + 1);
+            for (String term : terms) {
+                PostingList list = words.get(term);
+                if (list == null) {
+                    return NONE;  //有一個詞不存在 -> 沒有符合的評論
+                }
+                lists.add(list);
+            }
+            if (status != null) {
+                lists.add(statuses.get(status));
+            }
+            lists.sort(Comparator.comparingInt(PostingList::size));
+            PostingList shortest = lists.get(0);
+            int[] positions = new int[lists.size()];
+            for (int i = 1; i < positions.length; i++) {
+                positions[i] = lists.get(i).size() - 1;
+            }
+            boolean allRatings = ratingMin <= 1 && ratingMax >= 5;
+            int[] ratingPositions = new int[ratings.length];
+            for (int rating = 1; rating < ratings.length; rating++) {
+                ratingPositions[rating] = ratings[rating].size() - 1;
+            }
+
+            int[] matches = new int[shortest.size()];
+            int count = 0;
+            for (int i = shortest.size() - 1; i >= 0; i--) {
+                int reviewId = shortest.get(i);
+                int contained = containedInAll(lists, positions, reviewId);
+                if (contained < 0) {
+                    break;  //其他 list 已沒有更小的 id
+                }
+                if (contained == 1 && (allRatings || hasRating(ratingPositions, reviewId, ratingMin, ratingMax))) {
+                    matches[count++] = reviewId;
+                }
+            }
+            //由大到小收集 -> 反轉成遞增
+            int[] ascending = new int[count];
+            for (int i = 0; i < count; i++) {
+                ascending[i] = matches[count - 1 - i];
+            }
+            return ascending;
+        }
+
+        //1: 所有 list 都有這個 id，0: 有 list 沒有，-1: 有 list 已沒有 <= id 的元素 (之後的候選也不會符合)
+        private static int containedInAll(List<PostingList> lists, int[] positions, int reviewId) {
+            for (int i = 1; i < positions.length; i++) {
+                PostingList list = lists.get(i);
+                int position = list.floorIndex(reviewId, positions[i]);
+                if (position < 0) {
+                    return -1;
+                }
+                positions[i] = position;
+                if (list.get(position) != reviewId) {
+                    return 0;
+                }
+            }
+            return 1;
+        }
+
+        private boolean hasRating(int[] positions, int reviewId, int ratingMin, int ratingMax) {
+            boolean found = false;
+            for (int rating = Math.max(1, ratingMin); rating <= Math.min(5, ratingMax) && !found; rating++) {
+                int position = ratings[rating].floorIndex(reviewId, positions[rating]);
+                positions[rating] = position;
+                found = position >= 0 && ratings[rating].get(position) == reviewId;
+            }
+            return found;
+        }
+
+        private void trim() {
+            words.values().forEach(PostingList::trim);
+            for (PostingList list : ratings) {
+                list.trim();
+            }
+            statuses.values().forEach(PostingList::trim);
+            all.trim();
+        }
+    }
+}
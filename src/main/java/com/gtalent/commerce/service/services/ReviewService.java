@@ -13,8 +13,10 @@ import com.gtalent.commerce.service.requests.CreateReviewRequest;
 import com.gtalent.commerce.service.requests.UpdateReviewRequest;
 import com.gtalent.commerce.service.responses.ReviewResponse;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -24,7 +26,9 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 
 
@@ -36,6 +40,16 @@ public class ReviewService {
     private ProductRepository productRepository;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private ProductRatingService productRatingService;
+    @Autowired
+    private ReviewSearchIndex reviewSearchIndex;
+
+    //每個 id IN (...) 清單的 id 數；關鍵字符合的評論較多時以 OR 串接多個清單，仍是同一個查詢
+    private static final int IN_LIST_SIZE = 1000;
+    //關鍵字搜尋指定排序時，最多交給資料庫排序的評論數 (預設排序在記憶體分頁，不受限制)
+    private static final int MAX_SORTED_MATCHES = 10_000;
+    private static final Sort NEWEST_FIRST = Sort.by("createdAt").descending();
 
 
     //1.取得某產品的所有評論 (分頁)
@@ -43,7 +57,7 @@ public class ReviewService {
             String status, Integer ratingMin, Integer ratingMax, String q
     ) {
         //1.設定排序
-        Sort sortObj = Sort.by("createdAt").descending(); // 預設
+        Sort sortObj = NEWEST_FIRST; // 預設
         if (sort != null) {
             Sort.Direction dir = "asc".equalsIgnoreCase(direction) ? Sort.Direction.ASC : Sort.Direction.DESC;
             switch (sort) {
@@ -68,15 +82,27 @@ public class ReviewService {
             }
         }
         Pageable pageable = PageRequest.of(page, size, sortObj);
+        ReviewStatus reviewStatus = status == null ? null : ReviewStatus.valueOf(status);
 
-        //2.建立過濾條件 (Specification)
+        //2.有關鍵字時先查評論索引 (已套用狀態與評分條件)：沒有符合的評論時不查資料庫，否則只以符合的 id 分頁
+        int[] indexed = q == null || q.isEmpty() ? null
+                : reviewSearchIndex.search(productId, q, reviewStatus, ratingMin, ratingMax);
+        if (indexed != null && indexed.length == 0) {
+            return Page.empty(pageable);
+        }
+        List<Integer> matchedIds = indexed == null ? null : matchedIds(indexed, pageable);
+        if (matchedIds != null && matchedIds.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, indexed.length);  //超過最後一頁
+        }
+
+        //3.建立過濾條件 (Specification)
         Specification<Review> spec = (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
             predicates.add(cb.equal(root.get("product").get("id"), productId));
             predicates.add(cb.isNull(root.get("deletedAt")));  //軟刪除過濾
 
-            if (status != null) {
-                predicates.add(cb.equal(root.get("status"), ReviewStatus.valueOf(status)));
+            if (reviewStatus != null) {
+                predicates.add(cb.equal(root.get("status"), reviewStatus));
             }
             if (ratingMin != null) {
                 predicates.add(cb.ge(root.get("rating"), ratingMin));
@@ -84,18 +110,51 @@ public class ReviewService {
             if (ratingMax != null) {
                 predicates.add(cb.le(root.get("rating"), ratingMax));
             }
-            if (q != null && !q.isEmpty()) {
-                predicates.add(cb.like(root.get("comment"), "%" + q + "%"));
+            if (matchedIds != null) {
+                //符合的評論一律以索引的 id 篩選 (與索引相同的比對規則)
+                List<Predicate> idLists = new ArrayList<>();
+                for (int from = 0; from < matchedIds.size(); from += IN_LIST_SIZE) {
+                    idLists.add(root.get("id").in(matchedIds.subList(from,
+                            Math.min(from + IN_LIST_SIZE, matchedIds.size()))));
+                }
+                predicates.add(idLists.size() == 1 ? idLists.get(0) : cb.or(idLists.toArray(new Predicate[0])));
+            } else if (q != null && !q.isEmpty()) {
+                //索引無法處理時：與索引相同不分大小寫
+                predicates.add(cb.like(cb.lower(root.get("comment")), "%" + q.toLowerCase(Locale.ROOT) + "%"));
             }
             return cb.and(predicates.toArray(new Predicate[0]));
         };
-        //3.查詢
+        //4.查詢
+        if (indexed != null && pageable.getSort().equals(NEWEST_FIRST)) {
+            List<Review> reviews = reviewRepository.findAll(spec, Sort.by(Sort.Direction.DESC, "id"));
+            return new PageImpl<>(reviews, pageable, indexed.length).map(this::mapToResponse);
+        }
         Page<Review> reviewsPage = reviewRepository.findAll(spec, pageable);
-        //4.轉成 DTO
+        //5.轉成 DTO
         return reviewsPage.map(this::mapToResponse);
     }
 
+    //交給資料庫的評論 id (索引回傳的 id 為遞增排序)：
+    //預設排序 (建立時間由新到舊，即 id 由大到小) 在記憶體取出這一頁的 id，只有這一頁交給資料庫；
+    //指定其他排序時才把全部符合的 id 交給資料庫排序，超過 MAX_SORTED_MATCHES 筆時請呼叫端縮小條件
+    private static List<Integer> matchedIds(int[] indexed, Pageable pageable) {
+        if (!pageable.getSort().equals(NEWEST_FIRST)) {
+            if (indexed.length > MAX_SORTED_MATCHES) {
+                throw new IllegalArgumentException("符合的評論超過 " + MAX_SORTED_MATCHES + " 筆，請縮小條件或使用預設排序");
+            }
+            return Arrays.stream(indexed).boxed().toList();
+        }
+        int from = (int) Math.min(pageable.getOffset(), indexed.length);
+        int to = Math.min(from + pageable.getPageSize(), indexed.length);
+        List<Integer> page = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            page.add(indexed[indexed.length - 1 - i]);
+        }
+        return page;
+    }
+
     //2.新增評論
+    @Transactional  //評論與評分統計同時成功或同時回滾
     public ReviewResponse createReview(CreateReviewRequest request) {
         //1.先確認產品
         Product product = productRepository.findById(request.getProductId())
@@ -112,18 +171,23 @@ public class ReviewService {
         review.setStatus(ReviewStatus.PENDING);  //預設待審核
         review.setDate(LocalDate.now());        //系統自動設定評論日期
 
-        //4.儲存
+        //4.儲存 (預設待審核不計入統計；仍經過 applyChange 讓規則集中在同一處)
         Review createdReview = reviewRepository.save(review);
+        productRatingService.applyChange(product.getId(), null, ratingContribution(createdReview));
+        reviewSearchIndex.add(ReviewSearchIndex.Entry.of(createdReview));
 
         //5.回傳 Response DTO
         return mapToResponse(createdReview);
     }
 
     //3.編輯評論 (更新狀態、內容、評分)
+    @Transactional
     public ReviewResponse updateReview(int id, UpdateReviewRequest request) {
-        //1.根據 ID 取得現有評論(若不存在則拋出例外)
-        Review review = reviewRepository.findByIdAndDeletedAtIsNull(id)
+        //1.根據 ID 取得現有評論並鎖定 (若不存在則拋出例外)
+        Review review = reviewRepository.findForUpdate(id)
                 .orElseThrow(() -> new RuntimeException("評論不存在"));
+        Integer before = ratingContribution(review);
+        ReviewSearchIndex.Entry indexedBefore = ReviewSearchIndex.Entry.of(review);  //評論索引需移除修改前的詞
         //2.更新非 null 欄位
         if (request.getRating() != null) {
             review.setRating(request.getRating());
@@ -134,20 +198,26 @@ public class ReviewService {
         if (request.getStatus() != null) {
             review.setStatus(request.getStatus());
         }
-        //3.儲存更新後的評論
+        //3.儲存更新後的評論，狀態或評分改變時更新評分統計 (例如審核通過 -> 計入、退回 -> 移除)
         Review updatedReview = reviewRepository.save(review);
+        productRatingService.applyChange(review.getProduct().getId(), before, ratingContribution(updatedReview));
+        reviewSearchIndex.update(indexedBefore, ReviewSearchIndex.Entry.of(updatedReview));
         //4.將更新後的產品轉成 DTO 回傳，而不是直接回傳 Entity
         return mapToResponse(updatedReview);
     }
 
     //4.刪除評論
+    @Transactional
     public void deleteReview(int id) {
         //1.找到未刪除的評論
-        Optional<Review> optionalReview = reviewRepository.findByIdAndDeletedAtIsNull(id);
+        Optional<Review> optionalReview = reviewRepository.findForUpdate(id);
         if (optionalReview.isPresent()) {
             Review review = optionalReview.get();
+            Integer before = ratingContribution(review);
             review.setDeletedAt(LocalDateTime.now());
             reviewRepository.save(review);
+            productRatingService.applyChange(review.getProduct().getId(), before, null);
+            reviewSearchIndex.remove(ReviewSearchIndex.Entry.of(review));
         } else {
             throw new RuntimeException("評論不存在或已刪除");
         }
@@ -159,6 +229,13 @@ public class ReviewService {
     }
 
 
+    //評論計入評分統計的評分 (只有 ACCEPTED 且未刪除的評論計入，其餘為 null)
+    private static Integer ratingContribution(Review review) {
+        return review.getStatus() == ReviewStatus.ACCEPTED && review.getDeletedAt() == null
+                ? review.getRating()
+                : null;
+    }
+
     private ReviewResponse mapToResponse(Review review) {
         // 建立 CustomerDto
         CustomerDto customerDto = new CustomerDto(
@@ -0,0 +1,477 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.models.Segment;
+import com.gtalent.commerce.service.repositories.SegmentRepository;
+import com.gtalent.commerce.service.utils.AfterCommit;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+//使用者 Segment 成員的記憶體索引：每個 Segment 一個 Roaring bitmap (壓縮的使用者 id 集合)，取代每次查詢都 JOIN user_segments
+//1.另外維護「所有使用者」與「有訂閱電子報」兩個 bitmap，可與 Segment 做 AND / OR / ANDNOT 集合運算
+//2.查詢式：Segment 名稱 (例如 SEGMENT1) 或 id、newsletter、all；運算子 and (&)、or (|)、not (!)、- (差集) 與括號，
+//  and / - 優先於 or，例如 "SEGMENT1 and SEGMENT3 and not newsletter"
+//3.啟動後依 id 分批掃描建立；分配 / 移除 Segment 與使用者新增 / 修改 / 刪除於交易提交後增量更新；可設定排程整個重建
+//4.索引尚未建立完成時 select 回傳 null，由呼叫端改用 JOIN 查詢
+@Service
+public class SegmentMembershipIndex implements MeterBinder {
+
+    public static final String NEWSLETTER = "newsletter";
+    public static final String ALL = "all";
+    private static final int SCAN_BATCH_SIZE = 10_000;  //建立索引時每批讀取的筆數
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();  //還沒有成員的 Segment，唯讀
+
+    private final SegmentRepository segmentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    //查詢共用讀鎖；增量更新與切換索引取得寫鎖
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Members live = new Members(Map.of());
+    private List<Consumer<Members>> changedWhileBuilding;  //重建期間的增量，切換前依序套用到新索引 (null 代表沒有在重建)
+    private volatile boolean ready;
+
+    public SegmentMembershipIndex(SegmentRepository segmentRepository, JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager) {
+        this.segmentRepository = segmentRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    //1.依查詢式計算符合的使用者 id (回傳新的 bitmap，呼叫端可自由修改；索引尚未建立完成時回傳 null)
+    public RoaringBitmap select(String expression) {
+        return evaluate(expression, node -> {
+            RoaringBitmap result = node.evaluate();
+            return live.isShared(result) ? result.clone() : result;
+        });
+    }
+
+    //1.1 依查詢式計算使用者數 (最外層的運算只計數，不建立結果 bitmap；索引尚未建立完成時回傳 null)
+    public Long count(String expression) {
+        return evaluate(expression, Node::count);
+    }
+
+    private <T> T evaluate(String expression, Function<Node, T> result) {
+        List<String> tokens = tokenize(expression);
+        if (tokens.isEmpty()) {
+            throw new IllegalArgumentException("查詢式不可為空");
+        }
+        if (!ready) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            return result.apply(new Parser(live, tokens).parse());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //1.2 使用者列表的 Segment / 電子報過濾 (hasNewsletter 為 null 代表不過濾)
+    public RoaringBitmap select(int segmentId, Boolean hasNewsletter) {
+        if (!ready) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            RoaringBitmap members = live.segments.getOrDefault(segmentId, EMPTY);
+            if (hasNewsletter == null) {
+                return members.clone();
+            }
+            return hasNewsletter ? RoaringBitmap.and(members, live.newsletter)
+                    : RoaringBitmap.andNot(members, live.newsletter);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //1.3 依 id 由小到大取出第 offset 筆起的 size 筆 (分頁用)
+    public static List<Integer> slice(RoaringBitmap ids, long offset, int size) {
+        List<Integer> slice = new ArrayList<>(size);
+        if (offset >= ids.getLongCardinality()) {
+            return slice;
+        }
+        PeekableIntIterator iterator = ids.getIntIterator();
+        iterator.advanceIfNeeded(ids.select((int) offset));
+        while (iterator.hasNext() && slice.size() < size) {
+            slice.add(iterator.next());
+        }
+        return slice;
+    }
+
+    //1.4 userIds 中實際存在的使用者 (索引尚未建立完成時回傳 null)
+    public RoaringBitmap existingUsers(RoaringBitmap userIds) {
+        if (!ready) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            return RoaringBitmap.and(live.users, userIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //2.Segment 分配 / 移除與使用者新增 / 修改 / 刪除 (交易提交後才套用)
+    public void assign(int userId, int segmentId) {
+        afterCommit(members -> members.assign(userId, segmentId));
+    }
+
+    //批次分配：整批只註冊一次提交後更新
+    public void assignAll(int[] userIds, int[] segmentIds, int count) {
+        afterCommit(members -> {
+            for (int i = 0; i < count; i++) {
+                members.assign(userIds[i], segmentIds[i]);
+            }
+        });
+    }
+
+    public void unassign(int userId, int segmentId) {
+        afterCommit(members -> members.unassign(userId, segmentId));
+    }
+
+    public void putUser(int userId, boolean hasNewsletter) {
+        afterCommit(members -> members.putUser(userId, hasNewsletter));
+    }
+
+    public void removeUser(int userId) {
+        afterCommit(members -> members.removeUser(userId));
+    }
+
+    private void apply(Consumer<Members> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(live);
+            if (changedWhileBuilding != null) {
+                changedWhileBuilding.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //3.重新建立整個索引 (查詢在重建期間繼續使用舊索引)，回傳使用者數
+    @Scheduled(cron = "${segment.membership.rebuild.cron:-}")  //預設不排程
+    public int rebuild() {
+        lock.writeLock().lock();
+        try {
+            if (changedWhileBuilding != null) {
+                throw new IllegalStateException("Segment 索引重建中");
+            }
+            changedWhileBuilding = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            //1.掃描不持有鎖：新索引尚未公開，只有這個執行緒會寫入
+            Members fresh = transactionTemplate.execute(tx -> {
+                Map<String, Integer> segmentIds = new HashMap<>();
+                for (Segment segment : segmentRepository.findAll()) {
+                    segmentIds.put(segment.getName().toUpperCase(Locale.ROOT), segment.getId());
+                }
+                Members members = new Members(segmentIds);
+                //依 id 分批讀取 (keyset，每批 SCAN_BATCH_SIZE 筆)，不一次載入全部也不長時間佔用游標；
+                //直接用 JDBC 逐列寫入 bitmap，不建立實體或 projection 物件
+                scan("SELECT id, has_newsletter FROM users WHERE id > ? ORDER BY id LIMIT ?",
+                        rs -> members.putUser(rs.getInt(1), rs.getBoolean(2)));
+                scan("SELECT id, user_id, segment_id FROM user_segments WHERE id > ? ORDER BY id LIMIT ?",
+                        rs -> members.assign(rs.getInt(2), rs.getInt(3)));
+                return members;
+            });
+            //2.套用掃描期間提交的增量 (依提交順序重播，結果與最後一次修改一致)，再切換成新索引
+            lock.writeLock().lock();
+            try {
+                changedWhileBuilding.forEach(change -> change.accept(fresh));
+                fresh.optimize();
+                live = fresh;
+                ready = true;
+                return fresh.users.getCardinality();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                changedWhileBuilding = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    //sql 的第一欄必須是 id，參數依序為「上一批最後的 id」與批次大小
+    private void scan(String sql, RowCallbackHandler row) {
+        int[] lastId = {0};
+        int[] rows = {0};
+        RowCallbackHandler handler = rs -> {
+            lastId[0] = rs.getInt(1);
+            rows[0]++;
+            row.processRow(rs);
+        };
+        do {
+            rows[0] = 0;
+            jdbcTemplate.query(sql, handler, lastId[0], SCAN_BATCH_SIZE);
+        } while (rows[0] == SCAN_BATCH_SIZE);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    //在交易提交後才更新，回滾的修改不會進入索引
+    private void afterCommit(Consumer<Members> change) {
+        AfterCommit.run(() -> apply(change));
+    }
+
+    private static List<String> tokenize(String expression) {
+        List<String> tokens = new ArrayList<>();
+        if (expression == null) {
+            return tokens;
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '_') {
+                word.append(c);
+                continue;
+            }
+            if (!word.isEmpty()) {
+                tokens.add(word.toString());
+                word.setLength(0);
+            }
+            if ("()&|!-".indexOf(c) >= 0) {
+                tokens.add(String.valueOf(c));
+            } else if (!Character.isWhitespace(c)) {
+                throw new IllegalArgumentException("查詢式含有無法辨識的字元: " + c);
+            }
+        }
+        if (!word.isEmpty()) {
+            tokens.add(word.toString());
+        }
+        return tokens;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("segment.membership.users", this,
+                        index -> index.readLocked(members -> members.users.getLongCardinality()))
+                .register(registry);
+        Gauge.builder("segment.membership.memory", this, index -> index.readLocked(Members::memoryBytes))
+                .description("Segment 成員 bitmap 的記憶體用量")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+    }
+
+    private double readLocked(ToLongFunction<Members> value) {
+        lock.readLock().lock();
+        try {
+            return value.applyAsLong(live);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //一份完整的索引：Segment id -> 使用者 id bitmap
+    private static final class Members {
+        private final Map<String, Integer> segmentIds;  //Segment 名稱 (大寫) -> id
+        private final Map<Integer, RoaringBitmap> segments = new HashMap<>();
+        private final RoaringBitmap users = new RoaringBitmap();
+        private final RoaringBitmap newsletter = new RoaringBitmap();
+
+        private Members(Map<String, Integer> segmentIds) {
+            this.segmentIds = segmentIds;
+        }
+
+        private void assign(int userId, int segmentId) {
+            segments.computeIfAbsent(segmentId, key -> new RoaringBitmap()).add(userId);
+        }
+
+        private void unassign(int userId, int segmentId) {
+            RoaringBitmap members = segments.get(segmentId);
+            if (members != null) {
+                members.remove(userId);
+            }
+        }
+
+        private void putUser(int userId, boolean hasNewsletter) {
+            users.add(userId);
+            if (hasNewsletter) {
+                newsletter.add(userId);
+            } else {
+                newsletter.remove(userId);
+            }
+        }
+
+        //刪除使用者時 user_segments 會一併刪除 (cascade)
+        private void removeUser(int userId) {
+            users.remove(userId);
+            newsletter.remove(userId);
+            for (RoaringBitmap members : segments.values()) {
+                members.remove(userId);
+            }
+        }
+
+        private RoaringBitmap resolve(String term) {
+            if (term.equalsIgnoreCase(NEWSLETTER)) {
+                return newsletter;
+            }
+            if (term.equalsIgnoreCase(ALL)) {
+                return users;
+            }
+            Integer segmentId = term.chars().allMatch(Character::isDigit) ? Integer.valueOf(term)
+                    : segmentIds.get(term.toUpperCase(Locale.ROOT));
+            if (segmentId == null || (!segmentIds.containsValue(segmentId) && !segments.containsKey(segmentId))) {
+                throw new IllegalArgumentException("segment不存在: " + term);
+            }
+            return segments.getOrDefault(segmentId, EMPTY);
+        }
+
+        //是否為索引本身的 bitmap (不可交給呼叫端修改)
+        private boolean isShared(RoaringBitmap bitmap) {
+            if (bitmap == users || bitmap == newsletter || bitmap == EMPTY) {
+                return true;
+            }
+            for (RoaringBitmap members : segments.values()) {
+                if (bitmap == members) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void optimize() {
+            segments.values().forEach(RoaringBitmap::runOptimize);
+            users.runOptimize();
+            newsletter.runOptimize();
+        }
+
+        private long memoryBytes() {
+            long bytes = users.getLongSizeInBytes() + newsletter.getLongSizeInBytes();
+            for (RoaringBitmap members : segments.values()) {
+                bytes += members.getLongSizeInBytes();
+            }
+            return bytes;
+        }
+    }
+
+    //查詢式的語法樹：leaf 為索引中的 bitmap (唯讀)，其餘為 & (交集)、| (聯集)、- (差集)
+    private record Node(char operator, Node left, Node right, RoaringBitmap leaf) {
+        private static Node leaf(RoaringBitmap bitmap) {
+            return new Node('=', null, null, bitmap);
+        }
+
+        private RoaringBitmap evaluate() {
+            return switch (operator) {
+                case '&' -> RoaringBitmap.and(left.evaluate(), right.evaluate());
+                case '|' -> RoaringBitmap.or(left.evaluate(), right.evaluate());
+                case '-' -> RoaringBitmap.andNot(left.evaluate(), right.evaluate());
+                default -> leaf;
+            };
+        }
+
+        private long count() {
+            return switch (operator) {
+                case '&' -> RoaringBitmap.andCardinality(left.evaluate(), right.evaluate());
+                case '|' -> RoaringBitmap.orCardinality(left.evaluate(), right.evaluate());
+                case '-' -> RoaringBitmap.andNotCardinality(left.evaluate(), right.evaluate());
+                default -> leaf.getLongCardinality();
+            };
+        }
+    }
+
+    //遞迴下降解析：or -> and (('or' | '|') and)*；and -> unary (('and' | '&' | '-') unary)*
+    private static final class Parser {
+        private final Members members;
+        private final List<String> tokens;
+        private int position;
+
+        private Parser(Members members, List<String> tokens) {
+            this.members = members;
+            this.tokens = tokens;
+        }
+
+        private Node parse() {
+            Node result = or();
+            if (position < tokens.size()) {
+                throw new IllegalArgumentException("查詢式格式錯誤: " + tokens.get(position));
+            }
+            return result;
+        }
+
+        private Node or() {
+            Node result = and();
+            while (accept("or", "|")) {
+                result = new Node('|', result, and(), null);
+            }
+            return result;
+        }
+
+        private Node and() {
+            Node result = unary();
+            while (true) {
+                if (accept("and", "&")) {
+                    //and not X -> 直接取差集，不需先算 X 的補集
+                    result = accept("not", "!") ? new Node('-', result, unary(), null)
+                            : new Node('&', result, unary(), null);
+                } else if (accept("-", "-")) {
+                    result = new Node('-', result, unary(), null);
+                } else {
+                    return result;
+                }
+            }
+        }
+
+        private Node unary() {
+            if (accept("not", "!")) {
+                return new Node('-', Node.leaf(members.users), unary(), null);
+            }
+            if (accept("(", "(")) {
+                Node result = or();
+                if (!accept(")", ")")) {
+                    throw new IllegalArgumentException("查詢式缺少右括號");
+                }
+                return result;
+            }
+            if (position >= tokens.size()) {
+                throw new IllegalArgumentException("查詢式不完整");
+            }
+            String term = tokens.get(position++);
+            if ("and".equalsIgnoreCase(term) || "or".equalsIgnoreCase(term) || "&|-)".contains(term)) {
+                throw new IllegalArgumentException("查詢式格式錯誤: " + term);
+            }
+            return Node.leaf(members.resolve(term));
+        }
+
+        private boolean accept(String keyword, String symbol) {
+            if (position < tokens.size()
+                    && (tokens.get(position).equalsIgnoreCase(keyword) || tokens.get(position).equals(symbol))) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.gtalent.commerce.service.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Snowflake 風格的訂單編號：時間戳 (41 bits) + 節點 ID (10 bits) + 序號 (12 bits)
+//1.不需要查資料庫，也不需要鎖 (只用一個 AtomicLong 做 CAS)
+//2.同一毫秒內序號用完時直接借用下一毫秒，不會等待，也不會因時鐘倒退而重複
+//3.以 36 進位、固定 13 碼輸出 -> "ORD" + 13 碼 = 16 字元，字串排序即大致等於時間排序
+@Component
+public class SnowflakeOrderReferenceGenerator implements OrderReferenceGenerator {
+
+    static final String PREFIX = "ORD";
+    static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int ENCODED_LENGTH = 13;  //Long.MAX_VALUE 以 36 進位表示最多 13 碼
+    private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+    private final long nodeId;
+    //高位為相對 EPOCH 的毫秒數，低 12 bits 為序號；序號溢位時會自然進位到下一毫秒
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeOrderReferenceGenerator(@Value("${order.reference.node-id:0}") long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("order.reference.node-id 必須介於 0 ~ " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public String nextReference() {
+        return PREFIX + encode(nextId());
+    }
+
+    long nextId() {
+        long now = System.currentTimeMillis() - EPOCH_MILLIS;
+        long next;
+        while (true) {
+            long previous = state.get();
+            //時間前進 -> 序號歸零；同一毫秒 (或時鐘倒退) -> 序號 + 1
+            next = now > (previous >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : previous + 1;
+            if (state.compareAndSet(previous, next)) {
+                break;
+            }
+        }
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & SEQUENCE_MASK;
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    static String encode(long id) {
+        char[] buffer = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            buffer[i] = DIGITS[(int) (id % 36)];
+            id /= 36;
+        }
+        return new String(buffer);
+    }
+}
@@ -0,0 +1,219 @@
+package com.gtalent.commerce.service.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gtalent.commerce.service.repositories.UserRepository;
+import com.gtalent.commerce.service.requests.UserSegmentRequest;
+import com.gtalent.commerce.service.responses.BulkAssignResponse;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+//批次分配 Segment：大量 (userId, segmentId) 以串流讀入 (不整批載入記憶體)，每 CHUNK_SIZE 筆處理一次
+//1.集合式驗證：Segment 由記憶體中的對照表確認；每批的使用者 id 與成員索引的使用者 bitmap 取交集 (不查資料庫)，
+//  索引尚未建立完成時改以一次 IN 查詢確認存在
+//2.有效的資料以一個多值 INSERT ... ON DUPLICATE KEY UPDATE 送出，由 user_segments 的唯一鍵略過已存在的關聯 (不需先查詢)
+//  新增的關聯數取自影響筆數 (新增 1、已存在 0) -> 上傳中重複或已存在的關聯不算新增
+//3.每批一個交易；格式錯誤、使用者或 Segment 不存在的資料列逐筆回報，不影響其他資料列
+//  以索引驗證後寫入仍失敗 (例如使用者剛被刪除、索引尚未更新) 時，改以資料庫重新驗證這一批再寫一次
+//MySQL 連線需加上 useAffectedRows=true，已存在的關聯才會回報 0 筆 (預設回報找到的筆數 1)
+@Service
+public class UserSegmentBulkService {
+
+    static final int CHUNK_SIZE = 5000;
+    static final int MAX_REPORTED_FAILURES = 1000;
+    private static final String UPSERT_CHUNK_SQL = upsertSql(CHUNK_SIZE);
+
+    private final UserRepository userRepository;
+    private final ReferenceDataRegistry referenceData;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SegmentMembershipIndex membershipIndex;
+    private final ObjectMapper objectMapper;
+
+    public UserSegmentBulkService(UserRepository userRepository, ReferenceDataRegistry referenceData,
+                                  JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                  SegmentMembershipIndex membershipIndex, ObjectMapper objectMapper) {
+        this.userRepository = userRepository;
+        this.referenceData = referenceData;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.membershipIndex = membershipIndex;
+        this.objectMapper = objectMapper;
+    }
+
+    //1.CSV：每行 "userId,segmentId"，可有標題列與空白行
+    public BulkAssignResponse assignFromCsv(Reader reader) throws IOException {
+        Batch batch = new Batch();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        long row = 0;
+        while ((line = lines.readLine()) != null) {
+            row++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) {
+                continue;  //空白行
+            }
+            int comma = trimmed.indexOf(',');
+            try {
+                if (comma < 0) {
+                    throw new NumberFormatException();
+                }
+                int userId = Integer.parseInt(trimmed.substring(0, comma).trim());
+                int segmentId = Integer.parseInt(trimmed.substring(comma + 1).trim());
+                batch.add(row, userId, segmentId);
+            } catch (NumberFormatException e) {
+                if (row > 1) {  //第一行無法解析 -> 視為標題列
+                    batch.malformed(row, "格式錯誤: " + trimmed);
+                }
+            }
+        }
+        return batch.finish();
+    }
+
+    //2.JSON 陣列：[{"userId": 1, "segmentId": 2}, ...]，逐筆讀取；格式錯誤時回報該筆並停止讀取
+    public BulkAssignResponse assignFromJson(InputStream body) throws IOException {
+        Batch batch = new Batch();
+        long row = 0;
+        try (MappingIterator<UserSegmentRequest> rows = objectMapper.readerFor(UserSegmentRequest.class)
+                .readValues(body)) {
+            while (rows.hasNextValue()) {
+                UserSegmentRequest request = rows.nextValue();
+                batch.add(++row, request.getUserId(), request.getSegmentId());  //row = 已成功讀取的筆數
+            }
+        } catch (JsonProcessingException e) {
+            batch.malformed(row + 1, "JSON 格式錯誤: " + e.getOriginalMessage());
+        }
+        return batch.finish();
+    }
+
+    private static String upsertSql(int rows) {
+        return "INSERT INTO user_segments (user_id, segment_id) VALUES "
+                + String.join(", ", Collections.nCopies(rows, "(?, ?)"))
+                + " ON DUPLICATE KEY UPDATE segment_id = segment_id";
+    }
+
+    //一次批次分配的處理狀態：累積 CHUNK_SIZE 筆後驗證並寫入
+    private final class Batch {
+        private final Set<Integer> segmentIds = referenceData.segments().keySet();
+        private final BulkAssignResponse response = new BulkAssignResponse();
+        private final long[] rows = new long[CHUNK_SIZE];
+        private final int[] userIds = new int[CHUNK_SIZE];
+        private final int[] segments = new int[CHUNK_SIZE];
+        private int size;
+
+        private void add(long row, int userId, int segmentId) {
+            response.setReceived(response.getReceived() + 1);
+            rows[size] = row;
+            userIds[size] = userId;
+            segments[size] = segmentId;
+            if (++size == CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        private void malformed(long row, String reason) {
+            response.setReceived(response.getReceived() + 1);
+            fail(row, null, null, reason);
+        }
+
+        private BulkAssignResponse finish() {
+            flush();
+            return response;
+        }
+
+        private void flush() {
+            if (size == 0) {
+                return;
+            }
+            RoaringBitmap existing = membershipIndex.existingUsers(candidates());
+            boolean fromIndex = existing != null;
+            int valid = keepValid(fromIndex ? existing : findExisting());
+            boolean written = valid == 0 || write(valid);
+            if (!written && fromIndex) {
+                size = valid;
+                valid = keepValid(findExisting());
+                written = valid == 0 || write(valid);
+            }
+            if (!written) {
+                for (int i = 0; i < valid; i++) {
+                    fail(rows[i], userIds[i], segments[i], "寫入失敗");
+                }
+            }
+            size = 0;
+        }
+
+        private RoaringBitmap candidates() {
+            RoaringBitmap candidates = new RoaringBitmap();
+            candidates.addN(userIds, 0, size);
+            return candidates;
+        }
+
+        //整批的使用者 id 一次查詢
+        private RoaringBitmap findExisting() {
+            List<Integer> ids = new ArrayList<>();
+            candidates().forEach((int id) -> ids.add(id));
+            RoaringBitmap existing = new RoaringBitmap();
+            userRepository.findExistingIds(ids).forEach(existing::add);
+            return existing;
+        }
+
+        //回報不存在的使用者 / Segment，有效的資料列就地往前搬，回傳有效筆數
+        private int keepValid(RoaringBitmap existingUsers) {
+            int valid = 0;
+            for (int i = 0; i < size; i++) {
+                if (!segmentIds.contains(segments[i])) {
+                    fail(rows[i], userIds[i], segments[i], "segment不存在");
+                } else if (!existingUsers.contains(userIds[i])) {
+                    fail(rows[i], userIds[i], segments[i], "使用者不存在");
+                } else {
+                    rows[valid] = rows[i];
+                    userIds[valid] = userIds[i];
+                    segments[valid] = segments[i];
+                    valid++;
+                }
+            }
+            return valid;
+        }
+
+        //寫入失敗 (交易已回滾) 時回傳 false
+        private boolean write(int count) {
+            try {
+                int inserted = transactionTemplate.execute(tx -> {
+                    int affected = jdbcTemplate.update(count == CHUNK_SIZE ? UPSERT_CHUNK_SQL : upsertSql(count), ps -> {
+                        for (int i = 0; i < count; i++) {
+                            ps.setInt(2 * i + 1, userIds[i]);
+                            ps.setInt(2 * i + 2, segments[i]);
+                        }
+                    });
+                    membershipIndex.assignAll(userIds.clone(), segments.clone(), count);  //提交後才更新索引
+                    return affected;
+                });
+                response.setAssigned(response.getAssigned() + inserted);
+                return true;
+            } catch (DataAccessException e) {
+                return false;
+            }
+        }
+
+        private void fail(long row, Integer userId, Integer segmentId, String reason) {
+            response.setFailed(response.getFailed() + 1);
+            if (response.getFailures().size() < MAX_REPORTED_FAILURES) {
+                response.getFailures().add(new BulkAssignResponse.Failure(row, userId, segmentId, reason));
+            }
+        }
+    }
+}
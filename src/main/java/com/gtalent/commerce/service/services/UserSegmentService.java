@@ -1,18 +1,23 @@
 package com.gtalent.commerce.service.services;
 
-import com.gtalent.commerce.service.models.Segment;
 import com.gtalent.commerce.service.models.User;
 import com.gtalent.commerce.service.models.UserSegment;
 import com.gtalent.commerce.service.repositories.SegmentRepository;
 import com.gtalent.commerce.service.repositories.UserRepository;
 import com.gtalent.commerce.service.repositories.UserSegmentRepository;
 
+import com.gtalent.commerce.service.exceptions.ServiceBusyException;
 import com.gtalent.commerce.service.responses.UserResponse;
 import com.gtalent.commerce.service.responses.UserSegmentResponse;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,18 +27,24 @@ public class UserSegmentService {
     private final UserRepository userRepository;
 
     private final SegmentRepository segmentRepository;
+    private final SegmentMembershipIndex membershipIndex;
+    private final ReferenceDataRegistry referenceData;
 
     public UserSegmentService(UserSegmentRepository userSegmentRepository,
                               UserRepository userRepository,
-                              SegmentRepository segmentRepository) {
+                              SegmentRepository segmentRepository,
+                              SegmentMembershipIndex membershipIndex,
+                              ReferenceDataRegistry referenceData) {
         this.userSegmentRepository = userSegmentRepository;
         this.userRepository = userRepository;
         this.segmentRepository = segmentRepository;
+        this.membershipIndex = membershipIndex;
+        this.referenceData = referenceData;
     }
 
     //1.查詢某使用者所屬的 Segment (把每個使用者對應的 Segment 收集起來)
     public Optional<UserResponse> getSegmentsWithUser(int userId) {
-        return userRepository.findById(userId)  //呼叫 JPA Repository 的 findById 方法查詢使用者
+        return userRepository.findWithSegmentsById(userId)  //查詢使用者 (userSegments 以 entity graph 一併載入)
                 .map(user -> {
                     UserResponse ur = new UserResponse();  //建立一個 DTO (UserResponse)
                     ur.setId(user.getId());
@@ -81,9 +92,8 @@ public class UserSegmentService {
         if(user.isEmpty()) {
             throw new RuntimeException("使用者不存在");
         }
-        //找到segment
-        Optional<Segment> segment = segmentRepository.findById(segmentId);
-        if(segment.isEmpty()) {
+        //找到segment (由記憶體中的 Segment 對照表確認，不查資料庫)
+        if (!referenceData.segmentExists(segmentId)) {
             throw new RuntimeException("segment不存在");
         }
         //確認此user<->segment彼此關聯存在
@@ -93,8 +103,9 @@ public class UserSegmentService {
         }
         UserSegment userSegment = new UserSegment();  //建立新 userSegment
         userSegment.setUser(user.get());  //用 get()取出並存 User
-        userSegment.setSegment(segment.get());  //用 get()取出並存 Segment
+        userSegment.setSegment(segmentRepository.getReferenceById(segmentId));  //只需外鍵 -> 以參考代替查詢
         UserSegment saved = userSegmentRepository.save(userSegment);  //存入資料庫
+        membershipIndex.assign(userId, segmentId);  //同步 Segment 成員索引
         return new UserSegmentResponse(saved);  //回傳DTO
     }
 
@@ -108,6 +119,38 @@ public class UserSegmentService {
         }
         UserSegment userSegment = existing.get();
         userSegmentRepository.delete(existing.get());  //資料庫有找到的話就刪除
+        membershipIndex.unassign(userId, segmentId);  //同步 Segment 成員索引
         return new UserSegmentResponse(userSegment);  //回傳被刪掉的關聯
     }
+
+    //5.依 Segment 查詢式計算使用者數 (例如 "SEGMENT1 and SEGMENT3 and not newsletter")，只使用記憶體索引，不查資料庫
+    public long countUsers(String expression) {
+        Long count = membershipIndex.count(expression);
+        if (count == null) {
+            throw new ServiceBusyException("Segment 索引建立中，請稍後再試");
+        }
+        return count;
+    }
+
+    //6.依 Segment 查詢式列出使用者 (依 id 由小到大)：從 bitmap 取出這一頁的 id，以 IN 一次讀取，不需 JOIN 與 COUNT
+    public Page<UserResponse> getUsersByExpression(String expression, Pageable pageable) {
+        RoaringBitmap ids = membershipIndex.select(expression);
+        if (ids == null) {
+            throw new ServiceBusyException("Segment 索引建立中，請稍後再試");
+        }
+        List<Integer> pageIds = SegmentMembershipIndex.slice(ids, pageable.getOffset(), pageable.getPageSize());
+        List<UserResponse> responses = userRepository.findWithSegmentsByIdIn(pageIds).stream()
+                .sorted(Comparator.comparingInt(User::getId))
+                .map(user -> {
+                    UserResponse ur = new UserResponse();
+                    ur.setId(user.getId());
+                    ur.setFirstName(user.getFirstName());
+                    ur.setLastName(user.getLastName());
+                    ur.setHasNewsletter(user.getHasNewsletter());
+                    ur.setSegments(user.getUserSegments().stream().map(UserSegmentResponse::new).toList());
+                    return ur;
+                })
+                .toList();
+        return new PageImpl<>(responses, pageable, ids.getLongCardinality());
+    }
 }
@@ -1,16 +1,21 @@
 package com.gtalent.commerce.service.services;
 
 
+import com.gtalent.commerce.service.configs.JwtPrincipalCache;
 import com.gtalent.commerce.service.models.UserSegment;
+import com.gtalent.commerce.service.responses.CursorPageResponse;
 import com.gtalent.commerce.service.responses.LoginResponse;
 import com.gtalent.commerce.service.responses.UserResponse;
 import com.gtalent.commerce.service.models.User;
 import com.gtalent.commerce.service.repositories.UserRepository;
 
 import com.gtalent.commerce.service.responses.UserSegmentResponse;
+import com.gtalent.commerce.service.utils.KeysetCursor;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.Predicate;
+import org.roaringbitmap.RoaringBitmap;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -20,6 +25,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -30,17 +36,28 @@ public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;  //1.在"pom.xml"中注入依賴 2.在configs中加入SecurityConfig並新增@Bean
     private JwtService jwtService;
+    private final JwtPrincipalCache principalCache;
+    private final LoginTimestampBuffer loginTimestampBuffer;
+    private final SegmentMembershipIndex membershipIndex;
+
+    //Segment 成員不超過此數量時以 id IN (...) 過濾，超過時仍 JOIN user_segments (避免過長的 SQL)
+    private static final int MAX_IN_IDS = 10_000;
 
     //注入建構子
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, JwtService jwtService) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, JwtService jwtService,
+                       JwtPrincipalCache principalCache, LoginTimestampBuffer loginTimestampBuffer,
+                       SegmentMembershipIndex membershipIndex) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.jwtService = jwtService;
+        this.principalCache = principalCache;
+        this.loginTimestampBuffer = loginTimestampBuffer;
+        this.membershipIndex = membershipIndex;
     }
 
     //1.取得所有使用者
     public List<UserResponse> getAllUsers() {
-        return userRepository.findAll()
+        return userRepository.findAllWithSegments()  //userSegments 以 entity graph 一次載入
                 .stream()
                 .map(user -> {
                     UserResponse ur = new UserResponse();
@@ -62,15 +79,36 @@ public class UserService {
 
     //1.1 取得使用者(分頁)
     public Page<User> getAllUserPages(String query, Boolean hasNewsletter, Integer segmentId, Pageable pageable) {
-        Specification<User> spec = userSpecification(query, hasNewsletter, segmentId);
+        RoaringBitmap members = segmentId == null ? null : membershipIndex.select(segmentId, hasNewsletter);
+        //只有 Segment / 電子報條件且未指定排序 -> 直接由 bitmap 分頁，只以 IN 讀取這一頁的使用者 (沒有 JOIN、沒有 COUNT)
+        if (members != null && (query == null || query.isEmpty()) && pageable.getSort().isUnsorted()) {
+            List<User> users = new ArrayList<>(userRepository.findWithSegmentsByIdIn(
+                    SegmentMembershipIndex.slice(members, pageable.getOffset(), pageable.getPageSize())));
+            users.sort(Comparator.comparingInt(User::getId));
+            return new PageImpl<>(users, pageable, members.getLongCardinality());
+        }
+        Specification<User> spec = userSpecification(query, hasNewsletter, segmentId, members);
         return userRepository.findAll(spec, pageable);
     }
+    //1.2 取得使用者 (Keyset 分頁，依建立時間由新到舊)
+    public CursorPageResponse<User> getUsersAfter(String query, Boolean hasNewsletter, Integer segmentId,
+                                                  String cursor, int size, boolean includeTotal) {
+        KeysetCursor.checkSize(size);
+        RoaringBitmap members = segmentId == null ? null : membershipIndex.select(segmentId, hasNewsletter);
+        Specification<User> filter = userSpecification(query, hasNewsletter, segmentId, members);
+        List<User> rows = userRepository.findBy(
+                filter.and(KeysetCursor.after(KeysetCursor.decode(cursor), "firstLoginTime")),
+                q -> q.sortBy(KeysetCursor.sort("firstLoginTime")).limit(size + 1).all());
+        Long total = includeTotal ? userRepository.count(filter) : null;  //不需要總筆數時省略 COUNT(*)
+        return KeysetCursor.toPage(rows, size, u -> new KeysetCursor(u.getFirstLoginTime(), u.getId()), total);
+    }
+
     /* query：
        關鍵字 (可為 null 或空字串 "")，用來模糊搜尋 firstName/lastName。*/
     /* hasNewsletter：
        布林過濾 (true / false / null)。null 表示不套用此條件。*/
     /* segmentId：
-       數字過濾 (null 表示不套用)。通常會 JOIN userSegments 去比對 segment.id。*/
+       數字過濾 (null 表示不套用)。Segment 成員索引已建立時以 id IN (...) 過濾，否則 JOIN userSegments 去比對 segment.id。*/
     /* pageable：
        分頁與排序資訊 (由 Controller 產生，通常 PageRequest.of(page, size, sort))。*/
     /* 建立 Specification：
@@ -79,13 +117,17 @@ public class UserService {
        這個 Specification 在被傳給 userRepository.findAll(spec, pageable) 時，
        會被 JPA（Hibernate）用來建立 CriteriaQuery。*/
 
-    private Specification<User> userSpecification(String queryName, Boolean hasNewsletter, Integer segmentId) {
+    private Specification<User> userSpecification(String queryName, Boolean hasNewsletter, Integer segmentId,
+                                                  RoaringBitmap members) {
         /* 回傳值：
            Specification<User> —— 一個可以被 Spring Data JPA 用來產生 WHERE 條件的物件（實作為 lambda）。
            參數：
            queryName -> 文字關鍵字，用來模糊搜尋（例如名字、姓氏、Email 等）。
            hasNewsletter -> Boolean，若為 null 表示不過濾；true/false 則添加對應過濾。
-           segmentId -> Integer，若為 null 表示不過濾；有值則加入 JOIN 篩選。*/
+           segmentId -> Integer，若為 null 表示不過濾；有值則加入 JOIN 篩選。
+           members -> Segment 成員索引查出的使用者 id (索引尚未建立時為 null)，數量不多時取代 JOIN。*/
+        List<Integer> memberIds = members != null && members.getLongCardinality() <= MAX_IN_IDS
+                ? SegmentMembershipIndex.slice(members, 0, MAX_IN_IDS) : null;
         return ((root, query, criteriaBuilder) -> {
             //建立一個 predicates 列表
             List<Predicate> predicates = new ArrayList<>();
@@ -118,7 +160,10 @@ public class UserService {
                    hasNewsletter = true → 代表要找「有訂閱電子報」的使用者。
                    hasNewsletter = false → 代表要找「沒有訂閱電子報」的使用者。*/
             }
-            if(segmentId != null) {
+            if(segmentId != null && memberIds != null) {
+                //成員 id 已由索引算出 -> 不需 JOIN
+                predicates.add(memberIds.isEmpty() ? criteriaBuilder.disjunction() : root.get("id").in(memberIds));
+            } else if(segmentId != null) {
                 //把 User 跟 UserSegment 做 join
                 Join<User, UserSegment> userUserSegmentJoin = root.join("userSegments");
                 predicates.add(criteriaBuilder.equal(userUserSegmentJoin.get("segment").get("id"), segmentId));
@@ -161,7 +206,9 @@ public class UserService {
         }
         user.setPassword(passwordEncoder.encode(user.getPassword()));
         user.setRole("USER"); //預設為一般使用者
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        membershipIndex.putUser(savedUser.getId(), Boolean.TRUE.equals(savedUser.getHasNewsletter()));
+        return savedUser;
     }
 
     //4.更新使用者
@@ -169,6 +216,7 @@ public class UserService {
         Optional<User> user = userRepository.findById(id);
         if(user.isPresent()) {
             User existingUser = user.get(); //取得資料
+            String previousEmail = existingUser.getEmail();
             //更新欄位(不為空)
             if (updatedUser.getFirstName() != null) existingUser.setFirstName(updatedUser.getFirstName());
             if (updatedUser.getLastName() != null) existingUser.setLastName(updatedUser.getLastName());
@@ -189,6 +237,10 @@ public class UserService {
 
             //儲存回資料庫
             User savedUser = userRepository.save(existingUser);
+            membershipIndex.putUser(savedUser.getId(), Boolean.TRUE.equals(savedUser.getHasNewsletter()));
+            //email 或角色可能已變更 -> 讓 JWT 快取中的舊資料失效
+            principalCache.invalidate(previousEmail);
+            principalCache.invalidate(savedUser.getEmail());
             return Optional.of(savedUser);
         } else {
             return Optional.empty();  //找不到使用者
@@ -197,8 +249,11 @@ public class UserService {
 
     //5.刪除使用者
     public boolean deleteUserById(int id) {
-        if (userRepository.existsById(id)) {
-            userRepository.deleteById(id);
+        Optional<User> user = userRepository.findById(id);
+        if (user.isPresent()) {
+            userRepository.delete(user.get());
+            membershipIndex.removeUser(id);  //user_segments 已一併刪除
+            principalCache.invalidate(user.get().getEmail());  //已刪除的使用者不可再通過 JWT 驗證
             return true;  //刪除成功
         } else {
             return false;  //使用者不存在
@@ -211,7 +266,8 @@ public class UserService {
         if (user.isPresent() && passwordEncoder.matches(password, user.get().getPassword())) {
             User existingUser = user.get();
             existingUser.setUpdateLoginTime(LocalDateTime.now());  //更新登入時間
-            userRepository.save(existingUser);  //存回資料庫
+            //不再 save 整個使用者：登入時間先寫入緩衝，由 LoginTimestampBuffer 定時批次寫回資料庫
+            loginTimestampBuffer.record(existingUser.getId(), existingUser.getUpdateLoginTime());
             String token = jwtService.generateToken(existingUser);  //產生 JWT
 
             //將使用者資訊與 JWT 包成 LoginResponse 回傳
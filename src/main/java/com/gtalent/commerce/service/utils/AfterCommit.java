@@ -0,0 +1,25 @@
+package com.gtalent.commerce.service.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+//在交易提交後才執行 (快取失效、記憶體索引更新)：回滾的修改不會生效，其他請求也不會在提交前把舊資料載回
+//沒有進行中的交易時立即執行
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    public static void run(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.gtalent.commerce.service.utils;
+
+import com.gtalent.commerce.service.responses.CursorPageResponse;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+//Keyset (seek) 分頁游標：記錄上一頁最後一筆的 (建立時間, id)
+//下一頁以 WHERE (created_at, id) < (?, ?) 直接從索引定位，不需要 OFFSET 掃過前面的資料
+//對前端而言是不透明字串 (Base64 URL)，內容格式可以在不影響 API 的情況下調整
+public record KeysetCursor(LocalDateTime createdAt, int id) {
+
+    private static final String SEPARATOR = "|";
+    public static final int MAX_SIZE = 100;  //每頁筆數上限
+
+    //1.轉成回傳給前端的 token
+    public String encode() {
+        String raw = createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //2.解析前端帶回來的 token (空值代表第一頁)
+    public static KeysetCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            return new KeysetCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Integer.parseInt(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("無效的分頁游標");
+        }
+    }
+
+    //3.排序固定為 (建立時間, id) 由新到舊，id 用來區分同一時間建立的資料
+    public static Sort sort(String createdAtAttribute) {
+        return Sort.by(Sort.Direction.DESC, createdAtAttribute).and(Sort.by(Sort.Direction.DESC, "id"));
+    }
+
+    //4.只取排在游標之後的資料 -> created_at < ? OR (created_at = ? AND id < ?)
+    public static <T> Specification<T> after(KeysetCursor cursor, String createdAtAttribute) {
+        return (root, query, criteriaBuilder) -> {
+            if (cursor == null) {
+                return null;  //第一頁不加條件
+            }
+            return criteriaBuilder.or(
+                    criteriaBuilder.lessThan(root.get(createdAtAttribute), cursor.createdAt()),
+                    criteriaBuilder.and(
+                            criteriaBuilder.equal(root.get(createdAtAttribute), cursor.createdAt()),
+                            criteriaBuilder.lessThan(root.get("id"), cursor.id())));
+        };
+    }
+
+    //5.查詢時多取一筆 (size + 1) 判斷是否還有下一頁，再以本頁最後一筆產生下一頁游標
+    public static <T> CursorPageResponse<T> toPage(List<T> rows, int size, Function<T, KeysetCursor> keyOf,
+                                                   Long totalElements) {
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? keyOf.apply(content.get(content.size() - 1)).encode() : null;
+        return new CursorPageResponse<>(content, nextCursor, hasNext, totalElements);
+    }
+
+    //6.每頁筆數 1 ~ MAX_SIZE，超過時回傳 400 (避免一次讀出整個資料表)
+    public static void checkSize(int size) {
+        if (size <= 0 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("每頁筆數必須介於 1 ~ " + MAX_SIZE);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.gtalent.commerce.service.utils;
+
+import java.math.BigDecimal;
+
+//金額 / 體積的 long 運算 (避免每一步 BigDecimal 運算都建立新物件)
+//1.金額以「分」(小數 2 位) 的 long 表示，體積以小數 6 位 (三個尺寸各 2 位相乘) 的 long 表示
+//2.所有運算都檢查溢位；無法用 long 精確表示時拋出 ArithmeticException，由呼叫端改走 BigDecimal 計算
+//3.四捨五入規則與 BigDecimal 的 RoundingMode.HALF_UP 相同
+public final class MoneyCalculator {
+
+    public static final int MONEY_SCALE = 2;
+    public static final int VOLUME_SCALE = 3 * MONEY_SCALE;
+
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L};
+
+    private MoneyCalculator() {
+    }
+
+    //1.金額轉成「分」(小數位數需在 0 ~ 2 之間)
+    public static long toCents(BigDecimal amount) {
+        int scale = amount.scale();
+        if (scale < 0 || scale > MONEY_SCALE) {
+            throw new ArithmeticException("金額小數位數超出範圍: " + amount);
+        }
+        //scale 為 0 時 longValueExact() 直接回傳內部的 long；其他情況先移成整數 (不經過 unscaledValue() 的 BigInteger)
+        long unscaled = (scale == 0 ? amount : amount.movePointRight(scale)).longValueExact();
+        return Math.multiplyExact(unscaled, POWERS_OF_TEN[MONEY_SCALE - scale]);
+    }
+
+    //2.「分」轉回 BigDecimal，並還原成指定的小數位數 (與 BigDecimal 運算結果的 scale 一致)
+    public static BigDecimal fromCents(long cents, int scale) {
+        if (scale == MONEY_SCALE) {
+            return BigDecimal.valueOf(cents, MONEY_SCALE);
+        }
+        //scale 較小時，cents 一定可以整除 (來源金額本來就是這個位數)
+        return BigDecimal.valueOf(cents / POWERS_OF_TEN[MONEY_SCALE - scale], scale);
+    }
+
+    //3.體積 = 寬 * 高 * 深 * 數量 (小數 6 位)
+    public static long volumeUnits(BigDecimal width, BigDecimal height, BigDecimal depth, int quantity) {
+        long volume = Math.multiplyExact(toCents(width), toCents(height));
+        volume = Math.multiplyExact(volume, toCents(depth));
+        return Math.multiplyExact(volume, quantity);
+    }
+
+    //4.整數除法並以 HALF_UP 進位 (0.5 以上遠離 0)
+    public static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (Math.abs(remainder) * 2 >= divisor) {
+            quotient += Long.signum(dividend);
+        }
+        return quotient;
+    }
+
+    //5.多個金額相加，結果的小數位數與 BigDecimal.add 相同 (取最大的 scale)
+    public static BigDecimal sum(BigDecimal... amounts) {
+        long cents = 0;
+        int scale = 0;
+        for (BigDecimal amount : amounts) {
+            cents = Math.addExact(cents, toCents(amount));
+            scale = Math.max(scale, amount.scale());
+        }
+        return fromCents(cents, scale);
+    }
+}
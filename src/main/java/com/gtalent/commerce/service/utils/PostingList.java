@@ -0,0 +1,104 @@
+package com.gtalent.commerce.service.utils;
+
+import java.util.Arrays;
+
+//倒排索引的 posting list：遞增排序、不重複的 id，直接存在 int[] (不裝箱成 Integer)
+//1.依 id 遞增新增 (啟動時依 id 掃描建立) 只是附加到尾端；其他情況以二分搜尋定位後搬移
+//2.floorIndex() 以 galloping 由後往前定位，供多個 list 由大到小交集 (leapfrog)
+//3.不是 thread-safe，由呼叫端加鎖
+public final class PostingList {
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[] ids = EMPTY;
+    private int size;
+
+    //1.新增 id (已存在時回傳 false)
+    public boolean add(int id) {
+        int index = size > 0 && ids[size - 1] < id ? -(size + 1) : Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            return false;
+        }
+        int insertAt = -(index + 1);
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(4, size + (size >> 1)));
+        }
+        System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        ids[insertAt] = id;
+        size++;
+        return true;
+    }
+
+    //2.移除 id (不存在時回傳 false)
+    public boolean remove(int id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    public boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int get(int index) {
+        return ids[index];
+    }
+
+    //3.在 [0, fromIndex] 中找最後一個 <= id 的位置，沒有時回傳 -1
+    public int floorIndex(int id, int fromIndex) {
+        if (fromIndex < 0) {
+            return -1;
+        }
+        if (ids[fromIndex] <= id) {
+            return fromIndex;
+        }
+        //往前以 1, 2, 4, ... 的間隔跳，找到 ids[low] <= id < ids[high] 的區間後再二分搜尋
+        int high = fromIndex;
+        int step = 1;
+        int low = high - 1;
+        while (low >= 0 && ids[low] > id) {
+            high = low;
+            step <<= 1;
+            low = high - step;
+        }
+        if (low < 0) {
+            if (ids[0] > id) {
+                return -1;
+            }
+            low = 0;
+        }
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (ids[middle] <= id) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    //4.釋放多配置的容量 (索引建立完成後呼叫)
+    public void trim() {
+        if (ids.length != size) {
+            ids = size == 0 ? EMPTY : Arrays.copyOf(ids, size);
+        }
+    }
+
+    //5.估計佔用的記憶體 (物件標頭 + 陣列)
+    public long memoryBytes() {
+        return 24 + 16 + 4L * ids.length;
+    }
+}
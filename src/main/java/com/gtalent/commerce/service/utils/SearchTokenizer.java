@@ -0,0 +1,72 @@
+package com.gtalent.commerce.service.utils;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+//搜尋索引共用的斷詞規則 (建立索引與查詢必須使用同一套規則)
+//1.一律轉成小寫
+//2.英文 / 數字：連續的字母或數字為一個詞
+//3.中文 (漢字)：沒有空白分隔 -> 連續漢字切成相鄰兩字一組 (bigram)，只有一個字時就是該字
+public final class SearchTokenizer {
+
+    private static final int SEPARATOR = 0;
+    private static final int WORD = 1;
+    private static final int HAN = 2;
+
+    private SearchTokenizer() {
+    }
+
+    public static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    //1.字串中所有長度為 n 的連續片段 (含符號)，供子字串比對
+    public static Set<String> grams(String text, int n) {
+        String normalized = normalize(text);
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + n <= normalized.length(); i++) {
+            grams.add(normalized.substring(i, i + n));
+        }
+        return grams;
+    }
+
+    //2.斷詞 (只處理前 maxLength 個字元)
+    public static Set<String> words(String text, int maxLength) {
+        String normalized = normalize(text);
+        int end = Math.min(normalized.length(), maxLength);
+        Set<String> words = new LinkedHashSet<>();
+        int start = -1;
+        boolean han = false;
+        for (int i = 0; i <= end; i++) {
+            int type = i < end ? type(normalized.charAt(i)) : SEPARATOR;
+            boolean currentHan = type == HAN;
+            if (start >= 0 && (type == SEPARATOR || currentHan != han)) {
+                addRun(words, normalized, start, i, han);
+                start = -1;
+            }
+            if (type != SEPARATOR && start < 0) {
+                start = i;
+                han = currentHan;
+            }
+        }
+        return words;
+    }
+
+    private static int type(char c) {
+        if (Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN) {
+            return HAN;
+        }
+        return Character.isLetterOrDigit(c) ? WORD : SEPARATOR;
+    }
+
+    private static void addRun(Set<String> words, String text, int start, int end, boolean han) {
+        if (!han || end - start == 1) {
+            words.add(text.substring(start, end));
+            return;
+        }
+        for (int i = start; i + 2 <= end; i++) {
+            words.add(text.substring(i, i + 2));
+        }
+    }
+}
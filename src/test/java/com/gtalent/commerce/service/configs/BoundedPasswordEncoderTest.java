@@ -0,0 +1,72 @@
+package com.gtalent.commerce.service.configs;
+
+import com.gtalent.commerce.service.exceptions.ServiceBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//確認密碼雜湊在固定大小的執行緒池執行，排隊已滿時立即拒絕
+class BoundedPasswordEncoderTest {
+
+    @Test
+    void delegatesToBCrypt() {
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 2, 4)) {
+            String hash = encoder.encode("Secret#123");
+
+            assertTrue(encoder.matches("Secret#123", hash));
+            assertFalse(encoder.matches("wrong", hash));
+        }
+    }
+
+    @Test
+    void rejectsImmediatelyWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slow = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(slow, 1, 1)) {
+            encoder.bindTo(registry);
+            CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("b"));
+            while (registry.get("password.hash.queue").gauge().value() < 1) {
+                Thread.onSpinWait();
+            }
+
+            //執行緒與排隊都已滿 -> 不等待，直接拒絕
+            assertThrows(ServiceBusyException.class, () -> encoder.matches("c", "c"));
+            assertEquals(1.0, registry.get("password.hash.rejected").functionCounter().count());
+
+            release.countDown();
+            assertEquals("a", running.get(5, TimeUnit.SECONDS));
+            assertEquals("b", queued.get(5, TimeUnit.SECONDS));
+            assertTrue(encoder.matches("c", "c"));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.gtalent.commerce.service.configs;
+
+import com.gtalent.commerce.service.dto.AuthPrincipal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//JWT 使用者快取：查詢期間被 invalidate() 時不可把查到的舊資料放進快取
+class JwtPrincipalCacheTest {
+
+    private static final String EMAIL = "ann@example.com";
+
+    private final JwtPrincipalCache cache = new JwtPrincipalCache(100, Duration.ofMinutes(5));
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void cachesLoadedPrincipal() {
+        assertEquals("USER", cache.get(EMAIL, this::load).orElseThrow().getRole());
+        assertEquals("USER", cache.get(EMAIL, this::load).orElseThrow().getRole());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void dropsLoadThatRacedWithInvalidate() {
+        //查詢進行中使用者被降級 / 刪除 (UserService.updateUser / deleteUserById)
+        Optional<AuthPrincipal> stale = cache.get(EMAIL, subject -> {
+            Optional<AuthPrincipal> loaded = load(subject);
+            cache.invalidate(subject);
+            return loaded;
+        });
+        assertEquals("USER", stale.orElseThrow().getRole());  //這次請求仍用查到的結果
+        assertEquals(0, cache.size());
+
+        cache.get(EMAIL, this::load);  //下一次請求重新查詢
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void reportsHitsAndMissesThroughCacheMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        cache.get(EMAIL, this::load);
+        cache.get(EMAIL, this::load);
+
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "jwt.principal").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "jwt.principal").tag("result", "miss")
+                .functionCounter().count());
+        assertEquals(1.0, registry.get("cache.size").tag("cache", "jwt.principal").gauge().value());
+    }
+
+    private Optional<AuthPrincipal> load(String subject) {
+        loads.incrementAndGet();
+        return Optional.of(new AuthPrincipal(1, subject, "USER"));
+    }
+}
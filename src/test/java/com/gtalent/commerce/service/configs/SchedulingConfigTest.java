@@ -0,0 +1,34 @@
+package com.gtalent.commerce.service.configs;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.task.TaskSchedulingAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.ApplicationContext;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//排程執行緒池：長時間的索引重建不可佔住唯一的排程執行緒
+class SchedulingConfigTest {
+
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(TaskSchedulingAutoConfiguration.class))
+            .withUserConfiguration(SchedulingConfig.class, Scheduling.class);
+
+    @Test
+    void usesMoreThanOneSchedulingThread() {
+        runner.run(context -> assertEquals(4, corePoolSize(context)));
+        runner.withPropertyValues("spring.task.scheduling.pool.size=2")
+                .run(context -> assertEquals(2, corePoolSize(context)));
+    }
+
+    private static int corePoolSize(ApplicationContext context) {
+        return context.getBean(ThreadPoolTaskScheduler.class).getScheduledThreadPoolExecutor().getCorePoolSize();
+    }
+
+    @EnableScheduling
+    static class Scheduling {
+    }
+}
@@ -0,0 +1,107 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.responses.CategoryResponse;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//確認分類列表的 SQL 次數固定，不會隨分類數成長 (分類 → 產品 N+1 回歸測試)
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({CategoryService.class, ReferenceDataRegistry.class})
+class CategoryServiceQueryCountTest {
+
+    private static final int CATEGORIES = 200;
+    private static final int DELETED = 10;
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private CategoryService categoryService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        for (int c = 0; c < CATEGORIES + DELETED; c++) {
+            Category category = new Category();
+            category.setName("category-" + c);
+            if (c >= CATEGORIES) {
+                category.setDeletedAt(LocalDateTime.now());  //軟刪除的分類不可出現在結果中
+            }
+            entityManager.persist(category);
+            //第 c 個分類有 c % 5 筆產品 (包含沒有產品的分類)
+            for (int i = 0; i < c % 5; i++) {
+                Product product = new Product();
+                product.setReference("P-" + c + "-" + i);
+                product.setCategory(category);
+                product.setWidth(BigDecimal.ONE);
+                product.setHeight(BigDecimal.ONE);
+                product.setDepth(BigDecimal.ONE);
+                product.setPrice(BigDecimal.TEN);
+                entityManager.persist(product);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void categoriesWithProductsUseTwoStatements() {
+        List<CategoryResponse> categories = categoryService.getAllCategories(null, false);
+
+        assertEquals(CATEGORIES, categories.size());
+        for (int c = 0; c < CATEGORIES; c++) {
+            assertEquals(c % 5, categories.get(c).getProducts().size());
+        }
+        assertEquals("P-4-0", categories.get(4).getProducts().get(0).getReference());
+        //分類 + 產品 (單次 IN)
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getCollectionFetchCount());
+    }
+
+    @Test
+    void productLimitCapsEachCategory() {
+        List<CategoryResponse> categories = categoryService.getAllCategories(2, false);
+
+        assertEquals(CATEGORIES, categories.size());
+        for (int c = 0; c < CATEGORIES; c++) {
+            assertEquals(Math.min(c % 5, 2), categories.get(c).getProducts().size());
+        }
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void summaryUsesSingleGroupBy() {
+        List<CategoryResponse> categories = categoryService.getAllCategories(null, true);
+
+        assertEquals(CATEGORIES, categories.size());
+        for (int c = 0; c < CATEGORIES; c++) {
+            assertEquals(c % 5, categories.get(c).getProductCount());
+            assertNull(categories.get(c).getProducts());
+        }
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void negativeLimitIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> categoryService.getAllCategories(-1, false));
+    }
+}
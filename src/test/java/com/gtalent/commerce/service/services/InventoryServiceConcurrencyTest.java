@@ -0,0 +1,133 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.repositories.CategoryRepository;
+import com.gtalent.commerce.service.repositories.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//多個交易同時搶購同一熱門商品，確認不會超賣
+@DataJpaTest
+@Import({InventoryService.class, ProductCatalogCache.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)  //每個執行緒各自提交交易
+class InventoryServiceConcurrencyTest {
+
+    private static final int INITIAL_STOCK = 50;
+    private static final int CHECKOUTS = 300;
+
+    @Autowired
+    private InventoryService inventoryService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Product hotProduct;
+    private Product otherProduct;
+
+    @BeforeEach
+    void setUp() {
+        Category category = new Category();
+        category.setName("hot");
+        categoryRepository.save(category);
+        hotProduct = productRepository.save(newProduct(category, "HOT", INITIAL_STOCK));
+        otherProduct = productRepository.save(newProduct(category, "OTHER", 1_000_000));
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentCheckoutsNeverOversell() throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < CHECKOUTS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        //購物車內另有一項商品 -> 驗證整筆回滾且固定的更新順序不會死結
+                        transaction.executeWithoutResult(status -> inventoryService.reserve(
+                                Map.of(otherProduct.getId(), 1, hotProduct.getId(), 1)));
+                        succeeded.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Product hot = productRepository.findById(hotProduct.getId()).orElseThrow();
+        Product other = productRepository.findById(otherProduct.getId()).orElseThrow();
+        assertEquals(INITIAL_STOCK, succeeded.get());
+        assertEquals(CHECKOUTS - INITIAL_STOCK, rejected.get());
+        assertEquals(0, hot.getStock());
+        assertEquals(INITIAL_STOCK, hot.getSales());
+        //被拒絕的購物車不可留下另一項商品的扣庫存
+        assertEquals(1_000_000 - INITIAL_STOCK, other.getStock());
+    }
+
+    @Test
+    void releaseRestoresStockAndSales() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> inventoryService.reserve(Map.of(hotProduct.getId(), 5)));
+        transaction.executeWithoutResult(status -> inventoryService.release(Map.of(hotProduct.getId(), 5)));
+
+        Product hot = productRepository.findById(hotProduct.getId()).orElseThrow();
+        assertEquals(INITIAL_STOCK, hot.getStock());
+        assertEquals(0, hot.getSales());
+        assertThrows(IllegalArgumentException.class, () -> transaction.executeWithoutResult(
+                status -> inventoryService.reserve(Map.of(hotProduct.getId(), INITIAL_STOCK + 1))));
+    }
+
+    private Product newProduct(Category category, String reference, int stock) {
+        Product product = new Product();
+        product.setReference(reference);
+        product.setCategory(category);
+        product.setWidth(BigDecimal.ONE);
+        product.setHeight(BigDecimal.ONE);
+        product.setDepth(BigDecimal.ONE);
+        product.setPrice(BigDecimal.TEN);
+        product.setStock(stock);
+        return product;
+    }
+}
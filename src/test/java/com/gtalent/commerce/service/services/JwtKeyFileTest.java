@@ -0,0 +1,109 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.models.User;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//JWT 金鑰檔：active 的 kid 變更時輪替金鑰，輪替前簽發的 token 仍可驗證 (包含重啟後)
+class JwtKeyFileTest {
+
+    private static final String SECRET = "dGlueXNhbWVoYW5kc29tZXlvdW5nY2FsbHJlY29yZGdpZnRpbnZlbnRlZHdpdGhvdXQ=";
+    private static final String NEXT_SECRET = "bmV4dHNlY3JldG5leHRzZWNyZXRuZXh0c2VjcmV0bmV4dHNlY3JldG5leHRzZWNyZXQ=";
+    private static final String THIRD_SECRET = "dGhpcmRzZWNyZXR0aGlyZHNlY3JldHRoaXJkc2VjcmV0dGhpcmRzZWNyZXR0aGlyZA==";
+    private static final long EIGHT_HOURS = 28_800_000;
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    void rotatesWhenActiveKeyIdChanges() throws IOException {
+        JwtService jwtService = new JwtService(SECRET, "k1");
+        Path file = dir.resolve("jwt-keys.properties");
+        write(file, "active=k1\nkeys.k1=" + SECRET + "\n", 1);
+        JwtKeyFile keyFile = new JwtKeyFile(jwtService, file.toString());
+        assertFalse(keyFile.reload());  //與目前金鑰相同
+        String before = jwtService.generateToken(user());
+
+        write(file, "active=k2\nkeys.k1=" + SECRET + "\nkeys.k2=" + NEXT_SECRET + "\n", 2);
+        assertTrue(keyFile.reload());
+        assertEquals("k2", jwtService.activeKeyId());
+        assertFalse(keyFile.reload());  //檔案沒有變更
+
+        assertEquals("ann@example.com", jwtService.getEmailFromToken(before));
+        assertEquals("ann@example.com", jwtService.getEmailFromToken(jwtService.generateToken(user())));
+    }
+
+    @Test
+    void restartedInstanceAcceptsTokensOfEveryListedKey() throws IOException {
+        JwtService first = new JwtService(SECRET, "k1");
+        String signedWithK1 = first.generateToken(user());
+        Path file = dir.resolve("jwt-keys.properties");
+        write(file, "active=k2\nkeys.k1=" + SECRET + "\nkeys.k2=" + NEXT_SECRET + "\n", 1);
+        new JwtKeyFile(first, file.toString()).reload();
+        String signedWithK2 = first.generateToken(user());
+
+        //重啟 (或另一台主機)：啟動設定只有另一把金鑰，k1 從未是它的 active 金鑰
+        JwtService restarted = new JwtService(THIRD_SECRET, "default");
+        assertTrue(new JwtKeyFile(restarted, file.toString()).reload());
+        assertEquals("k2", restarted.activeKeyId());
+        assertEquals("ann@example.com", restarted.getEmailFromToken(signedWithK1));
+        assertEquals("ann@example.com", restarted.getEmailFromToken(signedWithK2));
+    }
+
+    @Test
+    void rejectsChangedSecretForKnownKeyId() throws IOException {
+        JwtService jwtService = new JwtService(SECRET, "k1");
+        String before = jwtService.generateToken(user());
+        Path file = dir.resolve("jwt-keys.properties");
+        write(file, "active=k2\nkeys.k1=" + THIRD_SECRET + "\nkeys.k2=" + NEXT_SECRET + "\n", 1);
+
+        assertThrows(IllegalArgumentException.class, () -> new JwtKeyFile(jwtService, file.toString()).reload());
+        assertEquals("k1", jwtService.activeKeyId());
+        assertEquals("ann@example.com", jwtService.getEmailFromToken(before));
+    }
+
+    @Test
+    void keepsRemovedKeysUntilTheirTokensExpire() {
+        JwtService jwtService = new JwtService(SECRET, "default");
+        jwtService.loadKeys("k1", Map.of("k1", NEXT_SECRET), 0);
+        String signedWithK1 = jwtService.generateToken(user());
+
+        //k1 從金鑰檔移除：之前簽發的 token 在有效期間內仍可驗證
+        jwtService.loadKeys("k2", Map.of("k2", THIRD_SECRET), 1_000);
+        jwtService.loadKeys("k2", Map.of("k2", THIRD_SECRET), 1_000 + EIGHT_HOURS);
+        assertEquals("ann@example.com", jwtService.getEmailFromToken(signedWithK1));
+
+        jwtService.loadKeys("k2", Map.of("k2", THIRD_SECRET), 1_001 + EIGHT_HOURS);
+        assertThrows(SignatureException.class, () -> jwtService.getEmailFromToken(signedWithK1));
+    }
+
+    @Test
+    void doesNothingWithoutKeyFile() {
+        JwtService jwtService = new JwtService(SECRET, "k1");
+        assertFalse(new JwtKeyFile(jwtService, "").reload());
+        assertEquals("k1", jwtService.activeKeyId());
+    }
+
+    private static void write(Path file, String content, long seconds) throws IOException {
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(seconds * 1000));
+    }
+
+    private static User user() {
+        User user = new User();
+        user.setEmail("ann@example.com");
+        return user;
+    }
+}
@@ -0,0 +1,179 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.enums.OrderStatus;
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Order;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.models.User;
+import com.gtalent.commerce.service.responses.CursorPageResponse;
+import com.gtalent.commerce.service.responses.OrderResponse;
+import com.gtalent.commerce.service.responses.ProductListResponse;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//確認 Keyset 分頁逐頁走完的結果與 (建立時間, id) 排序一致，且不帶 includeTotal 時不執行 COUNT
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({ProductService.class, ProductSearchIndex.class, ProductSuggestIndex.class, OrderService.class,
+        OrderItemService.class, SnowflakeOrderReferenceGenerator.class, InventoryService.class, ProductCatalogCache.class,
+        ReferenceDataRegistry.class})
+class KeysetPaginationTest {
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private OrderService orderService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        Category category = new Category();
+        category.setName("category");
+        entityManager.persist(category);
+
+        for (int i = 0; i < 25; i++) {
+            Product product = new Product();
+            product.setReference("P-" + i);
+            product.setCategory(category);
+            product.setWidth(BigDecimal.ONE);
+            product.setHeight(BigDecimal.ONE);
+            product.setDepth(BigDecimal.ONE);
+            product.setPrice(BigDecimal.TEN);
+            entityManager.persist(product);
+        }
+
+        User user = new User();
+        user.setFirstName("first");
+        user.setLastName("last");
+        user.setEmail("keyset@example.com");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        user.setAddress("address");
+        user.setCity("city");
+        user.setState("state");
+        user.setZipcode("100");
+        user.setPassword("secret");
+        entityManager.persist(user);
+        for (int o = 0; o < 30; o++) {
+            Order order = new Order();
+            order.setUser(user);
+            order.setStatus(o % 2 == 0 ? OrderStatus.ORDERED : OrderStatus.DELIVERED);
+            order.setShippingAddress("address");
+            order.setTotalAmount(BigDecimal.TEN);
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+
+        //同一時間建立多筆資料 -> 需要靠 id 區分先後
+        LocalDateTime tie = LocalDateTime.of(2025, 1, 1, 12, 0);
+        entityManager.createQuery("update Product p set p.createdAt = :tie where mod(p.id, 3) = 0")
+                .setParameter("tie", tie).executeUpdate();
+        entityManager.createQuery("update Order o set o.createdAt = :tie where mod(o.id, 2) = 0")
+                .setParameter("tie", tie).executeUpdate();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void productCursorWalkMatchesCreatedAtIdOrder() {
+        List<Integer> expected = entityManager.createQuery("select p from Product p", Product.class)
+                .getResultList().stream()
+                .sorted(Comparator.comparing(Product::getCreatedAt).thenComparing(Product::getId).reversed())
+                .map(Product::getId)
+                .toList();
+        entityManager.clear();
+        statistics.clear();
+
+        List<Integer> walked = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPageResponse<ProductListResponse> page =
+                    productService.getProductsAfter("", null, null, null, cursor, 7, false);
+            page.getContent().forEach(product -> {
+                walked.add(product.getId());
+                assertEquals("category", product.getCategory().getName());  //分類已一起載入，不會額外查詢
+            });
+            assertNull(page.getTotalElements());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(expected, walked);
+        assertEquals(4, pages);
+        //每頁只有一次查詢 (沒有 COUNT、沒有逐筆載入分類)
+        assertEquals(pages, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void includeTotalRunsCountQuery() {
+        CursorPageResponse<ProductListResponse> page =
+                productService.getProductsAfter("", null, null, null, null, 10, true);
+
+        assertEquals(10, page.getContent().size());
+        assertEquals(25L, page.getTotalElements());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void orderCursorWalkKeepsStatusFilterAndBoundedStatements() {
+        List<Integer> walked = new ArrayList<>();
+        String cursor = null;
+        do {
+            statistics.clear();
+            CursorPageResponse<OrderResponse> page = orderService.getOrdersAfter(OrderStatus.ORDERED, cursor, 4, false);
+            page.getContent().forEach(order -> {
+                assertEquals(OrderStatus.ORDERED, order.getStatus());
+                walked.add(order.getId());
+            });
+            //訂單/訂購者 + 明細/商品
+            assertEquals(page.getContent().isEmpty() ? 1 : 2, statistics.getPrepareStatementCount());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(15, walked.size());
+        assertEquals(15, walked.stream().distinct().count());
+    }
+
+    @Test
+    void lastPageHasNoNextCursor() {
+        CursorPageResponse<ProductListResponse> page =
+                productService.getProductsAfter("", null, null, null, null, 25, false);
+
+        assertEquals(25, page.getContent().size());
+        assertFalse(page.isHasNext());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void invalidCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> productService.getProductsAfter("", null, null, null, "not-a-cursor", 10, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> productService.getProductsAfter("", null, null, null, null, 0, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> productService.getProductsAfter("", null, null, null, null, 1_000_000, false));
+    }
+}
@@ -0,0 +1,66 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.responses.CursorPageResponse;
+import com.gtalent.commerce.service.responses.ProductListResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//功能上線前的舊資料 (created_at / first_seen 為 NULL) 回填後，游標分頁可以走到每一筆
+@DataJpaTest
+@Import({KeysetTimestampBackfill.class, ProductService.class, ProductSearchIndex.class, ProductSuggestIndex.class,
+        ProductCatalogCache.class, ReferenceDataRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)  //H2 的 ALTER TABLE 會直接提交 -> 測試不在交易內執行
+class KeysetTimestampBackfillTest {
+
+    @Autowired
+    private KeysetTimestampBackfill backfill;
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void legacyRowsWithoutTimestampsAreBackfilledAndReachable() {
+        //舊資料庫的欄位仍允許 NULL (ddl-auto=update 不會加上 NOT NULL)
+        jdbcTemplate.execute("ALTER TABLE products ALTER COLUMN created_at SET NULL");
+        jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN first_seen SET NULL");
+        jdbcTemplate.update("INSERT INTO categories (id, name) VALUES (1, 'category')");
+        for (int i = 1; i <= 5; i++) {
+            jdbcTemplate.update("INSERT INTO products (id, reference, category_id, width, height, depth, price, stock, "
+                    + "sales, created_at) VALUES (?, ?, 1, 1, 1, 1, 10, 0, 0, ?)",
+                    i, "P-" + i, i <= 2 ? null : Timestamp.valueOf("2024-01-0" + i + " 00:00:00"));
+        }
+        jdbcTemplate.update("INSERT INTO users (id, first_name, last_name, email, birthday, address, city, state, "
+                + "zipcode, password, has_newsletter) VALUES (1, 'first', 'last', 'a@example.com', DATE '2000-01-01', "
+                + "'address', 'city', 'state', '100', 'secret', FALSE)");
+
+        assertEquals(3, backfill.backfill());
+        assertEquals(0, backfill.backfill());  //已回填 -> 不再更新
+        assertEquals(KeysetTimestampBackfill.UNKNOWN_CREATED_AT, jdbcTemplate.queryForObject(
+                "SELECT first_seen FROM users WHERE id = 1", LocalDateTime.class));
+
+        //建立時間不明的產品排在最後
+        List<Integer> walked = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageResponse<ProductListResponse> page =
+                    productService.getProductsAfter("", null, null, null, cursor, 2, false);
+            page.getContent().forEach(product -> walked.add(product.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(List.of(5, 4, 3, 2, 1), walked);
+    }
+}
@@ -0,0 +1,123 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.models.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+//確認登入時間會合併後批次寫入 last_seen，且不會更新 updated_at
+@DataJpaTest
+@Import(LoginTimestampBuffer.class)
+class LoginTimestampBufferTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 9, 0);
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private LoginTimestampBuffer buffer;
+
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setUp() {
+        alice = persistUser("alice@example.com");
+        bob = persistUser("bob@example.com");
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void coalescesLoginsPerUserAndFlushesLatest() {
+        LocalDateTime updatedAt = updatedAt(alice);
+        buffer.record(alice.getId(), T0.plusMinutes(5));
+        buffer.record(alice.getId(), T0.plusMinutes(9));
+        buffer.record(alice.getId(), T0.plusMinutes(1));  //較晚到達的舊時間不覆蓋
+        buffer.record(bob.getId(), T0);
+
+        assertEquals(2, buffer.size());
+        assertEquals(2, buffer.flush());
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.flush());
+
+        assertEquals(T0.plusMinutes(9), lastSeen(alice));
+        assertEquals(T0, lastSeen(bob));
+        assertEquals(updatedAt, updatedAt(alice));
+    }
+
+    @Test
+    void olderFlushDoesNotOverwriteNewerLogin() {
+        buffer.record(alice.getId(), T0.plusHours(1));
+        buffer.flush();
+        buffer.record(alice.getId(), T0);
+        buffer.flush();
+
+        assertEquals(T0.plusHours(1), lastSeen(alice));
+    }
+
+    @Test
+    void savingUserDoesNotOverwriteBufferedLoginTime() {
+        buffer.record(alice.getId(), T0);
+        buffer.flush();
+
+        User loaded = entityManager.find(User.class, alice.getId());
+        loaded.setCity("other");
+        loaded.setUpdateLoginTime(null);
+        entityManager.flush();
+
+        assertEquals(T0, lastSeen(alice));
+    }
+
+    @Test
+    void exposesBufferDepthAndFlushLatency() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        buffer.bindTo(registry);
+        double flushedBefore = registry.get("user.login.buffer.flushed").functionCounter().count();  //其他測試已寫入的筆數
+        buffer.record(alice.getId(), T0);
+        buffer.record(bob.getId(), T0);
+
+        assertEquals(2.0, registry.get("user.login.buffer.size").gauge().value());
+        buffer.flush();
+        assertEquals(0.0, registry.get("user.login.buffer.size").gauge().value());
+        assertEquals(1, registry.get("user.login.buffer.flush").timer().count());
+        assertEquals(flushedBefore + 2, registry.get("user.login.buffer.flushed").functionCounter().count());
+    }
+
+    private User persistUser(String email) {
+        User user = new User();
+        user.setFirstName("first");
+        user.setLastName("last");
+        user.setEmail(email);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        user.setAddress("address");
+        user.setCity("city");
+        user.setState("state");
+        user.setZipcode("100");
+        user.setPassword("secret");
+        entityManager.persist(user);
+        assertNull(user.getUpdateLoginTime());
+        return user;
+    }
+
+    private LocalDateTime lastSeen(User user) {
+        return jdbcTemplate.queryForObject("SELECT last_seen FROM users WHERE id = ?", LocalDateTime.class, user.getId());
+    }
+
+    private LocalDateTime updatedAt(User user) {
+        return jdbcTemplate.queryForObject("SELECT updated_at FROM users WHERE id = ?", LocalDateTime.class, user.getId());
+    }
+}
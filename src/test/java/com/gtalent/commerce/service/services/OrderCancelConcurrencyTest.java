@@ -0,0 +1,135 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.JpaBatchConfig;
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.enums.OrderStatus;
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.models.User;
+import com.gtalent.commerce.service.repositories.CategoryRepository;
+import com.gtalent.commerce.service.repositories.ProductRepository;
+import com.gtalent.commerce.service.repositories.UserRepository;
+import com.gtalent.commerce.service.requests.OrderItemRequest;
+import com.gtalent.commerce.service.requests.OrderRequest;
+import com.gtalent.commerce.service.requests.PatchOrderRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//同一張訂單同時被取消多次，預留的庫存只可以釋放一次
+@DataJpaTest
+@Import({OrderService.class, OrderItemService.class, SnowflakeOrderReferenceGenerator.class, JpaBatchConfig.class,
+        InventoryService.class, ProductCatalogCache.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)  //每個執行緒各自提交交易
+class OrderCancelConcurrencyTest {
+
+    private static final int INITIAL_STOCK = 100;
+    private static final int ORDERS = 20;
+    private static final int CANCELS_PER_ORDER = 4;
+
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Product product;
+    private User customer;
+
+    @BeforeEach
+    void setUp() {
+        Category category = new Category();
+        category.setName("category");
+        categoryRepository.save(category);
+        product = new Product();
+        product.setReference("P-1");
+        product.setCategory(category);
+        product.setWidth(BigDecimal.ONE);
+        product.setHeight(BigDecimal.ONE);
+        product.setDepth(BigDecimal.ONE);
+        product.setPrice(BigDecimal.TEN);
+        product.setStock(INITIAL_STOCK);
+        productRepository.save(product);
+        customer = new User();
+        customer.setFirstName("ann");
+        customer.setLastName("test");
+        customer.setEmail("ann@example.com");
+        customer.setPassword("secret");
+        customer.setBirthday(LocalDate.of(2000, 1, 1));
+        customer.setAddress("address");
+        customer.setCity("city");
+        customer.setState("state");
+        customer.setZipcode("100");
+        userRepository.save(customer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM orders_items");
+        jdbcTemplate.update("DELETE FROM orders");
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+        categoryRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentCancelsReleaseStockOnce() throws Exception {
+        List<Integer> orderIds = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            orderIds.add(orderService.createOrder(new OrderRequest(customer.getId(), "address",
+                    List.of(new OrderItemRequest(product.getId(), 2)))).getId());
+        }
+        assertEquals(INITIAL_STOCK - 2 * ORDERS, productRepository.findById(product.getId()).orElseThrow().getStock());
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int orderId : orderIds) {
+                for (int c = 0; c < CANCELS_PER_ORDER; c++) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        try {
+                            orderService.patchOrder(orderId, new PatchOrderRequest(null, OrderStatus.CANCELLED, null));
+                        } catch (IllegalArgumentException e) {
+                            //另一個取消已提交 -> CANCELLED 不可再轉為 CANCELLED
+                        }
+                        return null;
+                    }));
+                }
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Product released = productRepository.findById(product.getId()).orElseThrow();
+        assertEquals(INITIAL_STOCK, released.getStock());
+        assertEquals(0, released.getSales());
+    }
+}
@@ -0,0 +1,188 @@
+package com.gtalent.commerce.service.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gtalent.commerce.service.configs.JpaBatchConfig;
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.enums.ExportFormat;
+import com.gtalent.commerce.service.enums.OrderStatus;
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Order;
+import com.gtalent.commerce.service.models.OrderItem;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.models.User;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//確認匯出內容、篩選條件，以及匯出過程中 persistence context 不會隨訂單數成長
+@DataJpaTest
+@Import({OrderExportService.class, OrderService.class, OrderItemService.class, SnowflakeOrderReferenceGenerator.class,
+        JpaBatchConfig.class, InventoryService.class, ProductCatalogCache.class, JacksonAutoConfiguration.class})
+class OrderExportServiceTest {
+
+    private static final int ORDERS = 120;
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private OrderExportService orderExportService;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        Category category = new Category();
+        category.setName("category");
+        entityManager.persist(category);
+
+        Product product = new Product();
+        product.setReference("P-1");
+        product.setCategory(category);
+        product.setWidth(new BigDecimal("1.00"));
+        product.setHeight(new BigDecimal("2.00"));
+        product.setDepth(new BigDecimal("3.00"));
+        product.setPrice(new BigDecimal("10.00"));
+        product.setStock(100);
+        entityManager.persist(product);
+
+        User user = new User();
+        user.setFirstName("first");
+        user.setLastName("last");
+        user.setEmail("user@example.com");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        user.setAddress("No. 1, \"Main\" Rd");
+        user.setCity("city");
+        user.setState("state");
+        user.setZipcode("100");
+        user.setPassword("secret");
+        entityManager.persist(user);
+
+        List<Order> orders = new ArrayList<>();
+        //偶數筆為 ORDERED、奇數筆為 DELIVERED；下單日期為 2024-01-01 起每天一筆
+        for (int o = 0; o < ORDERS; o++) {
+            Order order = new Order();
+            order.setUser(user);
+            order.setStatus(o % 2 == 0 ? OrderStatus.ORDERED : OrderStatus.DELIVERED);
+            order.setShippingAddress("address");
+            order.setTotalAmount(new BigDecimal("20.00"));
+            for (int i = 0; i < 2; i++) {
+                OrderItem item = new OrderItem();
+                item.setOrder(order);
+                item.setProduct(product);
+                item.setProductName(product.getReference());
+                item.setQuantity(1);
+                item.setPrice(product.getPrice());
+                item.setDate(LocalDate.now());
+                order.getItems().add(item);
+            }
+            entityManager.persist(order);
+            orders.add(order);
+        }
+        entityManager.flush();
+        //created_at 由 @CreationTimestamp 寫入且不可更新，這裡以 UPDATE 改成測試用的日期
+        for (int o = 0; o < ORDERS; o++) {
+            entityManager.createQuery("update Order o set o.createdAt = :createdAt where o.id = :id")
+                    .setParameter("createdAt", LocalDateTime.of(2024, 1, 1, 12, 0).plusDays(o))
+                    .setParameter("id", orders.get(o).getId())
+                    .executeUpdate();
+        }
+        entityManager.clear();
+    }
+
+    @Test
+    void exportsOneJsonLinePerOrderWithItems() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        int count = orderExportService.exportOrders(null, null, null, ExportFormat.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(ORDERS, count);
+        assertEquals(ORDERS, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals(2, first.get("items").size());
+        assertEquals(0, new BigDecimal("20.00").compareTo(first.get("sum").decimalValue()));
+        assertEquals(0, new BigDecimal("168.00").compareTo(first.get("total").decimalValue()));
+    }
+
+    @Test
+    void exportsCsvFilteredByStatusAndInclusiveDateRange() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        int count = orderExportService.exportOrders(OrderStatus.ORDERED,
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 10), ExportFormat.CSV, out);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        //1/1 ~ 1/10 共 10 天，其中 ORDERED 為 1/1、1/3、1/5、1/7、1/9
+        assertEquals(5, count);
+        assertEquals(6, lines.size());
+        assertTrue(lines.get(0).startsWith("id,order_reference,created_at"));
+        assertTrue(lines.get(1).contains(",ORDERED,false,first last,\"No. 1, \"\"Main\"\" Rd\",2,20.00,"),
+                lines.get(1));
+    }
+
+    @Test
+    void exportsOrdersWithoutItems() throws Exception {
+        User user = entityManager.createQuery("select u from User u", User.class).getSingleResult();
+        Order empty = new Order();
+        empty.setUser(user);
+        empty.setStatus(OrderStatus.ORDERED);
+        empty.setShippingAddress("address");
+        empty.setTotalAmount(BigDecimal.ZERO);
+        entityManager.persist(empty);
+        entityManager.flush();
+        entityManager.clear();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(ORDERS + 1, orderExportService.exportOrders(null, null, null, ExportFormat.NDJSON, out));
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        JsonNode last = objectMapper.readTree(lines[lines.length - 1]);
+        assertEquals(empty.getId(), last.get("id").asInt());
+        assertEquals(0, last.get("items").size());
+    }
+
+    @Test
+    void persistenceContextStaysSmallWhileStreaming() {
+        Session session = entityManager.unwrap(Session.class);
+        int[] maxManaged = {0};
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) {
+                maxManaged[0] = Math.max(maxManaged[0], session.getStatistics().getEntityCount());
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                write(0);
+            }
+        };
+
+        assertEquals(ORDERS, orderExportService.exportOrders(null, null, null, ExportFormat.NDJSON, out));
+        //每讀一筆明細就清空 -> 最多只有目前這筆明細與其訂單、訂購者、商品
+        assertTrue(maxManaged[0] <= 4, "managed entities: " + maxManaged[0]);
+    }
+
+    @Test
+    void rejectsReversedDateRange() {
+        assertThrows(IllegalArgumentException.class, () -> orderExportService.exportOrders(null,
+                LocalDate.of(2024, 2, 1), LocalDate.of(2024, 1, 1), ExportFormat.CSV, new ByteArrayOutputStream()));
+    }
+}
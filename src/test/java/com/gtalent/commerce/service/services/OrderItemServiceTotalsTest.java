@@ -0,0 +1,136 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.models.Order;
+import com.gtalent.commerce.service.responses.OrderItemResponse;
+import com.gtalent.commerce.service.responses.OrderResponse;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//long (分) 計算與原本 BigDecimal 計算的結果必須完全相同 (含 scale)
+class OrderItemServiceTotalsTest {
+
+    private static final int CASES = 20_000;
+
+    private final OrderItemService orderItemService = new OrderItemService();
+
+    @Test
+    void fastPathMatchesBigDecimalForRandomOrders() {
+        Random random = new Random(20240101L);  //固定 seed -> 失敗時可重現
+        for (int i = 0; i < CASES; i++) {
+            List<OrderItemResponse> items = randomItems(random);
+            assertSameTotals(items, "case " + i);
+        }
+    }
+
+    @Test
+    void roundingBoundariesMatch() {
+        //體積 * 10 剛好落在 0.005 (四捨五入進位) 與 0.0049 (捨去)
+        assertSameTotals(List.of(item("0.01", 1, "0.05", "0.01", "0.01")), "delivery half");
+        assertSameTotals(List.of(item("0.01", 1, "0.07", "0.07", "0.01")), "delivery below half");
+        //稅金 (sum + delivery) * 0.2 剛好為 x.xx5
+        assertSameTotals(List.of(item("0.25", 1, null, null, null)), "tax half");
+        assertSameTotals(List.of(item("-0.25", 1, null, null, null)), "negative tax half");
+        assertSameTotals(List.of(), "empty order");
+    }
+
+    @Test
+    void unsupportedScaleAndOverflowFallBackToBigDecimal() {
+        assertSameTotals(List.of(item("19.999", 3, "1.25", "1.5", "2")), "price scale 3");
+        assertSameTotals(List.of(item("1E+3", 2, "1", "1", "1")), "negative scale");
+        assertSameTotals(List.of(item("92233720368547758.07", 2, "1", "1", "1")), "price overflow");
+        assertSameTotals(List.of(item("1.00", 1000, "9999.99", "9999.99", "9999.99")), "volume overflow");
+    }
+
+    @Test
+    void orderTotalMatchesBigDecimal() {
+        Random random = new Random(7L);
+        for (int i = 0; i < CASES; i++) {
+            Order order = new Order();
+            order.setTotalAmount(randomAmount(random));
+            order.setDeliveryFee(randomAmount(random));
+            order.setTaxAmount(randomAmount(random));
+            BigDecimal expected = order.getTotalAmount().add(order.getDeliveryFee()).add(order.getTaxAmount());
+            assertEquals(expected, order.calculateTotal(), "case " + i);
+        }
+    }
+
+    private void assertSameTotals(List<OrderItemResponse> items, String message) {
+        OrderResponse fast = response(items);
+        OrderResponse exact = response(items);
+        orderItemService.calculateTotals(fast);
+        orderItemService.calculateTotalsExact(exact);
+
+        //BigDecimal.equals 會比較 scale -> 確保 JSON 輸出也完全相同
+        assertEquals(exact.getSum(), fast.getSum(), message + " sum");
+        assertEquals(exact.getDelivery(), fast.getDelivery(), message + " delivery");
+        assertEquals(exact.getTax(), fast.getTax(), message + " tax");
+        assertEquals(exact.getTotal(), fast.getTotal(), message + " total");
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(exact.getItems().get(i).getTotal(), fast.getItems().get(i).getTotal(), message + " item " + i);
+        }
+    }
+
+    private static OrderResponse response(List<OrderItemResponse> items) {
+        List<OrderItemResponse> copies = new ArrayList<>();
+        for (OrderItemResponse item : items) {
+            OrderItemResponse copy = new OrderItemResponse();
+            copy.setUnitPrice(item.getUnitPrice());
+            copy.setQuantity(item.getQuantity());
+            copy.setWidth(item.getWidth());
+            copy.setHeight(item.getHeight());
+            copy.setDepth(item.getDepth());
+            copies.add(copy);
+        }
+        OrderResponse response = new OrderResponse();
+        response.setItems(copies);
+        return response;
+    }
+
+    private static List<OrderItemResponse> randomItems(Random random) {
+        List<OrderItemResponse> items = new ArrayList<>();
+        int count = random.nextInt(12);
+        for (int i = 0; i < count; i++) {
+            OrderItemResponse item = new OrderItemResponse();
+            item.setUnitPrice(random.nextInt(20) == 0 ? null : randomAmount(random));
+            item.setQuantity(random.nextInt(50) + 1);
+            if (random.nextInt(10) > 0) {
+                item.setWidth(randomDimension(random));
+                item.setHeight(randomDimension(random));
+                item.setDepth(randomDimension(random));
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    //小數 0 ~ 2 位，範圍涵蓋 DECIMAL(10,2)
+    private static BigDecimal randomAmount(Random random) {
+        int scale = random.nextInt(3);
+        long bound = scale == 2 ? 100_000_000_00L : scale == 1 ? 100_000_000_0L : 100_000_000L;
+        return BigDecimal.valueOf((long) (random.nextDouble() * bound), scale);
+    }
+
+    //小數 0 ~ 2 位，大多在 200 以內 (走 long 計算)，少數涵蓋 DECIMAL(6,2) 上限 (溢位後改用 BigDecimal)
+    private static BigDecimal randomDimension(Random random) {
+        int scale = random.nextInt(3);
+        long max = random.nextInt(50) == 0 ? 10_000L : 200L;
+        long bound = max * (scale == 2 ? 100L : scale == 1 ? 10L : 1L);
+        return BigDecimal.valueOf((long) (random.nextDouble() * bound), scale);
+    }
+
+    private static OrderItemResponse item(String price, int quantity, String width, String height, String depth) {
+        OrderItemResponse item = new OrderItemResponse();
+        item.setUnitPrice(new BigDecimal(price));
+        item.setQuantity(quantity);
+        item.setWidth(width == null ? null : new BigDecimal(width));
+        item.setHeight(height == null ? null : new BigDecimal(height));
+        item.setDepth(depth == null ? null : new BigDecimal(depth));
+        return item;
+    }
+}
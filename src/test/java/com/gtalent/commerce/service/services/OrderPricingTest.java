@@ -0,0 +1,174 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.JpaBatchConfig;
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.enums.OrderStatus;
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Order;
+import com.gtalent.commerce.service.models.OrderItem;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.models.User;
+import com.gtalent.commerce.service.requests.OrderItemRequest;
+import com.gtalent.commerce.service.requests.OrderRequest;
+import com.gtalent.commerce.service.responses.OrderResponse;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//確認運費與稅金在建立訂單時寫入、讀取訂單不再載入商品，以及舊訂單回填的結果與重新計算相同
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({OrderService.class, OrderItemService.class, OrderPricingBackfill.class, SnowflakeOrderReferenceGenerator.class,
+        JpaBatchConfig.class, InventoryService.class, ProductCatalogCache.class})
+class OrderPricingTest {
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private OrderPricingBackfill backfill;
+
+    private Statistics statistics;
+    private User customer;
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        Category category = new Category();
+        category.setName("category");
+        entityManager.persist(category);
+
+        products = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Product product = new Product();
+            product.setReference("P-" + i);
+            product.setCategory(category);
+            product.setWidth(new BigDecimal("1.50"));
+            product.setHeight(new BigDecimal("2.00"));
+            product.setDepth(new BigDecimal("0.3" + i));
+            product.setPrice(new BigDecimal("19.99"));
+            product.setStock(100);
+            entityManager.persist(product);
+            products.add(product);
+        }
+
+        customer = new User();
+        customer.setFirstName("first");
+        customer.setLastName("last");
+        customer.setEmail("user@example.com");
+        customer.setBirthday(LocalDate.of(1990, 1, 1));
+        customer.setAddress("address");
+        customer.setCity("city");
+        customer.setState("state");
+        customer.setZipcode("100");
+        customer.setPassword("secret");
+        entityManager.persist(customer);
+        entityManager.flush();
+
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void createOrderPersistsPricingAndReadsSkipProducts() {
+        OrderResponse created = orderService.createOrder(orderRequest());
+        entityManager.flush();
+        entityManager.clear();
+
+        Order stored = entityManager.find(Order.class, created.getId());
+        assertTrue(stored.isPricingFrozen());
+        assertEquals(0, created.getDelivery().compareTo(stored.getDeliveryFee()));
+        assertEquals(0, created.getTax().compareTo(stored.getTaxAmount()));
+        assertTrue(stored.getDeliveryFee().signum() > 0);
+
+        //商品尺寸之後被修改也不影響已成立訂單的運費
+        entityManager.createQuery("update Product p set p.width = 9")
+                .executeUpdate();
+        entityManager.clear();
+        statistics.clear();
+
+        List<OrderResponse> orders = orderService.getAllOrders();
+
+        assertEquals(1, orders.size());
+        assertEquals(created.getTotal(), orders.get(0).getTotal());
+        assertEquals(created.getDelivery(), orders.get(0).getDelivery());
+        assertEquals(new BigDecimal("1.50"), orders.get(0).getItems().get(0).getWidth());
+        //訂單/訂購者 + 明細 (不 join products)
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityStatistics(Product.class.getName()).getLoadCount());
+    }
+
+    @Test
+    void backfillMatchesRecomputedTotalsInChunks() {
+        for (int o = 0; o < 7; o++) {
+            persistLegacyOrder(o + 1);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        //回填前：每次讀取依商品重新計算
+        List<OrderResponse> recomputed = orderService.getAllOrders();
+        entityManager.clear();
+
+        assertEquals(7, backfill.backfill(3));
+        entityManager.flush();
+        entityManager.clear();
+        assertEquals(0, backfill.backfill(3));
+
+        entityManager.clear();
+        List<OrderResponse> frozen = orderService.getAllOrders();
+        for (int i = 0; i < recomputed.size(); i++) {
+            assertEquals(0, recomputed.get(i).getDelivery().compareTo(frozen.get(i).getDelivery()));
+            assertEquals(0, recomputed.get(i).getTax().compareTo(frozen.get(i).getTax()));
+            assertEquals(0, recomputed.get(i).getTotal().compareTo(frozen.get(i).getTotal()));
+            assertEquals(recomputed.get(i).getItems().get(0).getProductReference(),
+                    frozen.get(i).getItems().get(0).getProductReference());
+        }
+    }
+
+    private OrderRequest orderRequest() {
+        OrderRequest request = new OrderRequest();
+        request.setUserId(customer.getId());
+        request.setShippingAddress("address");
+        request.setItems(List.of(
+                new OrderItemRequest(products.get(0).getId(), 2),
+                new OrderItemRequest(products.get(1).getId(), 1),
+                new OrderItemRequest(products.get(2).getId(), 3)));
+        return request;
+    }
+
+    //模擬功能上線前的訂單：運費、稅金為 0，明細沒有凍結商品欄位
+    private void persistLegacyOrder(int quantity) {
+        Order order = new Order();
+        order.setUser(customer);
+        order.setStatus(OrderStatus.ORDERED);
+        order.setShippingAddress("address");
+        order.setCreatedAt(LocalDateTime.now());
+        BigDecimal sum = BigDecimal.ZERO;
+        for (Product product : products) {
+            OrderItem item = new OrderItem();
+            item.setOrder(order);
+            item.setProduct(product);
+            item.setProductName(product.getReference());
+            item.setQuantity(quantity);
+            item.setPrice(product.getPrice());
+            item.setDate(LocalDate.now());
+            order.getItems().add(item);
+            sum = sum.add(item.getTotal());
+        }
+        order.setTotalAmount(sum);
+        entityManager.persist(order);
+    }
+}
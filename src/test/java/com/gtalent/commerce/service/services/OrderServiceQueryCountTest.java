@@ -0,0 +1,199 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.JpaBatchConfig;
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.enums.OrderStatus;
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Order;
+import com.gtalent.commerce.service.models.OrderItem;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.models.User;
+import com.gtalent.commerce.service.requests.OrderItemRequest;
+import com.gtalent.commerce.service.requests.OrderRequest;
+import com.gtalent.commerce.service.responses.OrderResponse;
+import com.gtalent.commerce.service.responses.PendingOrderResponse;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//確認訂單列表的 SQL 次數固定，不會隨訂單數或明細數成長 (N+1 回歸測試)
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({OrderService.class, OrderItemService.class, SnowflakeOrderReferenceGenerator.class, JpaBatchConfig.class,
+        InventoryService.class, ProductCatalogCache.class})
+class OrderServiceQueryCountTest {
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private OrderService orderService;
+
+    private Statistics statistics;
+    private User customer;
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        Category category = new Category();
+        category.setName("category");
+        entityManager.persist(category);
+
+        products = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Product product = new Product();
+            product.setReference("P-" + i);
+            product.setCategory(category);
+            product.setWidth(new BigDecimal("1.00"));
+            product.setHeight(new BigDecimal("2.00"));
+            product.setDepth(new BigDecimal("3.00"));
+            product.setPrice(new BigDecimal("10.00"));
+            product.setStock(100);
+            entityManager.persist(product);
+            products.add(product);
+        }
+
+        for (int u = 0; u < 3; u++) {
+            User user = new User();
+            user.setFirstName("first" + u);
+            user.setLastName("last" + u);
+            user.setEmail("user" + u + "@example.com");
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            user.setAddress("address");
+            user.setCity("city");
+            user.setState("state");
+            user.setZipcode("100");
+            user.setPassword("secret");
+            entityManager.persist(user);
+            customer = user;
+
+            for (int o = 0; o < 10; o++) {
+                Order order = new Order();
+                order.setUser(user);
+                order.setStatus(o % 2 == 0 ? OrderStatus.ORDERED : OrderStatus.DELIVERED);
+                order.setShippingAddress("address");
+                order.setTotalAmount(new BigDecimal("30.00"));
+                order.setCreatedAt(LocalDateTime.now());
+                for (Product product : products.subList(0, 3)) {
+                    OrderItem item = new OrderItem();
+                    item.setOrder(order);
+                    item.setProduct(product);
+                    item.setProductName(product.getReference());
+                    item.setQuantity(1);
+                    item.setPrice(product.getPrice());
+                    item.setDate(LocalDate.now());
+                    order.getItems().add(item);
+                }
+                entityManager.persist(order);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void orderPageUsesBoundedStatementCount() {
+        Page<OrderResponse> page = orderService.getOrdersByPage(null, PageRequest.of(0, 20));
+
+        assertEquals(20, page.getContent().size());
+        assertEquals(30, page.getTotalElements());
+        page.getContent().forEach(response -> assertEquals(3, response.getItems().size()));
+        //ID 分頁 + count + 訂單/訂購者 + 明細/商品
+        assertEquals(4, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void filteredOrderPageUsesBoundedStatementCount() {
+        Page<OrderResponse> page = orderService.getOrdersByPage(OrderStatus.ORDERED, PageRequest.of(1, 5));
+
+        assertEquals(5, page.getContent().size());
+        assertEquals(15, page.getTotalElements());
+        assertEquals(4, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void allOrdersUseBoundedStatementCount() {
+        List<OrderResponse> orders = orderService.getAllOrders();
+
+        assertEquals(30, orders.size());
+        //訂單/訂購者 + 明細/商品
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void pendingOrdersUseSingleAggregateQuery() {
+        Page<PendingOrderResponse> page = orderService.getPendingOrders(null, PageRequest.of(0, 5));
+
+        assertEquals(5, page.getContent().size());
+        assertEquals(15, page.getTotalElements());
+        page.getContent().forEach(pending -> {
+            assertEquals(3, pending.getItemCount());
+            assertEquals(0, new BigDecimal("30.00").compareTo(pending.getTotalAmount()));
+        });
+        //GROUP BY 查詢 + count，不載入訂單與明細 entity
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void pendingOrdersFilterByAge() {
+        assertEquals(0, orderService.getPendingOrders(60, PageRequest.of(0, 5)).getTotalElements());
+        assertEquals(15, orderService.getPendingOrders(0, PageRequest.of(0, 5)).getTotalElements());
+        assertThrows(IllegalArgumentException.class, () -> orderService.getPendingOrders(-1, PageRequest.of(0, 5)));
+    }
+
+    @Test
+    void createOrderResolvesCartWithOneLookupAndBatchesItemInserts() {
+        OrderRequest request = new OrderRequest();
+        request.setUserId(customer.getId());
+        request.setShippingAddress("address");
+        List<OrderItemRequest> items = new ArrayList<>();
+        for (Product product : products) {
+            items.add(new OrderItemRequest(product.getId(), 2));
+        }
+        request.setItems(items);
+
+        OrderResponse response = orderService.createOrder(request);
+        entityManager.flush();
+
+        assertEquals(50, response.getItems().size());
+        assertEquals(51, statistics.getEntityInsertCount());
+        //使用者 + 商品 (單次 IN) + 訂單 INSERT + sequence 取號 + 明細 batch INSERT
+        //(庫存預留的 batch UPDATE 走 JdbcTemplate，不計入 Hibernate 統計)
+        assertTrue(statistics.getPrepareStatementCount() <= 6,
+                "statements per order: " + statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void createOrderReportsAllMissingProductsTogether() {
+        OrderRequest request = new OrderRequest();
+        request.setUserId(customer.getId());
+        request.setShippingAddress("address");
+        request.setItems(List.of(
+                new OrderItemRequest(products.get(0).getId(), 1),
+                new OrderItemRequest(-1, 1),
+                new OrderItemRequest(-2, 1)));
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> orderService.createOrder(request));
+        assertEquals("找不到商品 ID: -1, -2", ex.getMessage());
+    }
+}
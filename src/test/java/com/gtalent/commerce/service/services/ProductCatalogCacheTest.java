@@ -0,0 +1,202 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.repositories.CategoryRepository;
+import com.gtalent.commerce.service.repositories.ProductRepository;
+import com.gtalent.commerce.service.requests.CreateProductRequest;
+import com.gtalent.commerce.service.responses.ProductDetailResponse;
+import com.gtalent.commerce.service.responses.ProductListResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//產品快取：命中後不再查資料庫、寫入與庫存變動後精準失效、冷 key 併發只載入一次
+//每個測試都直接以 repository 新增分類 -> 分類對照表遇到新 id 時不限制重新載入間隔
+@DataJpaTest(properties = {"spring.jpa.properties.hibernate.generate_statistics=true",
+        "category.reload-interval-ms=0"})
+@Import({ProductService.class, ProductSearchIndex.class, ProductSuggestIndex.class, InventoryService.class,
+        ProductCatalogCache.class, ReferenceDataRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)  //快取在交易提交後才失效 -> 測試需實際提交
+class ProductCatalogCacheTest {
+
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private InventoryService inventoryService;
+    @Autowired
+    private ProductCatalogCache catalogCache;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Category category;
+    private Category otherCategory;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        category = new Category();
+        category.setName("cached");
+        categoryRepository.save(category);
+        otherCategory = new Category();
+        otherCategory.setName("other");
+        categoryRepository.save(otherCategory);
+
+        product = new Product();
+        product.setReference("CACHED");
+        product.setCategory(category);
+        product.setWidth(BigDecimal.ONE);
+        product.setHeight(BigDecimal.ONE);
+        product.setDepth(BigDecimal.ONE);
+        product.setPrice(BigDecimal.TEN);
+        product.setStock(10);
+        productRepository.save(product);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+    }
+
+    @Test
+    void detailIsServedFromCacheUntilUpdated() {
+        productService.getProductById(product.getId());
+        productService.getProductById(product.getId());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        CreateProductRequest request = new CreateProductRequest();
+        request.setReference("RENAMED");
+        request.setWidth(1.0);
+        request.setHeight(1.0);
+        request.setDepth(1.0);
+        request.setPrice(BigDecimal.TEN);
+        request.setStock(10);
+        request.setSales(0);
+        request.setCategory(otherCategory.getId());
+        productService.updateProduct(product.getId(), request);
+
+        ProductDetailResponse reloaded = productService.getProductById(product.getId());
+        assertEquals("RENAMED", reloaded.getReference());
+        assertEquals("other", reloaded.getCategory().getName());
+    }
+
+    @Test
+    void stockChangeEvictsDetailAndPagesContainingProductAfterCommit() {
+        PageRequest pageable = PageRequest.of(0, 10);
+        productService.getProductById(product.getId());
+        productService.getAllProductPages("", category.getId(), null, null, pageable);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> inventoryService.reserve(Map.of(product.getId(), 3)));
+
+        assertEquals(7, productService.getProductById(product.getId()).getStock());
+        Page<ProductListResponse> page = productService.getAllProductPages("", category.getId(), null, null, pageable);
+        assertEquals(7, page.getContent().get(0).getStock());
+    }
+
+    @Test
+    void createdProductEvictsItsCategoryPagesOnly() {
+        PageRequest pageable = PageRequest.of(0, 10);
+        productService.getAllProductPages("", category.getId(), null, null, pageable);
+        productService.getAllProductPages("", otherCategory.getId(), null, null, pageable);
+        statistics.clear();
+
+        CreateProductRequest request = new CreateProductRequest();
+        request.setReference("NEW");
+        request.setWidth(1.0);
+        request.setHeight(1.0);
+        request.setDepth(1.0);
+        request.setPrice(BigDecimal.TEN);
+        request.setStock(5);
+        request.setSales(0);
+        request.setCategory(category.getId());
+        productService.createProduct(request);
+        statistics.clear();
+
+        //其他分類的列表頁仍在快取中
+        productService.getAllProductPages("", otherCategory.getId(), null, null, pageable);
+        assertEquals(0, statistics.getPrepareStatementCount());
+        //新產品所屬分類重新查詢
+        Page<ProductListResponse> page = productService.getAllProductPages("", category.getId(), null, null, pageable);
+        assertEquals(2, page.getTotalElements());
+    }
+
+    @Test
+    void coldHotKeyIsLoadedOnce() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<ProductDetailResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return productService.getProductById(product.getId());
+                }));
+            }
+            start.countDown();
+            for (Future<ProductDetailResponse> future : futures) {
+                assertEquals("CACHED", future.get().getReference());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void cacheMetricsAreExposed() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        catalogCache.bindTo(registry);
+        double hits = gets(registry, "hit");
+        double misses = gets(registry, "miss");
+        productService.getProductById(product.getId());
+        productService.getProductById(product.getId());
+
+        assertEquals(hits + 1, gets(registry, "hit"));
+        assertEquals(misses + 1, gets(registry, "miss"));
+        assertTrue(registry.find("cache.evictions").tag("cache", "product.details").meter() != null);
+        assertTrue(registry.find("cache.load.duration").tag("cache", "product.details").meter() != null);
+    }
+
+    private static double gets(SimpleMeterRegistry registry, String result) {
+        return registry.get("cache.gets").tag("cache", "product.details").tag("result", result)
+                .functionCounter().count();
+    }
+}
@@ -0,0 +1,138 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.enums.ReviewStatus;
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.models.User;
+import com.gtalent.commerce.service.repositories.CategoryRepository;
+import com.gtalent.commerce.service.repositories.ProductRepository;
+import com.gtalent.commerce.service.repositories.UserRepository;
+import com.gtalent.commerce.service.requests.CreateReviewRequest;
+import com.gtalent.commerce.service.requests.UpdateReviewRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//評分統計重建與評論差量同時進行：重建不可用較舊的快照覆蓋期間提交的差量
+@DataJpaTest
+@Import({ReviewService.class, ProductRatingService.class, ProductCatalogCache.class, ReviewSearchIndex.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)  //兩個交易各自提交
+class ProductRatingRebuildConcurrencyTest {
+
+    @Autowired
+    private ReviewService reviewService;
+    @Autowired
+    private ProductRatingService productRatingService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Product product;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        Category category = new Category();
+        category.setName("category");
+        categoryRepository.save(category);
+        product = new Product();
+        product.setReference("P-1");
+        product.setCategory(category);
+        product.setWidth(BigDecimal.ONE);
+        product.setHeight(BigDecimal.ONE);
+        product.setDepth(BigDecimal.ONE);
+        product.setPrice(BigDecimal.TEN);
+        productRepository.save(product);
+        user = new User();
+        user.setFirstName("ann");
+        user.setLastName("test");
+        user.setEmail("ann@example.com");
+        user.setPassword("secret");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        user.setAddress("address");
+        user.setCity("city");
+        user.setState("state");
+        user.setZipcode("100");
+        userRepository.save(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM reviews");
+        jdbcTemplate.update("DELETE FROM product_ratings");
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+        categoryRepository.deleteAll();
+    }
+
+    @Test
+    void rebuildDoesNotOverwriteDeltaCommittedMeanwhile() throws Exception {
+        int first = review(4);
+        accept(first);
+        int second = review(5);
+        //統計已有差異 -> 重建時這個產品需要修正
+        jdbcTemplate.update("UPDATE product_ratings SET review_count = 99 WHERE product_id = ?", product.getId());
+
+        //審核通過第二則評論：差量已寫入 (鎖定統計列) 但尚未提交
+        CountDownLatch deltaApplied = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        CompletableFuture<Void> accepting = CompletableFuture.runAsync(() ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(tx -> {
+                    accept(second);
+                    deltaApplied.countDown();
+                    await(commit);
+                }));
+        deltaApplied.await(10, TimeUnit.SECONDS);
+
+        //重建的快照看不到第二則評論；修正時需等待差量提交後重新計算
+        CompletableFuture<Integer> rebuilding = CompletableFuture.supplyAsync(productRatingService::rebuild);
+        Thread.sleep(300);
+        commit.countDown();
+        accepting.get(10, TimeUnit.SECONDS);
+        rebuilding.get(10, TimeUnit.SECONDS);
+
+        assertEquals(2, productRatingService.getRating(product.getId()).getReviewCount());
+        assertEquals(0, productRatingService.rebuild());
+    }
+
+    private int review(int stars) {
+        return reviewService.createReview(new CreateReviewRequest(stars, "comment", user.getId(), product.getId()))
+                .getId();
+    }
+
+    private void accept(int reviewId) {
+        reviewService.updateReview(reviewId, new UpdateReviewRequest(null, null, ReviewStatus.ACCEPTED));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
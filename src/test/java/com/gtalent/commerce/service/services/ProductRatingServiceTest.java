@@ -0,0 +1,158 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.enums.ReviewStatus;
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.models.User;
+import com.gtalent.commerce.service.requests.CreateReviewRequest;
+import com.gtalent.commerce.service.requests.UpdateReviewRequest;
+import com.gtalent.commerce.service.responses.ProductDetailResponse;
+import com.gtalent.commerce.service.responses.ProductRatingResponse;
+import com.gtalent.commerce.service.responses.ReviewResponse;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//確認評分統計隨評論新增 / 審核 / 修改 / 刪除以差量維護，且與重新計算的結果一致
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({ReviewService.class, ProductRatingService.class, ProductService.class, ProductSearchIndex.class,
+        ProductSuggestIndex.class, ProductCatalogCache.class, ReferenceDataRegistry.class, ReviewSearchIndex.class})
+class ProductRatingServiceTest {
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ReviewService reviewService;
+    @Autowired
+    private ProductRatingService productRatingService;
+    @Autowired
+    private ProductService productService;
+
+    private Product product;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        Category category = new Category();
+        category.setName("category");
+        entityManager.persist(category);
+
+        product = new Product();
+        product.setReference("P-1");
+        product.setCategory(category);
+        product.setWidth(new BigDecimal("1.00"));
+        product.setHeight(new BigDecimal("1.00"));
+        product.setDepth(new BigDecimal("1.00"));
+        product.setPrice(new BigDecimal("10.00"));
+        product.setStock(10);
+        entityManager.persist(product);
+
+        user = new User();
+        user.setFirstName("first");
+        user.setLastName("last");
+        user.setEmail("user@example.com");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        user.setAddress("address");
+        user.setCity("city");
+        user.setState("state");
+        user.setZipcode("100");
+        user.setPassword("secret");
+        entityManager.persist(user);
+        entityManager.flush();
+    }
+
+    @Test
+    void onlyAcceptedReviewsAreCounted() {
+        ReviewResponse five = review(5);
+        ReviewResponse three = review(3);
+        assertEquals(0, rating().getReviewCount());  //待審核不計入
+        assertNull(rating().getAverageRating());
+
+        reviewService.updateReview(five.getId(), new UpdateReviewRequest(null, null, ReviewStatus.ACCEPTED));
+        reviewService.updateReview(three.getId(), new UpdateReviewRequest(null, null, ReviewStatus.ACCEPTED));
+        assertEquals(2, rating().getReviewCount());
+        assertEquals(new BigDecimal("4.00"), rating().getAverageRating());
+        assertEquals(Map.of(1, 0, 2, 0, 3, 1, 4, 0, 5, 1), rating().getStars());
+
+        //修改評分 -> 從 5 星移到 2 星
+        reviewService.updateReview(five.getId(), new UpdateReviewRequest(2, null, null));
+        assertEquals(new BigDecimal("2.50"), rating().getAverageRating());
+        assertEquals(Map.of(1, 0, 2, 1, 3, 1, 4, 0, 5, 0), rating().getStars());
+
+        //只修改內容 -> 不變
+        reviewService.updateReview(three.getId(), new UpdateReviewRequest(null, "edited", null));
+        assertEquals(2, rating().getReviewCount());
+
+        //退回與刪除 -> 移出統計
+        reviewService.updateReview(five.getId(), new UpdateReviewRequest(null, null, ReviewStatus.REJECTED));
+        reviewService.deleteReview(three.getId());
+        assertEquals(0, rating().getReviewCount());
+        assertEquals(0, productRatingService.rebuild());  //差量結果與重新計算一致
+    }
+
+    @Test
+    void detailEmbedsRatingInSameQuery() {
+        ReviewResponse four = review(4);
+        reviewService.updateReview(four.getId(), new UpdateReviewRequest(null, null, ReviewStatus.ACCEPTED));
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        ProductDetailResponse detail = productService.getProductById(product.getId());
+
+        assertEquals(1, detail.getRating().getReviewCount());
+        assertEquals(new BigDecimal("4.00"), detail.getRating().getAverageRating());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void rebuildRepairsDrift() {
+        ReviewResponse four = review(4);
+        reviewService.updateReview(four.getId(), new UpdateReviewRequest(null, null, ReviewStatus.ACCEPTED));
+        entityManager.flush();
+        jdbcTemplate.update("UPDATE product_ratings SET review_count = 99, stars_1 = 7 WHERE product_id = ?",
+                product.getId());
+        entityManager.clear();
+
+        assertEquals(1, productRatingService.rebuild());
+        entityManager.flush();
+        entityManager.clear();
+        assertEquals(1, rating().getReviewCount());
+        assertEquals(0, rating().getStars().get(1));
+        assertEquals(0, productRatingService.rebuild());
+    }
+
+    @Test
+    void productWithoutReviewsHasEmptyRating() {
+        assertEquals(0, rating().getReviewCount());
+        assertThrows(IllegalArgumentException.class, () -> productRatingService.getRating(-1));
+    }
+
+    private ReviewResponse review(int stars) {
+        return reviewService.createReview(new CreateReviewRequest(stars, "comment", user.getId(), product.getId()));
+    }
+
+    private ProductRatingResponse rating() {
+        entityManager.flush();
+        entityManager.clear();
+        return productRatingService.getRating(product.getId());
+    }
+}
@@ -0,0 +1,265 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.repositories.CategoryRepository;
+import com.gtalent.commerce.service.repositories.ProductRepository;
+import com.gtalent.commerce.service.requests.CreateProductRequest;
+import com.gtalent.commerce.service.responses.CursorPageResponse;
+import com.gtalent.commerce.service.responses.ProductDetailResponse;
+import com.gtalent.commerce.service.responses.ProductListResponse;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+//產品搜尋索引：相關度排序、分類 / 庫存條件過濾、增量更新，以及無法使用索引時改用 LIKE
+//每個測試都直接以 repository 新增分類 -> 分類對照表遇到新 id 時不限制重新載入間隔
+@DataJpaTest(properties = {"spring.jpa.properties.hibernate.generate_statistics=true",
+        "category.reload-interval-ms=0"})
+@Import({ProductService.class, ProductSearchIndex.class, ProductSuggestIndex.class, ProductCatalogCache.class,
+        ReferenceDataRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)  //索引在交易提交後才更新 -> 測試需實際提交
+class ProductSearchIndexTest {
+
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductSearchIndex searchIndex;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ProductCatalogCache catalogCache;
+    @Autowired
+    private ProductSuggestIndex suggestIndex;
+    @Autowired
+    private ReferenceDataRegistry referenceData;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Category chairs;
+    private Category kids;
+    private Product oakChair;
+    private Product sofa;
+    private Product kidsChair;
+    private Product lamp;
+
+    @BeforeEach
+    void setUp() {
+        chairs = category("chairs");
+        kids = category("kids");
+        oakChair = product("CHAIR-01", "solid oak", chairs, 5);
+        sofa = product("SOFA-02", "comfy chair and sofa", chairs, 0);
+        kidsChair = product("CHAIR-03", "a chair for kids", kids, 20);
+        lamp = product("LAMP-04", "桌上型檯燈, desk lamp", kids, 3);
+        assertEquals(4, searchIndex.rebuild());
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+    }
+
+    @Test
+    void ranksReferenceAndDescriptionMatches() {
+        //編號與描述都符合 > 只有編號符合 > 只有描述符合
+        assertEquals(List.of(kidsChair.getId(), oakChair.getId(), sofa.getId()), searchIndex.search("Chair"));
+        assertEquals(List.of(kidsChair.getId(), oakChair.getId()), searchIndex.search("chair-0"));  //子字串
+        assertEquals(List.of(lamp.getId()), searchIndex.search("型檯燈"));  //中文兩字一組
+        assertEquals(List.of(), searchIndex.search("table"));
+        assertNull(searchIndex.search("ch"));  //少於三個字元 -> 由呼叫端改用 LIKE
+    }
+
+    @Test
+    void referenceMatchesAreSubstrings() {
+        Product split = product("ABC-BCD", "", chairs, 1);
+        assertEquals(5, searchIndex.rebuild());
+        assertEquals(List.of(), searchIndex.search("abcd"));  //片段 abc、bcd 都出現但不相鄰
+        assertEquals(List.of(split.getId()), searchIndex.search("c-b"));
+    }
+
+    @Test
+    void pageAppliesCategoryAndStockFiltersToIndexedIds() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        Page<ProductListResponse> page = productService.getAllProductPages("chair", null, null, null,
+                PageRequest.of(0, 2));
+        assertEquals(List.of(kidsChair.getId(), oakChair.getId()), ids(page));
+        assertEquals(3, page.getTotalElements());
+        assertEquals(1, statistics.getPrepareStatementCount());  //沒有 LIKE 掃描，只以主鍵取出這一頁
+
+        statistics.clear();
+        page = productService.getAllProductPages("chair", chairs.getId(), 1, null, PageRequest.of(0, 10));
+        assertEquals(List.of(oakChair.getId()), ids(page));
+        assertEquals(2, statistics.getPrepareStatementCount());  //過濾候選 id + 取出這一頁
+
+        page = productService.getAllProductPages("chair", null, null, null, PageRequest.of(1, 2));
+        assertEquals(List.of(sofa.getId()), ids(page));
+
+        //少於三個字元 -> 仍以 LIKE 比對產品編號
+        page = productService.getAllProductPages("-0", null, null, null, PageRequest.of(0, 10));
+        assertEquals(4, page.getTotalElements());
+    }
+
+    @Test
+    void cursorPagesUseIndexedIds() {
+        List<ProductListResponse> rows = productService.getProductsAfter("chair", chairs.getId(), null, null,
+                null, 10, true).getContent();
+        assertEquals(2, rows.size());
+        assertEquals(List.of(oakChair.getId(), sofa.getId()),
+                rows.stream().map(ProductListResponse::getId).sorted().toList());
+    }
+
+    @Test
+    void keywordCursorWalkUsesIndexedCreationTimes() {
+        //建立時間相同時依 id 由大到小
+        jdbcTemplate.update("UPDATE products SET created_at = ? WHERE id IN (?, ?)",
+                Timestamp.valueOf("2024-01-02 00:00:00"), oakChair.getId(), kidsChair.getId());
+        jdbcTemplate.update("UPDATE products SET created_at = ? WHERE id = ?",
+                Timestamp.valueOf("2024-01-01 00:00:00"), sofa.getId());
+        searchIndex.rebuild();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<Integer> walked = new ArrayList<>();
+        String cursor = null;
+        do {
+            statistics.clear();
+            CursorPageResponse<ProductListResponse> page =
+                    productService.getProductsAfter("chair", null, null, null, cursor, 1, true);
+            assertEquals(3, page.getTotalElements());  //總筆數由索引計算
+            assertEquals(1, statistics.getPrepareStatementCount());  //每頁只查這一頁的產品
+            page.getContent().forEach(product -> walked.add(product.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(List.of(kidsChair.getId(), oakChair.getId(), sofa.getId()), walked);
+
+        //有分類條件時依相同順序過濾
+        CursorPageResponse<ProductListResponse> page =
+                productService.getProductsAfter("chair", chairs.getId(), null, null, null, 1, true);
+        assertEquals(List.of(oakChair.getId()), page.getContent().stream().map(ProductListResponse::getId).toList());
+        assertEquals(2, page.getTotalElements());
+        page = productService.getProductsAfter("chair", chairs.getId(), null, null, page.getNextCursor(), 1, true);
+        assertEquals(List.of(sofa.getId()), page.getContent().stream().map(ProductListResponse::getId).toList());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void filtersApplyBeforeMaxResults() {
+        ProductSearchIndex capped = new ProductSearchIndex(productRepository, transactionManager, 1, 256);
+        capped.rebuild();
+        ProductService service = new ProductService(productRepository, categoryRepository, catalogCache, capped,
+                suggestIndex, referenceData);
+        assertEquals(List.of(kidsChair.getId()), capped.search("chair"));
+
+        //排名第一的 kidsChair 不在 chairs 分類 -> 過濾後仍取得 chairs 分類中最相關的一筆
+        Page<ProductListResponse> page = service.getAllProductPages("chair", chairs.getId(), null, null,
+                PageRequest.of(0, 10));
+        assertEquals(List.of(oakChair.getId()), ids(page));
+        assertEquals(1, page.getTotalElements());
+
+        //游標分頁依建立時間排序，包含全部符合的產品
+        CursorPageResponse<ProductListResponse> rows = service.getProductsAfter("chair", null, null, null, null,
+                2, true);
+        assertEquals(List.of(kidsChair.getId(), sofa.getId()),
+                rows.getContent().stream().map(ProductListResponse::getId).toList());
+        assertEquals(3, rows.getTotalElements());
+        rows = service.getProductsAfter("chair", null, null, null, rows.getNextCursor(), 2, true);
+        assertEquals(List.of(oakChair.getId()), rows.getContent().stream().map(ProductListResponse::getId).toList());
+    }
+
+    @Test
+    void createUpdateAndDeleteAreIndexedAfterCommit() {
+        ProductDetailResponse created = productService.createProduct(request("STOOL-05", "bar chair", chairs));
+        assertEquals(List.of(created.getId()), searchIndex.search("stool"));
+        assertEquals(4, searchIndex.search("chair").size());
+
+        productService.updateProduct(created.getId(), request("BENCH-05", "garden bench", chairs));
+        assertEquals(List.of(), searchIndex.search("stool"));
+        assertEquals(List.of(created.getId()), searchIndex.search("bench"));
+        assertEquals(3, searchIndex.search("chair").size());
+
+        productService.deleteProduct(created.getId());
+        assertEquals(List.of(), searchIndex.search("bench"));
+    }
+
+    @Test
+    void updatesRemoveTheTermsStoredInTheIndex() {
+        //兩筆修改的交易提交後依相反順序套用 (SOFA -> BENCH -> STOOL，先套用 STOOL)：最後套用的生效，不留下舊的詞
+        searchIndex.update(sofa.getId(), "STOOL-02", "tall stool", sofa.getCreatedAt());
+        searchIndex.update(sofa.getId(), "BENCH-02", "garden bench", sofa.getCreatedAt());
+        assertEquals(List.of(sofa.getId()), searchIndex.search("bench"));
+        assertEquals(List.of(), searchIndex.search("stool"));
+        assertEquals(List.of(), searchIndex.search("sofa"));
+        assertEquals(2, searchIndex.search("chair").size());
+
+        searchIndex.remove(sofa.getId());
+        searchIndex.remove(sofa.getId());  //重複刪除不影響其他產品
+        assertEquals(List.of(), searchIndex.search("bench"));
+        assertEquals(List.of(), searchIndex.search("garden"));
+        assertEquals(List.of(kidsChair.getId(), oakChair.getId()), searchIndex.search("chair"));
+    }
+
+    private Category category(String name) {
+        Category category = new Category();
+        category.setName(name);
+        return categoryRepository.save(category);
+    }
+
+    private Product product(String reference, String description, Category category, int stock) {
+        Product product = new Product();
+        product.setReference(reference);
+        product.setDescription(description);
+        product.setCategory(category);
+        product.setWidth(BigDecimal.ONE);
+        product.setHeight(BigDecimal.ONE);
+        product.setDepth(BigDecimal.ONE);
+        product.setPrice(BigDecimal.TEN);
+        product.setStock(stock);
+        return productRepository.save(product);
+    }
+
+    private static CreateProductRequest request(String reference, String description, Category category) {
+        CreateProductRequest request = new CreateProductRequest();
+        request.setReference(reference);
+        request.setDescription(description);
+        request.setWidth(1.0);
+        request.setHeight(1.0);
+        request.setDepth(1.0);
+        request.setPrice(BigDecimal.TEN);
+        request.setStock(1);
+        request.setSales(0);
+        request.setCategory(category.getId());
+        return request;
+    }
+
+    private static List<Integer> ids(Page<ProductListResponse> page) {
+        return page.getContent().stream().map(ProductListResponse::getId).toList();
+    }
+}
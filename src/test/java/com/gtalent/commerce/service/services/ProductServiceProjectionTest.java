@@ -0,0 +1,114 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.responses.ProductDetailResponse;
+import com.gtalent.commerce.service.responses.ProductListResponse;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//確認產品列表 / 分頁 / 明細直接查出 DTO：不載入任何 entity
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({ProductService.class, ProductSearchIndex.class, ProductSuggestIndex.class, ProductCatalogCache.class,
+        ReferenceDataRegistry.class})
+class ProductServiceProjectionTest {
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private ProductService productService;
+
+    private Statistics statistics;
+    private Product first;
+
+    @BeforeEach
+    void setUp() {
+        for (int c = 0; c < 3; c++) {
+            Category category = new Category();
+            category.setName("category-" + c);
+            entityManager.persist(category);
+            for (int i = 0; i < 5; i++) {
+                Product product = new Product();
+                product.setReference("P-" + c + "-" + i);
+                product.setCategory(category);
+                product.setWidth(new BigDecimal("1.00"));
+                product.setHeight(new BigDecimal("2.00"));
+                product.setDepth(new BigDecimal("3.00"));
+                product.setPrice(new BigDecimal("10.00"));
+                product.setStock(i);
+                product.setDescription("long description " + i);
+                entityManager.persist(product);
+                if (first == null) {
+                    first = product;
+                }
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void listingUsesSingleQueryWithoutEntities() {
+        List<ProductListResponse> products = productService.getAllProducts();
+
+        assertEquals(15, products.size());
+        assertEquals("category-0", products.get(0).getCategory().getName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void pageUsesProjectionWithoutEntities() {
+        //分類列表頁 (經過快取) 與庫存條件搜尋都是這一頁 + COUNT 兩個查詢，不載入 entity
+        Page<ProductListResponse> page = productService.getAllProductPages(null, first.getCategory().getId(), null,
+                null, PageRequest.of(0, 2, Sort.by("id")));
+        assertEquals(List.of("P-0-0", "P-0-1"),
+                page.getContent().stream().map(ProductListResponse::getReference).toList());
+        assertEquals("category-0", page.getContent().get(0).getCategory().getName());
+        assertEquals(5, page.getTotalElements());
+
+        page = productService.getAllProductPages(null, null, 3, null,
+                PageRequest.of(0, 4, Sort.by(Sort.Direction.DESC, "stock").and(Sort.by("id"))));
+        assertEquals(List.of("P-0-4", "P-1-4", "P-2-4", "P-0-3"),
+                page.getContent().stream().map(ProductListResponse::getReference).toList());
+        assertEquals(6, page.getTotalElements());
+        assertEquals(4, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void detailUsesSingleQueryWithoutEntities() {
+        ProductDetailResponse detail = productService.getProductById(first.getId());
+
+        assertEquals("P-0-0", detail.getReference());
+        assertEquals(new BigDecimal("3.00"), detail.getDepth());
+        assertEquals("long description 0", detail.getDescription());
+        assertEquals("category-0", detail.getCategory().getName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void missingProductIsRejected() {
+        assertThrows(RuntimeException.class, () -> productService.getProductById(-1));
+    }
+}
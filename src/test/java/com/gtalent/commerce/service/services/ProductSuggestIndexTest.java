@@ -0,0 +1,156 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.repositories.CategoryRepository;
+import com.gtalent.commerce.service.repositories.ProductRepository;
+import com.gtalent.commerce.service.requests.CreateProductRequest;
+import com.gtalent.commerce.service.responses.ProductDetailResponse;
+import com.gtalent.commerce.service.responses.ProductSuggestResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//產品編號自動完成：依前綴與銷售量排序、不查資料庫、兩次重建之間的新增 / 修改 / 刪除立即反映
+//每個測試都直接以 repository 新增分類 -> 分類對照表遇到新 id 時不限制重新載入間隔
+@DataJpaTest(properties = {"spring.jpa.properties.hibernate.generate_statistics=true",
+        "category.reload-interval-ms=0"})
+@Import({ProductService.class, ProductSearchIndex.class, ProductSuggestIndex.class, ProductCatalogCache.class,
+        ReferenceDataRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)  //增量在交易提交後才套用 -> 測試需實際提交
+class ProductSuggestIndexTest {
+
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ProductSuggestIndex suggestIndex;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Category category;
+
+    @BeforeEach
+    void setUp() {
+        category = new Category();
+        category.setName("furniture");
+        categoryRepository.save(category);
+        product("CHAIR-01", 5);
+        product("chair-02", 50);
+        product("CHAIR-03", 20);
+        product("CHEST-01", 20);
+        product("TABLE-01", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+    }
+
+    @Test
+    void suggestsTopSellersForPrefixWithoutQueries() {
+        assertEquals(5, suggestIndex.rebuild());
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        //銷售量由高到低，相同時依產品編號；不分大小寫
+        assertEquals(List.of("chair-02", "CHAIR-03", "CHEST-01", "CHAIR-01"), references("ch", 10));
+        assertEquals(List.of("chair-02", "CHAIR-03"), references("Chair", 2));
+        assertEquals(List.of("CHAIR-03"), references("chair-03", 10));
+        assertEquals(List.of(), references("desk", 10));
+        assertEquals(List.of(), references("", 10));
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        assertThrows(IllegalArgumentException.class, () -> suggestIndex.suggest("ch", 0));
+        assertThrows(IllegalArgumentException.class, () -> suggestIndex.suggest("ch", ProductSuggestIndex.MAX_LIMIT + 1));
+    }
+
+    @Test
+    void changesBetweenRebuildsAreVisible() {
+        suggestIndex.rebuild();
+        ProductDetailResponse created = productService.createProduct(request("CHAIR-04", 30));
+        assertEquals(List.of("chair-02", "CHAIR-04", "CHAIR-03"), references("chair", 3));
+
+        //修改編號：舊編號不再出現
+        Product chest = productRepository.findAll().stream()
+                .filter(product -> product.getReference().equals("CHEST-01")).findFirst().orElseThrow();
+        productService.updateProduct(chest.getId(), request("CHAIR-05", 80));
+        assertEquals(List.of("CHAIR-05", "chair-02"), references("ch", 2));
+        assertEquals(List.of(), references("chest", 10));
+
+        productService.deleteProduct(created.getId());
+        assertEquals(List.of("CHAIR-05", "chair-02", "CHAIR-03", "CHAIR-01"), references("ch", 10));
+
+        //重建後增量表清空，結果不變
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        suggestIndex.bindTo(registry);
+        suggestIndex.rebuild();
+        assertEquals(0, registry.get("product.suggest.pending").gauge().value());
+        assertEquals(List.of("CHAIR-05", "chair-02", "CHAIR-03", "CHAIR-01"), references("ch", 10));
+    }
+
+    @Test
+    void updatesReplaceThePendingVersionOfTheProduct() {
+        suggestIndex.rebuild();
+        Product chest = productRepository.findAll().stream()
+                .filter(product -> product.getReference().equals("CHEST-01")).findFirst().orElseThrow();
+        //兩筆修改依提交的相反順序套用 (CHEST -> CHAIR-05 -> CHAIR-06，先套用 CHAIR-06)：增量表只留最後套用的版本
+        suggestIndex.update(chest.getId(), "CHAIR-06", 80);
+        suggestIndex.update(chest.getId(), "CHAIR-05", 80);
+        assertEquals(List.of("CHAIR-05", "chair-02"), references("chair", 2));
+        assertEquals(List.of(), references("chair-06", 10));
+
+        suggestIndex.remove(chest.getId());
+        assertEquals(List.of(), references("chair-05", 10));
+        assertEquals(List.of("chair-02", "CHAIR-03", "CHAIR-01"), references("ch", 10));
+    }
+
+    private List<String> references(String prefix, int limit) {
+        return suggestIndex.suggest(prefix, limit).stream().map(ProductSuggestResponse::getReference).toList();
+    }
+
+    private void product(String reference, int sales) {
+        Product product = new Product();
+        product.setReference(reference);
+        product.setCategory(category);
+        product.setWidth(BigDecimal.ONE);
+        product.setHeight(BigDecimal.ONE);
+        product.setDepth(BigDecimal.ONE);
+        product.setPrice(BigDecimal.TEN);
+        product.setSales(sales);
+        productRepository.save(product);
+    }
+
+    private CreateProductRequest request(String reference, int sales) {
+        CreateProductRequest request = new CreateProductRequest();
+        request.setReference(reference);
+        request.setWidth(1.0);
+        request.setHeight(1.0);
+        request.setDepth(1.0);
+        request.setPrice(BigDecimal.TEN);
+        request.setStock(1);
+        request.setSales(sales);
+        request.setCategory(category.getId());
+        return request;
+    }
+}
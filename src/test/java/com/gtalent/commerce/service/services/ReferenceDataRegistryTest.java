@@ -0,0 +1,125 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.repositories.CategoryRepository;
+import com.gtalent.commerce.service.repositories.ProductRepository;
+import com.gtalent.commerce.service.requests.CreateCategoryRequest;
+import com.gtalent.commerce.service.requests.CreateProductRequest;
+import com.gtalent.commerce.service.responses.ProductDetailResponse;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//參考資料對照表：分類新增 / 軟刪除後立即反映、產品引用分類不需載入分類
+@DataJpaTest(properties = {"spring.jpa.properties.hibernate.generate_statistics=true",
+        "category.reload-interval-ms=60000"})
+@Import({CategoryService.class, ProductService.class, ProductSearchIndex.class, ProductSuggestIndex.class,
+        ProductCatalogCache.class, ReferenceDataRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)  //對照表在交易提交後才更新 -> 測試需實際提交
+class ReferenceDataRegistryTest {
+
+    @Autowired
+    private CategoryService categoryService;
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private ReferenceDataRegistry referenceData;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private int chairs;
+
+    @BeforeEach
+    void setUp() {
+        chairs = categoryService.createCategory(new CreateCategoryRequest("chairs")).getId();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+    }
+
+    @Test
+    void categoriesFollowCreateAndSoftDelete() {
+        assertEquals(Optional.of("chairs"), referenceData.categoryName(chairs));
+        int tables = categoryService.createCategory(new CreateCategoryRequest("tables")).getId();
+        statistics.clear();
+        assertEquals(Optional.of("tables"), referenceData.categoryName(tables));
+        assertEquals(Optional.of("chairs"), referenceData.categoryName(chairs));
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        categoryService.softDeleteCategory(chairs);
+        assertEquals(Optional.empty(), referenceData.categoryName(chairs));
+        assertEquals(Optional.of("tables"), referenceData.categoryName(tables));
+    }
+
+    @Test
+    void missingCategoriesReloadAtMostOncePerInterval() {
+        referenceData.categoryName(chairs);
+        statistics.clear();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Optional.empty(), referenceData.categoryName(chairs + 100));
+        }
+        assertTrue(statistics.getPrepareStatementCount() <= 1);  //距離上次讀取已超過間隔時只重新讀一次
+
+        //間隔為 0：直接寫入資料庫 (或其他台新增) 的分類在查無時重新讀到
+        ReferenceDataRegistry reloading = new ReferenceDataRegistry(null, categoryRepository, 0);
+        reloading.categoryName(chairs);
+        Category direct = new Category();
+        direct.setName("direct");
+        categoryRepository.save(direct);
+        assertEquals(Optional.of("direct"), reloading.categoryName(direct.getId()));
+    }
+
+    @Test
+    void productsReferenceCategoriesWithoutLoadingThem() {
+        referenceData.categoryName(chairs);  //讀入對照表
+        statistics.clear();
+
+        ProductDetailResponse created = productService.createProduct(request(chairs));
+        assertEquals("chairs", created.getCategory().getName());
+        assertEquals(0, statistics.getEntityStatistics(Category.class.getName()).getLoadCount());
+        assertEquals(chairs, productRepository.findById(created.getId()).orElseThrow().getCategory().getId());
+
+        categoryService.softDeleteCategory(chairs);
+        assertThrows(RuntimeException.class, () -> productService.createProduct(request(chairs)));
+        assertThrows(RuntimeException.class, () -> productService.createProduct(request(chairs + 100)));
+    }
+
+    private static CreateProductRequest request(int categoryId) {
+        CreateProductRequest request = new CreateProductRequest();
+        request.setReference("CHAIR-" + categoryId);
+        request.setWidth(1.0);
+        request.setHeight(1.0);
+        request.setDepth(1.0);
+        request.setPrice(BigDecimal.TEN);
+        request.setStock(5);
+        request.setSales(0);
+        request.setCategory(categoryId);
+        return request;
+    }
+}
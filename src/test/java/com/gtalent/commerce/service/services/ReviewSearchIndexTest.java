@@ -0,0 +1,184 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.ProductCatalogCache;
+import com.gtalent.commerce.service.enums.ReviewStatus;
+import com.gtalent.commerce.service.models.Category;
+import com.gtalent.commerce.service.models.Product;
+import com.gtalent.commerce.service.models.User;
+import com.gtalent.commerce.service.repositories.CategoryRepository;
+import com.gtalent.commerce.service.repositories.ProductRepository;
+import com.gtalent.commerce.service.repositories.UserRepository;
+import com.gtalent.commerce.service.requests.CreateReviewRequest;
+import com.gtalent.commerce.service.requests.UpdateReviewRequest;
+import com.gtalent.commerce.service.responses.ReviewResponse;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//評論搜尋索引：中英文混合斷詞、不分大小寫、與狀態 / 評分條件一起過濾、評論修改 / 刪除於提交後反映
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({ReviewService.class, ProductRatingService.class, ProductCatalogCache.class, ReviewSearchIndex.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)  //索引在交易提交後才更新 -> 測試需實際提交
+class ReviewSearchIndexTest {
+
+    @Autowired
+    private ReviewService reviewService;
+    @Autowired
+    private ReviewSearchIndex reviewSearchIndex;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Product product;
+    private User user;
+    private int comfortable;
+    private int ugly;
+    private int broken;
+
+    @BeforeEach
+    void setUp() {
+        Category category = new Category();
+        category.setName("category");
+        categoryRepository.save(category);
+        product = new Product();
+        product.setCategory(category);
+        product.setReference("CHAIR-1");
+        product.setWidth(BigDecimal.ONE);
+        product.setHeight(BigDecimal.ONE);
+        product.setDepth(BigDecimal.ONE);
+        product.setPrice(BigDecimal.TEN);
+        productRepository.save(product);
+        user = new User();
+        user.setFirstName("ann");
+        user.setLastName("test");
+        user.setEmail("ann@example.com");
+        user.setPassword("secret");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        user.setAddress("address");
+        user.setCity("city");
+        user.setState("state");
+        user.setZipcode("100");
+        userRepository.save(user);
+        reviewSearchIndex.rebuild();
+
+        comfortable = review(user, 5, "Very comfortable chair，坐起來很舒服");
+        ugly = review(user, 3, "Comfortable but 顏色不好看");
+        broken = review(user, 1, "Broken leg after 2 weeks");
+        reviewService.updateReview(comfortable, new UpdateReviewRequest(null, null, ReviewStatus.ACCEPTED));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM reviews");
+        jdbcTemplate.update("DELETE FROM product_ratings");
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+        categoryRepository.deleteAll();
+    }
+
+    @Test
+    void searchesMixedChineseAndEnglishComments() {
+        assertEquals(List.of(comfortable, ugly), search("COMFORTABLE", null, null));  //不分大小寫
+        assertEquals(List.of(comfortable), search("舒服", null, null));
+        assertEquals(List.of(comfortable), search("comfortable 很舒服", null, null));
+        assertEquals(List.of(broken), search("2 weeks", null, null));
+        //與狀態、評分條件一起過濾
+        assertEquals(List.of(comfortable), search("comfortable", "ACCEPTED", null));
+        assertEquals(List.of(ugly), search("comfortable", null, 3));
+
+        //沒有符合的評論 -> 不查資料庫
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        assertEquals(List.of(), search("沙發", null, null));
+        assertEquals(List.of(), search("comfortable", "REJECTED", null));
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        //單一漢字只出現在兩字一組的詞中間 -> 改用 LIKE
+        assertEquals(List.of(ugly), search("好", null, null));
+    }
+
+    @Test
+    void followsUpdatesAndDeletes() {
+        reviewService.updateReview(broken, new UpdateReviewRequest(4, "換了零件後很舒服", null));
+        assertEquals(List.of(comfortable, broken), search("舒服", null, null));
+        assertEquals(List.of(), search("broken", null, null));
+        assertEquals(List.of(broken), search("舒服", null, 4));
+
+        reviewService.deleteReview(comfortable);
+        assertEquals(List.of(broken), search("舒服", null, null));
+
+        //重建後結果不變
+        assertEquals(2, reviewSearchIndex.rebuild());
+        assertEquals(List.of(broken), search("舒服", null, null));
+        assertEquals(List.of(ugly), search("comfortable", null, null));
+    }
+
+    @Test
+    void manyMatchesFollowTheIndexRule() {
+        //超過一萬筆符合仍以索引的 id 篩選：goodness 不是 good 這個詞 (LIKE '%good%' 會符合)
+        jdbcTemplate.batchUpdate("INSERT INTO reviews (date, rating, comment, status, customer_id, product_id) "
+                        + "VALUES (?, ?, ?, 'PENDING', ?, ?)",
+                Collections.nCopies(10_001, new Object[]{LocalDate.of(2024, 1, 1), 4, "good", user.getId(),
+                        product.getId()}));
+        review(user, 5, "goodness");
+        assertEquals(10_005, reviewSearchIndex.rebuild());
+
+        //預設排序 (由新到舊) 在記憶體依 id 分頁，只把這一頁的 id 交給資料庫
+        Page<ReviewResponse> page = new TransactionTemplate(transactionManager).execute(tx -> reviewService
+                .getProductReviews(product.getId(), 1, 10, null, null, null, null, null, "good"));
+        assertEquals(10_001, page.getTotalElements());
+        assertEquals(List.of("good"), page.getContent().stream().map(ReviewResponse::getComment).distinct().toList());
+        List<Integer> ids = page.getContent().stream().map(ReviewResponse::getId).toList();
+        assertEquals(10, ids.size());
+        assertEquals(ids.stream().sorted(Comparator.reverseOrder()).toList(), ids);
+
+        //指定其他排序時，超過上限的符合筆數不交給資料庫排序
+        assertThrows(IllegalArgumentException.class, () -> reviewService.getProductReviews(product.getId(), 0, 10,
+                "rating", "asc", null, null, null, "good"));
+        assertEquals(List.of(ugly, comfortable), new TransactionTemplate(transactionManager).execute(tx -> reviewService
+                .getProductReviews(product.getId(), 0, 10, "rating", "asc", null, null, null, "comfortable")
+                .getContent().stream().map(ReviewResponse::getId).toList()));
+    }
+
+    private int review(User user, int rating, String comment) {
+        CreateReviewRequest request = new CreateReviewRequest(rating, comment, user.getId(), product.getId());
+        return reviewService.createReview(request).getId();
+    }
+
+    //依評論 id 遞增回傳 (評分條件為剛好等於 rating)；與 open-in-view 相同，在交易中轉換評論的客戶資料
+    private List<Integer> search(String q, String status, Integer rating) {
+        return new TransactionTemplate(transactionManager).execute(tx -> reviewService
+                .getProductReviews(product.getId(), 0, 10, null, null, status, rating, rating, q)
+                .getContent().stream().map(ReviewResponse::getId).sorted().toList());
+    }
+}
@@ -0,0 +1,193 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.JwtPrincipalCache;
+import com.gtalent.commerce.service.enums.SegmentType;
+import com.gtalent.commerce.service.models.Segment;
+import com.gtalent.commerce.service.models.User;
+import com.gtalent.commerce.service.models.UserSegment;
+import com.gtalent.commerce.service.repositories.SegmentRepository;
+import com.gtalent.commerce.service.repositories.UserRepository;
+import com.gtalent.commerce.service.repositories.UserSegmentRepository;
+import com.gtalent.commerce.service.responses.UserResponse;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//Segment 成員索引：集合運算不查資料庫、分配 / 移除 / 使用者異動於提交後反映、使用者列表以 id IN 取代 JOIN
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({UserSegmentService.class, UserService.class, SegmentMembershipIndex.class, ReferenceDataRegistry.class,
+        JwtService.class, JwtPrincipalCache.class, LoginTimestampBuffer.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)  //索引在交易提交後才更新 -> 測試需實際提交
+class SegmentMembershipIndexTest {
+
+    @TestConfiguration
+    static class PasswordEncoderConfig {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder(4);
+        }
+    }
+
+    @Autowired
+    private UserSegmentService userSegmentService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private SegmentMembershipIndex membershipIndex;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private SegmentRepository segmentRepository;
+    @Autowired
+    private UserSegmentRepository userSegmentRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Segment segment1;
+    private Segment segment3;
+    private User ann;
+    private User bob;
+    private User cat;
+    private User dan;
+
+    @BeforeEach
+    void setUp() {
+        //UserSegmentResponse 依 SegmentType 轉換 -> 與 SegmentConfig 相同，只建立一次 SEGMENT1 ~ SEGMENT6
+        for (SegmentType type : SegmentType.values()) {
+            if (!segmentRepository.existsByName(type.getName())) {
+                Segment segment = new Segment();
+                segment.setName(type.getName());
+                segmentRepository.save(segment);
+            }
+        }
+        segment1 = segment("SEGMENT1");
+        segment3 = segment("SEGMENT3");
+        ann = user("ann", true);
+        bob = user("bob", false);
+        cat = user("cat", false);
+        dan = user("dan", true);
+        link(ann, segment1);
+        link(bob, segment1);
+        link(cat, segment1);
+        link(ann, segment3);
+        link(bob, segment3);
+        link(dan, segment3);
+        assertEquals(4, membershipIndex.rebuild());
+    }
+
+    @AfterEach
+    void tearDown() {
+        userSegmentRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void countsSetAlgebraWithoutQueries() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        assertEquals(1, userSegmentService.countUsers("SEGMENT1 and SEGMENT3 and not newsletter"));  //bob
+        assertEquals(1, userSegmentService.countUsers("segment1 & segment3 - newsletter"));
+        assertEquals(4, userSegmentService.countUsers("SEGMENT1 or SEGMENT3"));
+        assertEquals(3, userSegmentService.countUsers("newsletter or (SEGMENT1 and not SEGMENT3)"));  //ann, cat, dan
+        assertEquals(2, userSegmentService.countUsers("not newsletter"));
+        assertEquals(0, userSegmentService.countUsers("SEGMENT2"));
+        assertEquals(3, userSegmentService.countUsers(String.valueOf(segment1.getId())));
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        assertThrows(IllegalArgumentException.class, () -> userSegmentService.countUsers("SEGMENT9"));
+        assertThrows(IllegalArgumentException.class, () -> userSegmentService.countUsers("SEGMENT1 and"));
+        assertThrows(IllegalArgumentException.class, () -> userSegmentService.countUsers("(SEGMENT1"));
+        assertThrows(IllegalArgumentException.class, () -> userSegmentService.countUsers(" "));
+    }
+
+    @Test
+    void changesAreVisibleAfterCommit() {
+        userSegmentService.assignUserToSegment(dan.getId(), segment1.getId());
+        assertEquals(2, userSegmentService.countUsers("SEGMENT1 and SEGMENT3 and newsletter"));
+
+        userSegmentService.removeUserFromSegment(ann.getId(), segment3.getId());
+        assertEquals(1, userSegmentService.countUsers("SEGMENT1 and SEGMENT3 and newsletter"));
+
+        //取消訂閱電子報、刪除使用者
+        User update = new User();
+        update.setHasNewsletter(false);
+        userService.updateUser(dan.getId(), update);
+        assertEquals(0, userSegmentService.countUsers("SEGMENT1 and SEGMENT3 and newsletter"));
+        userService.deleteUserById(bob.getId());
+        assertEquals(List.of(cat.getId(), dan.getId()),
+                ids(userSegmentService.getUsersByExpression("SEGMENT1 and not newsletter", PageRequest.of(0, 10))));
+
+        //重建後結果不變
+        membershipIndex.rebuild();
+        assertEquals(List.of(cat.getId(), dan.getId()),
+                ids(userSegmentService.getUsersByExpression("SEGMENT1 and not newsletter", PageRequest.of(0, 10))));
+    }
+
+    @Test
+    void userPagesFilterBySegmentIdsWithoutJoin() {
+        Page<User> page = userService.getAllUserPages("", null, segment1.getId(), PageRequest.of(0, 2));
+        assertEquals(List.of(ann.getId(), bob.getId()), page.getContent().stream().map(User::getId).toList());
+        assertEquals(3, page.getTotalElements());
+        page = userService.getAllUserPages("", false, segment1.getId(), PageRequest.of(1, 1));
+        assertEquals(List.of(cat.getId()), page.getContent().stream().map(User::getId).toList());
+        assertEquals(2, page.getTotalElements());
+
+        //有名字關鍵字 -> 仍由資料庫過濾，Segment 條件改為 id IN (...)
+        page = userService.getAllUserPages("b", null, segment3.getId(), PageRequest.of(0, 10));
+        assertEquals(List.of(bob.getId()), page.getContent().stream().map(User::getId).toList());
+        assertEquals(0, userService.getAllUserPages("", null, segment("SEGMENT4").getId(), PageRequest.of(0, 10))
+                .getTotalElements());
+    }
+
+    private Segment segment(String name) {
+        return segmentRepository.findAll().stream()
+                .filter(segment -> segment.getName().equals(name)).findFirst().orElseThrow();
+    }
+
+    private User user(String name, boolean hasNewsletter) {
+        User user = new User();
+        user.setFirstName(name);
+        user.setLastName("test");
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        user.setAddress("address");
+        user.setCity("city");
+        user.setState("state");
+        user.setZipcode("100");
+        user.setHasNewsletter(hasNewsletter);
+        return userRepository.save(user);
+    }
+
+    private void link(User user, Segment segment) {
+        UserSegment userSegment = new UserSegment();
+        userSegment.setUser(user);
+        userSegment.setSegment(segment);
+        userSegmentRepository.save(userSegment);
+    }
+
+    private static List<Integer> ids(Page<UserResponse> page) {
+        return page.getContent().stream().map(UserResponse::getId).toList();
+    }
+}
@@ -0,0 +1,79 @@
+package com.gtalent.commerce.service.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeOrderReferenceGeneratorTest {
+
+    private static final int THREADS = 16;
+    private static final int PER_THREAD = 50_000;
+
+    @Test
+    void referencesAreUniqueUnderConcurrentLoad() throws Exception {
+        SnowflakeOrderReferenceGenerator generator = new SnowflakeOrderReferenceGenerator(7);
+        Set<String> references = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    String previous = null;
+                    for (int i = 0; i < PER_THREAD; i++) {
+                        String reference = generator.nextReference();
+                        assertTrue(reference.length() <= 20, reference);
+                        //同一執行緒取得的編號必須遞增 (大致依時間排序)
+                        assertTrue(previous == null || previous.compareTo(reference) < 0, reference);
+                        references.add(reference);
+                        previous = reference;
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(THREADS * PER_THREAD, references.size());
+    }
+
+    @Test
+    void differentNodesNeverCollide() {
+        SnowflakeOrderReferenceGenerator node1 = new SnowflakeOrderReferenceGenerator(1);
+        SnowflakeOrderReferenceGenerator node2 = new SnowflakeOrderReferenceGenerator(2);
+        Set<String> references = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 100_000; i++) {
+            references.add(node1.nextReference());
+            references.add(node2.nextReference());
+        }
+        assertEquals(200_000, references.size());
+    }
+
+    @Test
+    void rejectsOutOfRangeNodeId() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeOrderReferenceGenerator(1024));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeOrderReferenceGenerator(-1));
+    }
+
+    @Test
+    void encodesFixedWidthBase36() {
+        assertEquals("0000000000000", SnowflakeOrderReferenceGenerator.encode(0));
+        assertEquals("1Y2P0IJ32E8E7", SnowflakeOrderReferenceGenerator.encode(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,138 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.configs.JwtPrincipalCache;
+import com.gtalent.commerce.service.enums.SegmentType;
+import com.gtalent.commerce.service.models.Segment;
+import com.gtalent.commerce.service.models.User;
+import com.gtalent.commerce.service.models.UserSegment;
+import com.gtalent.commerce.service.repositories.UserRepository;
+import com.gtalent.commerce.service.responses.UserResponse;
+import com.gtalent.commerce.service.responses.UserSegmentResponse;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//使用者讀取的 SQL 次數：登入不載入 Segment；需要 Segment 的查詢以 entity graph 或批次載入，不會隨使用者數成長
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({UserService.class, UserSegmentService.class, SegmentMembershipIndex.class, ReferenceDataRegistry.class,
+        JwtService.class, JwtPrincipalCache.class, LoginTimestampBuffer.class})
+class UserFetchPlanTest {
+
+    private static final int USERS = 20;
+
+    @TestConfiguration
+    static class PasswordEncoderConfig {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder(4);
+        }
+    }
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserSegmentService userSegmentService;
+    @Autowired
+    private UserRepository userRepository;
+
+    private Statistics statistics;
+    private int firstUserId;
+
+    @BeforeEach
+    void setUp() {
+        //UserSegmentResponse 依 SegmentType 轉換 -> Segment id 必須是 1 ~ 6 (交易回滾後 IDENTITY 不會重設，直接指定 id)
+        for (SegmentType type : SegmentType.values()) {
+            jdbcTemplate.update("INSERT INTO segments (id, names) VALUES (?, ?)", type.getId(), type.getName());
+        }
+        String password = passwordEncoder.encode("secret");
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setFirstName("user" + i);
+            user.setLastName("test");
+            user.setEmail("user" + i + "@example.com");
+            user.setPassword(password);
+            user.setBirthday(LocalDate.of(2000, 1, 1));
+            user.setAddress("address");
+            user.setCity("city");
+            user.setState("state");
+            user.setZipcode("100");
+            entityManager.persist(user);
+            if (i == 0) {
+                firstUserId = user.getId();
+            }
+            //每個使用者屬於兩個 Segment
+            for (int segmentId : new int[]{1 + i % 6, 1 + (i + 1) % 6}) {
+                UserSegment userSegment = new UserSegment();
+                userSegment.setUser(user);
+                userSegment.setSegment(entityManager.getReference(Segment.class, segmentId));
+                entityManager.persist(userSegment);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void loginDoesNotLoadSegments() {
+        assertTrue(userService.login("user3@example.com", "secret").isPresent());
+        assertTrue(userRepository.findByEmail("user4@example.com").isPresent());  //JWT 驗證 (快取未命中)
+        //每次一個 SELECT users
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getCollectionFetchCount());
+    }
+
+    @Test
+    void userPageLoadsSegmentsInOneBatch() {
+        Page<User> page = userService.getAllUserPages("user", null, null, PageRequest.of(0, 10));
+        //與 UserController 相同：逐一取出每個使用者的 Segment
+        int segments = 0;
+        for (User user : page.getContent()) {
+            for (UserSegment us : user.getUserSegments()) {
+                segments += new UserSegmentResponse(us).getSegmentId() > 0 ? 1 : 0;
+            }
+        }
+        assertEquals(20, segments);
+        //分頁 + COUNT + 這一頁使用者的 Segment (單次 IN)
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void segmentQueriesUseEntityGraphs() {
+        List<UserResponse> users = userService.getAllUsers();
+        assertEquals(USERS, users.size());
+        assertTrue(users.stream().allMatch(user -> user.getSegments().size() == 2));
+        UserResponse user = userSegmentService.getSegmentsWithUser(firstUserId).orElseThrow();
+        assertEquals(List.of(1, 2), user.getSegments().stream().map(UserSegmentResponse::getSegmentId).sorted().toList());
+        List<UserResponse> members = userSegmentService.getUsersBySegment(1);
+        assertTrue(members.stream().allMatch(member -> member.getSegments().size() == 2));
+        //每個查詢一個 SELECT (JOIN user_segments)，Segment 本身不需載入
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+}
@@ -0,0 +1,185 @@
+package com.gtalent.commerce.service.services;
+
+import com.gtalent.commerce.service.models.Segment;
+import com.gtalent.commerce.service.models.User;
+import com.gtalent.commerce.service.repositories.SegmentRepository;
+import com.gtalent.commerce.service.repositories.UserRepository;
+import com.gtalent.commerce.service.repositories.UserSegmentRepository;
+import com.gtalent.commerce.service.responses.BulkAssignResponse;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//批次分配 Segment：集合式驗證、ON DUPLICATE KEY 略過已存在的關聯、逐筆回報失敗、提交後更新成員索引
+//INSERT ... ON DUPLICATE KEY 為 MySQL 語法 -> H2 以 MySQL 相容模式執行
+@DataJpaTest(properties = {"spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.datasource.url=jdbc:h2:mem:bulk-assign;MODE=MySQL;DATABASE_TO_LOWER=TRUE"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({UserSegmentBulkService.class, SegmentMembershipIndex.class, ReferenceDataRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)  //每批一個交易並實際提交
+class UserSegmentBulkServiceTest {
+
+    @Autowired
+    private UserSegmentBulkService bulkService;
+    @Autowired
+    private SegmentMembershipIndex membershipIndex;
+    @Autowired
+    private ReferenceDataRegistry referenceData;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private SegmentRepository segmentRepository;
+    @Autowired
+    private UserSegmentRepository userSegmentRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Segment segment1;
+    private Segment segment2;
+    private User ann;
+    private User bob;
+
+    @BeforeEach
+    void setUp() {
+        segment1 = segment("SEGMENT1");
+        segment2 = segment("SEGMENT2");
+        ann = user("ann");
+        bob = user("bob");
+        referenceData.reloadSegments();  //每個測試重新建立 Segment (id 不同)
+        membershipIndex.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userSegmentRepository.deleteAll();
+        userRepository.deleteAll();
+        segmentRepository.deleteAll();
+    }
+
+    @Test
+    void assignsCsvRowsAndReportsFailures() throws IOException {
+        int missingUser = bob.getId() + 100;
+        String csv = "userId,segmentId\n"
+                + ann.getId() + "," + segment1.getId() + "\n"
+                + ann.getId() + "," + segment1.getId() + "\n"  //同一批重複
+                + "\n"
+                + bob.getId() + " , " + segment2.getId() + "\n"
+                + missingUser + "," + segment1.getId() + "\n"
+                + ann.getId() + ",999\n"
+                + "abc\n";
+        BulkAssignResponse response = bulkService.assignFromCsv(new StringReader(csv));
+
+        assertEquals(6, response.getReceived());
+        assertEquals(2, response.getAssigned());  //重複的資料列不算新增
+        assertEquals(3, response.getFailed());
+        assertEquals(List.of(8L, 6L, 7L), response.getFailures().stream().map(BulkAssignResponse.Failure::getRow).toList());
+        assertEquals(List.of("格式錯誤: abc", "使用者不存在", "segment不存在"),
+                response.getFailures().stream().map(BulkAssignResponse.Failure::getReason).toList());
+        assertEquals(2, userSegmentRepository.count());
+        assertEquals(1, membershipIndex.count("SEGMENT1"));
+        assertEquals(1, membershipIndex.count("SEGMENT2"));
+
+        //再次上傳已存在的關聯 -> 不新增也不失敗；第一行可解析 (開頭為 +) -> 不是標題列
+        response = bulkService.assignFromCsv(new StringReader("+" + ann.getId() + "," + segment1.getId()));
+        assertEquals(1, response.getReceived());
+        assertEquals(0, response.getAssigned());
+        assertEquals(0, response.getFailed());
+        assertEquals(2, userSegmentRepository.count());
+    }
+
+    @Test
+    void validatesChunksAgainstMembershipIndex() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        int rows = UserSegmentBulkService.CHUNK_SIZE * 2 + 10;
+        for (int i = 0; i < rows; i++) {
+            User user = i % 2 == 0 ? ann : bob;
+            Segment segment = i % 3 == 0 ? segment1 : segment2;
+            json.append(i == 0 ? "" : ",")
+                    .append("{\"userId\":").append(user.getId()).append(",\"segmentId\":").append(segment.getId()).append("}");
+        }
+        json.append("]");
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        BulkAssignResponse response = bulkService.assignFromJson(
+                new ByteArrayInputStream(json.toString().getBytes(StandardCharsets.UTF_8)));
+        assertEquals(4, response.getAssigned());  //只有 4 種不同的關聯
+        assertEquals(0, response.getFailed());
+        //Segment 由參考資料對照表、使用者由成員索引驗證 -> 不經過 Hibernate 查詢 (JDBC 寫入也不計入)
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(4, userSegmentRepository.count());
+    }
+
+    @Test
+    void revalidatesWithDatabaseWhenIndexIsStale() throws IOException {
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", bob.getId());  //繞過 UserService -> 索引仍有 bob
+        String csv = ann.getId() + "," + segment1.getId() + "\n" + bob.getId() + "," + segment1.getId();
+        BulkAssignResponse response = bulkService.assignFromCsv(new StringReader(csv));
+
+        assertEquals(1, response.getAssigned());
+        assertEquals(List.of("使用者不存在"),
+                response.getFailures().stream().map(BulkAssignResponse.Failure::getReason).toList());
+        assertEquals(1, userSegmentRepository.count());
+        assertEquals(1, membershipIndex.count("SEGMENT1"));
+    }
+
+    @Test
+    void reportsMalformedJsonAndKeepsEarlierRows() throws IOException {
+        String json = "[{\"userId\":" + ann.getId() + ",\"segmentId\":" + segment1.getId() + "}, {\"userId\": }]";
+        BulkAssignResponse response = bulkService.assignFromJson(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, response.getAssigned());
+        assertEquals(1, response.getFailed());
+        assertEquals(List.of(2L), response.getFailures().stream().map(BulkAssignResponse.Failure::getRow).toList());
+        assertEquals(1, userSegmentRepository.count());
+
+        //兩筆之間的分隔符號錯誤 -> 回報第 2 筆
+        json = "[{\"userId\":" + ann.getId() + ",\"segmentId\":" + segment1.getId() + "} }";
+        response = bulkService.assignFromJson(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(List.of(2L), response.getFailures().stream().map(BulkAssignResponse.Failure::getRow).toList());
+    }
+
+    private Segment segment(String name) {
+        Segment segment = new Segment();
+        segment.setName(name);
+        return segmentRepository.save(segment);
+    }
+
+    private User user(String name) {
+        User user = new User();
+        user.setFirstName(name);
+        user.setLastName("test");
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        user.setBirthday(LocalDate.of(2000, 1, 1));
+        user.setAddress("address");
+        user.setCity("city");
+        user.setState("state");
+        user.setZipcode("100");
+        return userRepository.save(user);
+    }
+}